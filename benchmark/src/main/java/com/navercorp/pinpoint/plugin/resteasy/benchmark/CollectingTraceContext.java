@@ -0,0 +1,275 @@
+/*
+ * Copyright 2014 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.navercorp.pinpoint.plugin.resteasy.benchmark;
+
+import com.navercorp.pinpoint.bootstrap.config.DefaultProfilerConfig;
+import com.navercorp.pinpoint.bootstrap.config.ProfilerConfig;
+import com.navercorp.pinpoint.bootstrap.context.SpanEventRecorder;
+import com.navercorp.pinpoint.bootstrap.context.SpanId;
+import com.navercorp.pinpoint.bootstrap.context.SpanRecorder;
+import com.navercorp.pinpoint.bootstrap.context.Trace;
+import com.navercorp.pinpoint.bootstrap.context.TraceContext;
+import com.navercorp.pinpoint.bootstrap.context.TraceId;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Properties;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Multi-threaded variant of {@link StandInTraceContext} for {@link EndToEndHarness}: the current trace is bound
+ * to the calling thread, as the agent binds it, and closed sampled traces go to a stand-in collector.
+ * <p>
+ * The collector only counts spans, unless {@link #collect(boolean)} is on; then the root span fields are kept
+ * in a bounded queue for {@link EndToEndHarness} to check.
+ * <p>
+ * The Pinpoint types are {@link Proxy} instances here: the harness measures latency over a socket, where a
+ * reflective dispatch per recorder call does not show, and the proxies keep it compiling against whatever
+ * pinpoint-bootstrap-core is on the classpath.
+ */
+public class CollectingTraceContext {
+    private static final int MAX_COLLECTED = 1024;
+
+    private final ProfilerConfig profilerConfig;
+    private final TraceContext traceContext;
+    private final Trace sampledTrace;
+    private final Trace unsampledTrace;
+    private final int samplingRate;
+
+    private final ThreadLocal<Trace> currentTrace = new ThreadLocal<Trace>();
+    private final ThreadLocal<RecordedSpan> currentSpan = new ThreadLocal<RecordedSpan>() {
+        @Override
+        protected RecordedSpan initialValue() {
+            return new RecordedSpan();
+        }
+    };
+    private final AtomicLong newTraces = new AtomicLong();
+    private final AtomicLong closedSpans = new AtomicLong();
+    private final BlockingQueue<RecordedSpan> collected = new LinkedBlockingQueue<RecordedSpan>(MAX_COLLECTED);
+    private volatile boolean collect;
+
+    /**
+     * @param samplingRate the agent sampler accepts one new trace in samplingRate, as profiler.sampling.rate
+     */
+    public CollectingTraceContext(Properties properties, int samplingRate) {
+        if (samplingRate <= 0) {
+            throw new IllegalArgumentException("samplingRate must be positive:" + samplingRate);
+        }
+        this.profilerConfig = new DefaultProfilerConfig(properties);
+        this.samplingRate = samplingRate;
+
+        final SpanRecorder spanRecorder = proxy(SpanRecorder.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                return recordSpan(method, args);
+            }
+        });
+        final SpanEventRecorder spanEventRecorder = proxy(SpanEventRecorder.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                return defaultValue(method);
+            }
+        });
+        this.sampledTrace = newTrace(true, spanRecorder, spanEventRecorder);
+        this.unsampledTrace = newTrace(false, spanRecorder, spanEventRecorder);
+
+        this.traceContext = proxy(TraceContext.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                final String name = method.getName();
+                if ("getProfilerConfig".equals(name)) {
+                    return profilerConfig;
+                }
+                if ("currentRawTraceObject".equals(name) || "currentTraceObject".equals(name)) {
+                    return currentTrace.get();
+                }
+                if ("removeTraceObject".equals(name)) {
+                    final Trace trace = currentTrace.get();
+                    currentTrace.remove();
+                    return trace;
+                }
+                if ("newTraceObject".equals(name)) {
+                    if (newTraces.getAndIncrement() % CollectingTraceContext.this.samplingRate != 0) {
+                        return bind(unsampledTrace);
+                    }
+                    currentSpan.get().reset(true);
+                    return bind(sampledTrace);
+                }
+                if ("continueTraceObject".equals(name)) {
+                    currentSpan.get().reset(((TraceId) args[0]).getParentSpanId() == SpanId.NULL);
+                    return bind(sampledTrace);
+                }
+                if ("disableSampling".equals(name)) {
+                    return bind(unsampledTrace);
+                }
+                if ("createTraceId".equals(name)) {
+                    return newTraceId((Long) args[1]);
+                }
+                return defaultValue(method);
+            }
+        });
+    }
+
+    private Object recordSpan(Method method, Object[] args) {
+        final String name = method.getName();
+        final RecordedSpan span = currentSpan.get();
+        if ("isRoot".equals(name)) {
+            return span.root;
+        }
+        if ("canSampled".equals(name)) {
+            return Boolean.TRUE;
+        }
+        if ("recordRpcName".equals(name)) {
+            span.rpcName = (String) args[0];
+        } else if ("recordEndPoint".equals(name)) {
+            span.endPoint = (String) args[0];
+        } else if ("recordRemoteAddress".equals(name)) {
+            span.remoteAddress = (String) args[0];
+        } else if ("recordAcceptorHost".equals(name)) {
+            span.acceptorHost = (String) args[0];
+        } else if ("recordParentApplication".equals(name)) {
+            span.parentApplicationName = (String) args[0];
+            span.parentApplicationType = (Short) args[1];
+        }
+        return defaultValue(method);
+    }
+
+    private Trace newTrace(final boolean sampled, final SpanRecorder spanRecorder, final SpanEventRecorder spanEventRecorder) {
+        return proxy(Trace.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                final String name = method.getName();
+                if ("canSampled".equals(name)) {
+                    return sampled;
+                }
+                if ("isRoot".equals(name)) {
+                    return currentSpan.get().root;
+                }
+                if ("getSpanRecorder".equals(name)) {
+                    return spanRecorder;
+                }
+                if ("traceBlockBegin".equals(name) || "currentSpanEventRecorder".equals(name)) {
+                    return spanEventRecorder;
+                }
+                if ("close".equals(name) && sampled) {
+                    closed();
+                }
+                return defaultValue(method);
+            }
+        });
+    }
+
+    private void closed() {
+        closedSpans.incrementAndGet();
+        if (collect) {
+            final RecordedSpan span = currentSpan.get();
+            collected.offer(span);
+            // the collected one is handed over, the next trace on this thread records into a new one
+            currentSpan.set(new RecordedSpan());
+        }
+    }
+
+    private TraceId newTraceId(long parentSpanId) {
+        return proxy(TraceId.class, new ParentSpanIdHolder(parentSpanId));
+    }
+
+    private Trace bind(Trace trace) {
+        currentTrace.set(trace);
+        return trace;
+    }
+
+    public TraceContext getTraceContext() {
+        return traceContext;
+    }
+
+    /**
+     * @param collect whether closed spans are kept for {@link #pollSpan(long)}
+     */
+    public void collect(boolean collect) {
+        this.collect = collect;
+    }
+
+    /**
+     * @return the oldest collected span, null when none arrives within timeoutMillis
+     */
+    public RecordedSpan pollSpan(long timeoutMillis) throws InterruptedException {
+        return collected.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return number of sampled traces closed so far
+     */
+    public long getClosedSpans() {
+        return closedSpans.get();
+    }
+
+    /**
+     * The TraceId returned by createTraceId(), remembering whether the caller sent a parent span.
+     */
+    private static class ParentSpanIdHolder implements InvocationHandler {
+        private final long parentSpanId;
+
+        ParentSpanIdHolder(long parentSpanId) {
+            this.parentSpanId = parentSpanId;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            if ("getParentSpanId".equals(method.getName())) {
+                return parentSpanId;
+            }
+            return defaultValue(method);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(CollectingTraceContext.class.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+
+    private static Object defaultValue(Method method) {
+        final Class<?> type = method.getReturnType();
+        if (!type.isPrimitive() || type == void.class) {
+            return null;
+        }
+        if (type == boolean.class) {
+            return Boolean.FALSE;
+        }
+        if (type == long.class) {
+            return 0L;
+        }
+        if (type == short.class) {
+            return (short) 0;
+        }
+        if (type == byte.class) {
+            return (byte) 0;
+        }
+        if (type == char.class) {
+            return (char) 0;
+        }
+        if (type == float.class) {
+            return 0F;
+        }
+        if (type == double.class) {
+            return 0D;
+        }
+        return 0;
+    }
+}
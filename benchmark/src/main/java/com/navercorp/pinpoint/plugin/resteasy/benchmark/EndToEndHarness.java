@@ -0,0 +1,252 @@
+/*
+ * Copyright 2014 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.navercorp.pinpoint.plugin.resteasy.benchmark;
+
+import com.navercorp.pinpoint.bootstrap.context.Header;
+import com.navercorp.pinpoint.bootstrap.interceptor.AroundInterceptor;
+import com.navercorp.pinpoint.plugin.resteasy.RequestDispatcherMethodDescriptor;
+import com.navercorp.pinpoint.plugin.resteasy.interceptor.RequestDispatcherServiceInterceptor;
+import com.navercorp.pinpoint.plugin.resteasy.metric.LatencySnapshot;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.Socket;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * End-to-end overhead of the plugin on a local {@link EmbeddedNettyServer}, Netty 3 or Netty 4 depending on the
+ * Maven profile the harness was built with.
+ * <p>
+ * Every mode runs the same closed-loop load against {@link SampleResource} and reports throughput, p50/p99
+ * latency and the bytes the server threads allocate per request:
+ * <ul>
+ * <li>OFF: RequestDispatcher without the interceptor</li>
+ * <li>SAMPLED: interceptor on, the agent sampler accepts one request in harness.samplingrate</li>
+ * <li>TRACED: interceptor on, every request is traced</li>
+ * </ul>
+ * Then the root spans of a few requests are checked against what was sent. The process exits with 1 when a
+ * span is wrong or TRACED loses more than harness.maxloss of the OFF throughput, so it can gate a build offline:
+ * <pre>
+ * mvn -f benchmark/pom.xml -Pnetty4 package
+ * java -cp benchmark/target/benchmarks.jar com.navercorp.pinpoint.plugin.resteasy.benchmark.EndToEndHarness
+ * </pre>
+ */
+public class EndToEndHarness {
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+    private static final String HOST = "127.0.0.1";
+    private static final String REAL_IP_HEADER = "X-Forwarded-For";
+    private static final String CLIENT_IP = "10.1.2.3";
+    private static final String CALLER_APPLICATION = "caller-app";
+    private static final short CALLER_APPLICATION_TYPE = 1910;
+    private static final String CALLER_HOST = "api.example.com:8080";
+
+    enum Mode {
+        OFF, SAMPLED, TRACED
+    }
+
+    private final int connections = Integer.getInteger("harness.connections", 16);
+    private final int warmupSeconds = Integer.getInteger("harness.warmup", 5);
+    private final int durationSeconds = Integer.getInteger("harness.duration", 10);
+    private final int samplingRate = Integer.getInteger("harness.samplingrate", 20);
+    private final double maxLoss = Double.parseDouble(System.getProperty("harness.maxloss", "0.3"));
+
+    private final List<String> failures = new ArrayList<String>();
+
+    public static void main(String[] args) throws Exception {
+        final EndToEndHarness harness = new EndToEndHarness();
+        harness.run();
+        if (!harness.failures.isEmpty()) {
+            for (String failure : harness.failures) {
+                System.out.println("FAILED " + failure);
+            }
+            System.exit(1);
+        }
+        System.out.println("OK");
+    }
+
+    private void run() throws Exception {
+        System.out.println((EmbeddedNettyServer.NETTY4 ? "netty4" : "netty3") + " connections=" + connections
+                + " warmup=" + warmupSeconds + "s duration=" + durationSeconds + "s samplingrate=" + samplingRate);
+        double offThroughput = 0;
+        for (Mode mode : Mode.values()) {
+            final double throughput = measure(mode);
+            if (mode == Mode.OFF) {
+                offThroughput = throughput;
+            }
+            if (mode == Mode.TRACED && maxLoss >= 0 && throughput < offThroughput * (1 - maxLoss)) {
+                failures.add(String.format("TRACED throughput %.0f req/s is more than %.0f%% below OFF %.0f req/s", throughput, maxLoss * 100, offThroughput));
+            }
+        }
+        verifySpans();
+    }
+
+    private static Properties newProperties() {
+        final Properties properties = new Properties();
+        properties.setProperty("profiler.resteasy.isnetty4", Boolean.toString(EmbeddedNettyServer.NETTY4));
+        properties.setProperty("profiler.resteasy.realipheader", REAL_IP_HEADER);
+        return properties;
+    }
+
+    /**
+     * @return requests per second
+     */
+    private double measure(Mode mode) throws Exception {
+        CollectingTraceContext traceContext = null;
+        AroundInterceptor interceptor = null;
+        if (mode != Mode.OFF) {
+            traceContext = new CollectingTraceContext(newProperties(), mode == Mode.SAMPLED ? samplingRate : 1);
+            interceptor = new RequestDispatcherServiceInterceptor(traceContext.getTraceContext(), new RequestDispatcherMethodDescriptor());
+        }
+        final EmbeddedNettyServer server = new EmbeddedNettyServer(interceptor);
+        final int port = server.start(SampleResource.class);
+        final LoadGenerator loadGenerator = new LoadGenerator(HOST, port,
+                LoadGenerator.get(HOST, port, "/orders/8812?expand=items", REAL_IP_HEADER + ": " + CLIENT_IP + "\r\n"), connections);
+        try {
+            loadGenerator.start();
+            Thread.sleep(warmupSeconds * 1000L);
+
+            final long[] clientThreadIds = loadGenerator.getThreadIds();
+            final long spansBefore = traceContext != null ? traceContext.getClosedSpans() : 0;
+            final long allocatedBefore = serverAllocatedBytes(clientThreadIds);
+            final long start = System.nanoTime();
+            loadGenerator.record();
+            Thread.sleep(durationSeconds * 1000L);
+            final LatencySnapshot snapshot = loadGenerator.snapshot();
+            final double seconds = (System.nanoTime() - start) / 1e9;
+            final long allocated = serverAllocatedBytes(clientThreadIds) - allocatedBefore;
+            final long spans = traceContext != null ? traceContext.getClosedSpans() - spansBefore : 0;
+
+            final long count = snapshot.getCount();
+            final double throughput = count / seconds;
+            System.out.println(String.format("%-8s %10.0f req/s  p50=%6dus  p99=%6dus  alloc=%8.1f MB/s %8d B/req  spans=%d errors=%d non2xx=%d",
+                    mode, throughput, snapshot.getValueAtQuantile(0.5), snapshot.getValueAtQuantile(0.99),
+                    allocated < 0 ? -1 : allocated / seconds / (1024 * 1024), allocated < 0 || count == 0 ? -1 : allocated / count,
+                    spans, loadGenerator.getErrors(), count - snapshot.getStatusCount(2)));
+            if (count == 0) {
+                failures.add(mode + " served no request");
+            } else if (count != snapshot.getStatusCount(2)) {
+                failures.add(mode + " answered " + (count - snapshot.getStatusCount(2)) + " requests with a non-2xx status");
+            }
+            if (mode == Mode.TRACED && spans < count) {
+                failures.add("TRACED closed " + spans + " spans for " + count + " requests");
+            }
+            return throughput;
+        } finally {
+            loadGenerator.stop();
+            server.stop();
+        }
+    }
+
+    /**
+     * @return bytes allocated so far by all live threads but the load generator's, -1 when the JVM does not tell
+     */
+    private static long serverAllocatedBytes(long[] clientThreadIds) {
+        final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        if (!(threadMXBean instanceof com.sun.management.ThreadMXBean)) {
+            return -1;
+        }
+        final com.sun.management.ThreadMXBean sunThreadMXBean = (com.sun.management.ThreadMXBean) threadMXBean;
+        if (!sunThreadMXBean.isThreadAllocatedMemorySupported() || !sunThreadMXBean.isThreadAllocatedMemoryEnabled()) {
+            return -1;
+        }
+        final long[] clients = clientThreadIds.clone();
+        Arrays.sort(clients);
+        final long[] threadIds = threadMXBean.getAllThreadIds();
+        final long[] allocatedBytes = sunThreadMXBean.getThreadAllocatedBytes(threadIds);
+        long total = 0;
+        for (int i = 0; i < threadIds.length; i++) {
+            if (allocatedBytes[i] > 0 && Arrays.binarySearch(clients, threadIds[i]) < 0) {
+                total += allocatedBytes[i];
+            }
+        }
+        return total;
+    }
+
+    private void verifySpans() throws Exception {
+        final CollectingTraceContext traceContext = new CollectingTraceContext(newProperties(), 1);
+        traceContext.collect(true);
+        final EmbeddedNettyServer server = new EmbeddedNettyServer(
+                new RequestDispatcherServiceInterceptor(traceContext.getTraceContext(), new RequestDispatcherMethodDescriptor()));
+        final int port = server.start(SampleResource.class);
+        final String endPoint = HOST + ":" + port;
+        try {
+            send(port, LoadGenerator.get(HOST, port, "/orders/42", ""));
+            final RecordedSpan direct = traceContext.pollSpan(5000);
+            check("direct request", direct, true, "/orders/42", endPoint, HOST, null, null, (short) 0);
+
+            send(port, LoadGenerator.get(HOST, port, "/orders/42?expand=items", REAL_IP_HEADER + ": " + CLIENT_IP + ", 10.0.0.1\r\n"));
+            final RecordedSpan proxied = traceContext.pollSpan(5000);
+            check("proxied request", proxied, true, "/orders/42", endPoint, CLIENT_IP, null, null, (short) 0);
+
+            send(port, LoadGenerator.get(HOST, port, "/orders/43", continuedTraceHeaders()));
+            final RecordedSpan continued = traceContext.pollSpan(5000);
+            check("continued trace", continued, false, "/orders/43", endPoint, HOST, CALLER_HOST, CALLER_APPLICATION, CALLER_APPLICATION_TYPE);
+        } finally {
+            server.stop();
+        }
+    }
+
+    private static String continuedTraceHeaders() {
+        return Header.HTTP_TRACE_ID + ": caller-agent^1476000000000^1234\r\n"
+                + Header.HTTP_PARENT_SPAN_ID + ": -4591737436428430017\r\n"
+                + Header.HTTP_SPAN_ID + ": 7853436781612871522\r\n"
+                + Header.HTTP_FLAGS + ": 0\r\n"
+                + Header.HTTP_SAMPLED + ": s1\r\n"
+                + Header.HTTP_PARENT_APPLICATION_NAME + ": " + CALLER_APPLICATION + "\r\n"
+                + Header.HTTP_PARENT_APPLICATION_TYPE + ": " + CALLER_APPLICATION_TYPE + "\r\n"
+                + Header.HTTP_HOST + ": " + CALLER_HOST + "\r\n";
+    }
+
+    private void check(String name, RecordedSpan span, boolean root, String rpcName, String endPoint, String remoteAddress,
+                       String acceptorHost, String parentApplicationName, short parentApplicationType) {
+        if (span == null) {
+            failures.add(name + ": no span");
+            return;
+        }
+        System.out.println(name + " " + span);
+        checkEquals(name, "root", root, span.isRoot());
+        checkEquals(name, "rpcName", rpcName, span.getRpcName());
+        checkEquals(name, "endPoint", endPoint, span.getEndPoint());
+        checkEquals(name, "remoteAddress", remoteAddress, span.getRemoteAddress());
+        checkEquals(name, "acceptorHost", acceptorHost, span.getAcceptorHost());
+        checkEquals(name, "parentApplicationName", parentApplicationName, span.getParentApplicationName());
+        checkEquals(name, "parentApplicationType", parentApplicationType, span.getParentApplicationType());
+    }
+
+    private void checkEquals(String name, String field, Object expected, Object actual) {
+        if (expected == null ? actual != null : !expected.equals(actual)) {
+            failures.add(name + ": " + field + " expected:" + expected + " actual:" + actual);
+        }
+    }
+
+    private static void send(int port, String request) throws IOException {
+        final Socket socket = new Socket(HOST, port);
+        try {
+            socket.getOutputStream().write(request.getBytes(ASCII));
+            final InputStream in = new BufferedInputStream(socket.getInputStream());
+            LoadGenerator.readResponse(in, new byte[8192]);
+        } finally {
+            socket.close();
+        }
+    }
+}
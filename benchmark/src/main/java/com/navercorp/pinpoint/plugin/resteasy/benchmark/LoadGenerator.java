@@ -0,0 +1,243 @@
+/*
+ * Copyright 2014 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.navercorp.pinpoint.plugin.resteasy.benchmark;
+
+import com.navercorp.pinpoint.plugin.resteasy.metric.LatencyHistogram;
+import com.navercorp.pinpoint.plugin.resteasy.metric.LatencySnapshot;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Closed-loop HTTP/1.1 client: each thread owns one keep-alive connection and sends the next request as soon as
+ * the previous response is read. Requests are pre-encoded and responses are parsed in place, so the client adds
+ * next to no allocation of its own.
+ */
+public class LoadGenerator {
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+
+    private final String host;
+    private final int port;
+    private final byte[] request;
+    private final int connections;
+
+    private final LatencyHistogram histogram;
+    private final AtomicLong errors = new AtomicLong();
+    private final List<Thread> threads = new ArrayList<Thread>();
+    private volatile boolean running;
+    private volatile boolean recording;
+
+    public LoadGenerator(String host, int port, String request, int connections) {
+        this.host = host;
+        this.port = port;
+        this.request = request.getBytes(ASCII);
+        this.connections = connections;
+        this.histogram = new LatencyHistogram(connections);
+    }
+
+    /**
+     * @return a GET request for path with the given extra header lines, each ending with CRLF
+     */
+    public static String get(String host, int port, String path, String headers) {
+        return "GET " + path + " HTTP/1.1\r\nHost: " + host + ":" + port + "\r\nAccept: application/json\r\n" + headers + "\r\n";
+    }
+
+    public void start() {
+        running = true;
+        for (int i = 0; i < connections; i++) {
+            final Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    drive();
+                }
+            }, "load-generator-" + i);
+            thread.setDaemon(true);
+            threads.add(thread);
+            thread.start();
+        }
+    }
+
+    /**
+     * Starts recording latencies; what was recorded before is dropped.
+     */
+    public void record() {
+        histogram.snapshotAndReset();
+        errors.set(0);
+        recording = true;
+    }
+
+    public LatencySnapshot snapshot() {
+        return histogram.snapshotAndReset();
+    }
+
+    public long getErrors() {
+        return errors.get();
+    }
+
+    public void stop() throws InterruptedException {
+        running = false;
+        recording = false;
+        for (Thread thread : threads) {
+            thread.join(5000);
+        }
+        threads.clear();
+    }
+
+    /**
+     * @return ids of the client threads, whose allocations are not the server's
+     */
+    public long[] getThreadIds() {
+        final long[] ids = new long[threads.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = threads.get(i).getId();
+        }
+        return ids;
+    }
+
+    private void drive() {
+        final byte[] buffer = new byte[8192];
+        while (running) {
+            Socket socket = null;
+            try {
+                socket = new Socket(host, port);
+                socket.setTcpNoDelay(true);
+                final OutputStream out = socket.getOutputStream();
+                final InputStream in = new BufferedInputStream(socket.getInputStream(), buffer.length);
+                while (running) {
+                    final long start = System.nanoTime();
+                    out.write(request);
+                    out.flush();
+                    final int status = readResponse(in, buffer);
+                    if (recording) {
+                        histogram.record((System.nanoTime() - start) / 1000, status, false);
+                    }
+                }
+            } catch (IOException e) {
+                if (running) {
+                    errors.incrementAndGet();
+                }
+            } finally {
+                close(socket);
+            }
+        }
+    }
+
+    /**
+     * Reads one response, body included.
+     *
+     * @return the status code
+     */
+    static int readResponse(InputStream in, byte[] buffer) throws IOException {
+        int status = -1;
+        long contentLength = 0;
+        boolean chunked = false;
+        int length;
+        while ((length = readLine(in, buffer)) > 0) {
+            if (status == -1) {
+                // HTTP/1.1 200 OK
+                status = (buffer[9] - '0') * 100 + (buffer[10] - '0') * 10 + (buffer[11] - '0');
+            } else if (startsWithIgnoreCase(buffer, length, "Content-Length:")) {
+                contentLength = Long.parseLong(new String(buffer, 15, length - 15, ASCII).trim());
+            } else if (startsWithIgnoreCase(buffer, length, "Transfer-Encoding:") && indexOf(buffer, length, "chunked") != -1) {
+                chunked = true;
+            }
+        }
+        if (length == -1) {
+            throw new IOException("connection closed");
+        }
+        if (!chunked) {
+            skip(in, contentLength);
+            return status;
+        }
+        while (true) {
+            final int sizeLength = readLine(in, buffer);
+            if (sizeLength == -1) {
+                throw new IOException("connection closed");
+            }
+            final long chunkSize = Long.parseLong(new String(buffer, 0, sizeLength, ASCII).trim(), 16);
+            skip(in, chunkSize);
+            readLine(in, buffer);
+            if (chunkSize == 0) {
+                return status;
+            }
+        }
+    }
+
+    /**
+     * @return length of the line without CRLF, -1 at end of stream
+     */
+    private static int readLine(InputStream in, byte[] buffer) throws IOException {
+        int length = 0;
+        int b;
+        while ((b = in.read()) != -1) {
+            if (b == '\n') {
+                return length > 0 && buffer[length - 1] == '\r' ? length - 1 : length;
+            }
+            if (length < buffer.length) {
+                buffer[length++] = (byte) b;
+            }
+        }
+        return -1;
+    }
+
+    private static void skip(InputStream in, long count) throws IOException {
+        while (count > 0) {
+            final long skipped = in.skip(count);
+            if (skipped <= 0) {
+                if (in.read() == -1) {
+                    throw new IOException("connection closed");
+                }
+                count--;
+            } else {
+                count -= skipped;
+            }
+        }
+    }
+
+    private static boolean startsWithIgnoreCase(byte[] buffer, int length, String prefix) {
+        if (length < prefix.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (Character.toLowerCase((char) buffer[i]) != Character.toLowerCase(prefix.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int indexOf(byte[] buffer, int length, String value) {
+        return new String(buffer, 0, length, ASCII).indexOf(value);
+    }
+
+    private static void close(Socket socket) {
+        if (socket == null) {
+            return;
+        }
+        try {
+            socket.close();
+        } catch (IOException ignore) {
+            // nothing to do
+        }
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2014 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.navercorp.pinpoint.plugin.resteasy.benchmark;
+
+/**
+ * Root span fields recorded by the interceptor, as {@link CollectingTraceContext} hands them to the collector.
+ */
+public class RecordedSpan {
+    boolean root;
+    String rpcName;
+    String endPoint;
+    String remoteAddress;
+    String acceptorHost;
+    String parentApplicationName;
+    short parentApplicationType;
+
+    void reset(boolean root) {
+        this.root = root;
+        this.rpcName = null;
+        this.endPoint = null;
+        this.remoteAddress = null;
+        this.acceptorHost = null;
+        this.parentApplicationName = null;
+        this.parentApplicationType = 0;
+    }
+
+    public boolean isRoot() {
+        return root;
+    }
+
+    public String getRpcName() {
+        return rpcName;
+    }
+
+    public String getEndPoint() {
+        return endPoint;
+    }
+
+    public String getRemoteAddress() {
+        return remoteAddress;
+    }
+
+    public String getAcceptorHost() {
+        return acceptorHost;
+    }
+
+    public String getParentApplicationName() {
+        return parentApplicationName;
+    }
+
+    public short getParentApplicationType() {
+        return parentApplicationType;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("RecordedSpan{");
+        sb.append("root=").append(root);
+        sb.append(", rpcName='").append(rpcName).append('\'');
+        sb.append(", endPoint='").append(endPoint).append('\'');
+        sb.append(", remoteAddress='").append(remoteAddress).append('\'');
+        sb.append(", acceptorHost='").append(acceptorHost).append('\'');
+        sb.append(", parentApplicationName='").append(parentApplicationName).append('\'');
+        sb.append(", parentApplicationType=").append(parentApplicationType);
+        sb.append('}');
+        return sb.toString();
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2014 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.pinpoint.plugin.resteasy.benchmark;
+
+import com.navercorp.pinpoint.bootstrap.context.Header;
+import com.navercorp.pinpoint.plugin.resteasy.RequestDispatcherMethodDescriptor;
+import com.navercorp.pinpoint.plugin.resteasy.interceptor.RequestDispatcherServiceInterceptor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of one {@link RequestDispatcherServiceInterceptor#before(Object, Object[])} /
+ * {@link RequestDispatcherServiceInterceptor#after(Object, Object[], Object, Throwable)} pair, i.e. the
+ * overhead the plugin adds to every {@code RequestDispatcher.service()} call.
+ * <p>
+ * Run with {@code java -jar target/benchmarks.jar RequestDispatcherServiceInterceptorBenchmark -prof gc}
+ * to get bytes allocated per request ({@code gc.alloc.rate.norm}) next to ns/op.
+ * <p>
+ * The request comes in on a real embedded Netty channel with a response that takes the response transfer,
+ * so connection metadata caching, status recording and the hand-over to NettyHttpResponse.finish() are part
+ * of the measured cost.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RequestDispatcherServiceInterceptorBenchmark {
+
+    public enum Scenario {
+        /** no Pinpoint headers, the agent sampler accepts: a new trace is started and recorded */
+        NEW_TRACE,
+        /** no Pinpoint headers, the agent sampler rejects: a new trace is created but not recorded */
+        UNSAMPLED,
+        /** the caller sent Pinpoint-Sampled: s0 */
+        SAMPLING_FLAG_OFF,
+        /** all Pinpoint headers present: the caller's trace is continued and recorded */
+        CONTINUED_TRACE,
+        /** the path matches profiler.resteasy.excludeurl */
+        EXCLUDED_URL
+    }
+
+    static final String HOST = "api.example.com:8080";
+    static final String EXCLUDE_URL = "/health,/metrics/**";
+
+    @Param
+    public Scenario scenario;
+
+    private StandInTraceContext standInTraceContext;
+    private RequestDispatcherServiceInterceptor interceptor;
+    private Object target;
+    private StandInHttpResponse response;
+    private Object[] args;
+
+    @Setup
+    public void setup() {
+        final Properties properties = new Properties();
+        properties.setProperty("profiler.resteasy.excludeurl", EXCLUDE_URL);
+        properties.setProperty("profiler.resteasy.realipheader", "X-Forwarded-For");
+        properties.setProperty("profiler.resteasy.isnetty4", Boolean.toString(EmbeddedNettyServer.NETTY4));
+        properties.setProperty("profiler.resteasy.responsetransfer.enable", "true");
+
+        this.standInTraceContext = new StandInTraceContext(properties);
+        this.interceptor = new RequestDispatcherServiceInterceptor(standInTraceContext, new RequestDispatcherMethodDescriptor());
+        this.target = new Object();
+
+        final StandInHttpRequest request;
+        switch (scenario) {
+            case EXCLUDED_URL:
+                request = new StandInHttpRequest("GET", HOST, "/health");
+                break;
+            case SAMPLING_FLAG_OFF:
+                request = newRequest();
+                request.header(Header.HTTP_SAMPLED.toString(), "s0");
+                break;
+            case CONTINUED_TRACE:
+                request = newRequest();
+                request.header(Header.HTTP_TRACE_ID.toString(), "caller-agent^1476000000000^1234");
+                request.header(Header.HTTP_PARENT_SPAN_ID.toString(), "-4591737436428430017");
+                request.header(Header.HTTP_SPAN_ID.toString(), "7853436781612871522");
+                request.header(Header.HTTP_FLAGS.toString(), "0");
+                request.header(Header.HTTP_SAMPLED.toString(), "s1");
+                request.header(Header.HTTP_PARENT_APPLICATION_NAME.toString(), "caller-app");
+                request.header(Header.HTTP_PARENT_APPLICATION_TYPE.toString(), "1910");
+                request.header(Header.HTTP_HOST.toString(), HOST);
+                standInTraceContext.setRootSpan(false);
+                break;
+            case UNSAMPLED:
+                request = newRequest();
+                standInTraceContext.setSamplerAccepts(false);
+                break;
+            default:
+                request = newRequest();
+                break;
+        }
+        this.response = new StandInHttpResponse();
+        this.args = new Object[]{StandInChannelHandlerContext.create(), request, response, Boolean.TRUE};
+    }
+
+    private static StandInHttpRequest newRequest() {
+        final StandInHttpRequest request = new StandInHttpRequest("GET", HOST, "/orders/8812/items/3?expand=details&lang=en");
+        request.header("X-Forwarded-For", "10.1.2.3, 10.0.0.1");
+        request.header("Accept", "application/json");
+        request.header("User-Agent", "benchmark");
+        return request;
+    }
+
+    @Benchmark
+    public void beforeAfter() {
+        interceptor.before(target, args);
+        interceptor.after(target, args, null, null);
+        response.finish();
+    }
+}
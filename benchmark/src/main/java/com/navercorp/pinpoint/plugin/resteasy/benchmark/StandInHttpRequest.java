@@ -0,0 +1,155 @@
+/*
+ * Copyright 2014 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.navercorp.pinpoint.plugin.resteasy.benchmark;
+
+import org.jboss.resteasy.specimpl.MultivaluedMapImpl;
+import org.jboss.resteasy.specimpl.ResteasyHttpHeaders;
+import org.jboss.resteasy.spi.HttpRequest;
+import org.jboss.resteasy.spi.ResteasyAsynchronousContext;
+import org.jboss.resteasy.spi.ResteasyUriInfo;
+import org.jboss.resteasy.util.CaseInsensitiveMap;
+
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MultivaluedMap;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Minimal {@link HttpRequest} built the same way the Netty request decoder builds one: a case-insensitive
+ * header map and a {@link ResteasyUriInfo} made of the base URI and the request URI.
+ */
+public class StandInHttpRequest implements HttpRequest {
+
+    private final ResteasyHttpHeaders httpHeaders;
+    private final CaseInsensitiveMap<String> headers;
+    private final Map<String, Object> attributes = new HashMap<String, Object>();
+    private ResteasyUriInfo uri;
+    private String httpMethod;
+    private InputStream inputStream = new ByteArrayInputStream(new byte[0]);
+
+    public StandInHttpRequest(String httpMethod, String host, String requestUri) {
+        this.httpMethod = httpMethod;
+        this.headers = new CaseInsensitiveMap<String>();
+        this.headers.add("Host", host);
+        this.httpHeaders = new ResteasyHttpHeaders(headers);
+        this.uri = new ResteasyUriInfo(URI.create("http://" + host + "/"), URI.create(requestUri));
+    }
+
+    public StandInHttpRequest header(String name, String value) {
+        headers.add(name, value);
+        return this;
+    }
+
+    @Override
+    public HttpHeaders getHttpHeaders() {
+        return httpHeaders;
+    }
+
+    @Override
+    public MultivaluedMap<String, String> getMutableHeaders() {
+        return headers;
+    }
+
+    @Override
+    public InputStream getInputStream() {
+        return inputStream;
+    }
+
+    @Override
+    public void setInputStream(InputStream stream) {
+        this.inputStream = stream;
+    }
+
+    @Override
+    public ResteasyUriInfo getUri() {
+        return uri;
+    }
+
+    @Override
+    public String getHttpMethod() {
+        return httpMethod;
+    }
+
+    @Override
+    public void setHttpMethod(String method) {
+        this.httpMethod = method;
+    }
+
+    @Override
+    public void setRequestUri(URI requestUri) throws IllegalStateException {
+        this.uri = new ResteasyUriInfo(uri.getBaseUri(), requestUri);
+    }
+
+    @Override
+    public void setRequestUri(URI baseUri, URI requestUri) throws IllegalStateException {
+        this.uri = new ResteasyUriInfo(baseUri, requestUri);
+    }
+
+    @Override
+    public MultivaluedMap<String, String> getFormParameters() {
+        return new MultivaluedMapImpl<String, String>();
+    }
+
+    @Override
+    public MultivaluedMap<String, String> getDecodedFormParameters() {
+        return new MultivaluedMapImpl<String, String>();
+    }
+
+    @Override
+    public Object getAttribute(String attribute) {
+        return attributes.get(attribute);
+    }
+
+    @Override
+    public void setAttribute(String name, Object value) {
+        attributes.put(name, value);
+    }
+
+    @Override
+    public void removeAttribute(String name) {
+        attributes.remove(name);
+    }
+
+    @Override
+    public Enumeration<String> getAttributeNames() {
+        return Collections.enumeration(attributes.keySet());
+    }
+
+    @Override
+    public ResteasyAsynchronousContext getAsyncContext() {
+        return null;
+    }
+
+    @Override
+    public boolean isInitial() {
+        return true;
+    }
+
+    @Override
+    public void forward(String path) {
+    }
+
+    @Override
+    public boolean wasForwarded() {
+        return false;
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2014 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.navercorp.pinpoint.plugin.resteasy.benchmark;
+package com.navercorp.pinpoint.plugin.resteasy.benchmark;
+
+import com.navercorp.pinpoint.plugin.resteasy.ResponseTransfer;
+import com.navercorp.pinpoint.plugin.resteasy.ResponseTransferAccessor;
+import org.jboss.resteasy.specimpl.MultivaluedMapImpl;
+import org.jboss.resteasy.spi.HttpResponse;
+
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.NewCookie;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+
+/**
+ * Minimal {@link HttpResponse} carrying the field the agent adds to NettyHttpResponse, so the status and
+ * response transfer paths of the interceptor run as they do on a real response.
+ */
+public class StandInHttpResponse implements HttpResponse, ResponseTransferAccessor {
+
+    private final MultivaluedMap<String, Object> outputHeaders = new MultivaluedMapImpl<String, Object>();
+    private OutputStream outputStream = new ByteArrayOutputStream();
+    private int status = 200;
+    private ResponseTransfer responseTransfer;
+
+    /**
+     * What NettyHttpResponse.finish() does to the response transfer, minus the channel write.
+     */
+    public void finish() {
+        final ResponseTransfer transfer = responseTransfer;
+        if (transfer != null) {
+            responseTransfer = null;
+            transfer.firstByte();
+            transfer.complete(true);
+        }
+    }
+
+    @Override
+    public void _$PINPOINT$_setResponseTransfer(ResponseTransfer responseTransfer) {
+        this.responseTransfer = responseTransfer;
+    }
+
+    @Override
+    public ResponseTransfer _$PINPOINT$_getResponseTransfer() {
+        return responseTransfer;
+    }
+
+    @Override
+    public int getStatus() {
+        return status;
+    }
+
+    @Override
+    public void setStatus(int status) {
+        this.status = status;
+    }
+
+    @Override
+    public MultivaluedMap<String, Object> getOutputHeaders() {
+        return outputHeaders;
+    }
+
+    @Override
+    public OutputStream getOutputStream() {
+        return outputStream;
+    }
+
+    @Override
+    public void setOutputStream(OutputStream os) {
+        this.outputStream = os;
+    }
+
+    @Override
+    public void addNewCookie(NewCookie cookie) {
+    }
+
+    @Override
+    public void sendError(int status) {
+        this.status = status;
+    }
+
+    @Override
+    public void sendError(int status, String message) {
+        this.status = status;
+    }
+
+    @Override
+    public boolean isCommitted() {
+        return false;
+    }
+
+    @Override
+    public void reset() {
+        status = 200;
+        outputHeaders.clear();
+    }
+
+    // not declared by every 3.0.x HttpResponse
+    public void flushBuffer() {
+    }
+}
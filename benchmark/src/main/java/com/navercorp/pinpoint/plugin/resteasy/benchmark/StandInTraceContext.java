@@ -0,0 +1,491 @@
+/*
+ * Copyright 2014 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.navercorp.pinpoint.plugin.resteasy.benchmark;
+
+import com.navercorp.pinpoint.bootstrap.config.DefaultProfilerConfig;
+import com.navercorp.pinpoint.bootstrap.config.ProfilerConfig;
+import com.navercorp.pinpoint.bootstrap.context.AsyncTraceId;
+import com.navercorp.pinpoint.bootstrap.context.DatabaseInfo;
+import com.navercorp.pinpoint.bootstrap.context.MethodDescriptor;
+import com.navercorp.pinpoint.bootstrap.context.ParsingResult;
+import com.navercorp.pinpoint.bootstrap.context.ServerMetaDataHolder;
+import com.navercorp.pinpoint.bootstrap.context.SpanEventRecorder;
+import com.navercorp.pinpoint.bootstrap.context.SpanRecorder;
+import com.navercorp.pinpoint.bootstrap.context.Trace;
+import com.navercorp.pinpoint.bootstrap.context.TraceContext;
+import com.navercorp.pinpoint.bootstrap.context.TraceId;
+import com.navercorp.pinpoint.bootstrap.context.scope.TraceScope;
+import com.navercorp.pinpoint.common.trace.AnnotationKey;
+import com.navercorp.pinpoint.common.trace.LoggingInfo;
+import com.navercorp.pinpoint.common.trace.ServiceType;
+
+import java.util.Properties;
+
+/**
+ * Stand-in for the agent side of a {@link TraceContext}: no span is ever sent, the recorders discard
+ * everything and the "current" trace is a plain field instead of a thread local.
+ * <p>
+ * Plain classes rather than dynamic proxies, so a call into the stand-in allocates nothing and the bytes/op
+ * reported by {@code -prof gc} are the interceptor's own. The methods carry no @Override: the Pinpoint
+ * interfaces gain and lose methods between bootstrap-core releases, and the stand-in implements those of 1.6.0
+ * plus the ones its neighbours add or drop.
+ */
+public class StandInTraceContext implements TraceContext {
+
+    private final ProfilerConfig profilerConfig;
+    private final StandInTraceId traceId = new StandInTraceId();
+    private final StandInSpanRecorder spanRecorder = new StandInSpanRecorder();
+    private final StandInSpanEventRecorder spanEventRecorder = new StandInSpanEventRecorder();
+    private final StandInTrace sampledTrace = new StandInTrace(true);
+    private final StandInTrace unsampledTrace = new StandInTrace(false);
+
+    private boolean samplerAccepts = true;
+    private boolean rootSpan = true;
+    private Trace currentTrace;
+
+    public StandInTraceContext(Properties properties) {
+        this.profilerConfig = new DefaultProfilerConfig(properties);
+    }
+
+    /**
+     * @param samplerAccepts whether the agent-wide sampler accepts new traces
+     */
+    public void setSamplerAccepts(boolean samplerAccepts) {
+        this.samplerAccepts = samplerAccepts;
+    }
+
+    /**
+     * @param rootSpan false when the request continues a trace started by a caller
+     */
+    public void setRootSpan(boolean rootSpan) {
+        this.rootSpan = rootSpan;
+    }
+
+    private Trace bind(Trace trace) {
+        this.currentTrace = trace;
+        return trace;
+    }
+
+    public Trace currentTraceObject() {
+        final Trace trace = currentTrace;
+        return trace != null && trace.canSampled() ? trace : null;
+    }
+
+    public Trace currentRawTraceObject() {
+        return currentTrace;
+    }
+
+    public Trace continueTraceObject(TraceId traceId) {
+        return bind(sampledTrace);
+    }
+
+    public Trace continueTraceObject(Trace trace) {
+        return bind(trace);
+    }
+
+    public Trace newTraceObject() {
+        return bind(samplerAccepts ? sampledTrace : unsampledTrace);
+    }
+
+    public Trace continueAsyncTraceObject(AsyncTraceId traceId, int asyncId, long startTime) {
+        return bind(sampledTrace);
+    }
+
+    public Trace removeTraceObject() {
+        final Trace trace = currentTrace;
+        currentTrace = null;
+        return trace;
+    }
+
+    public Trace disableSampling() {
+        return bind(unsampledTrace);
+    }
+
+    public TraceId createTraceId(String transactionId, long parentSpanId, long spanId, short flags) {
+        return traceId;
+    }
+
+    public String getAgentId() {
+        return "benchmark-agent";
+    }
+
+    public String getApplicationName() {
+        return "benchmark";
+    }
+
+    public long getAgentStartTime() {
+        return 0;
+    }
+
+    public short getServerTypeCode() {
+        return 0;
+    }
+
+    public String getServerType() {
+        return null;
+    }
+
+    public int cacheApi(MethodDescriptor methodDescriptor) {
+        return 0;
+    }
+
+    public int cacheString(String value) {
+        return 0;
+    }
+
+    public ParsingResult parseSql(String sql) {
+        return null;
+    }
+
+    public boolean cacheSql(ParsingResult parsingResult) {
+        return false;
+    }
+
+    public DatabaseInfo parseJdbcUrl(String url) {
+        return null;
+    }
+
+    public DatabaseInfo createDatabaseInfo(ServiceType type, ServiceType executeQueryType, String url, int port, String databaseId) {
+        return null;
+    }
+
+    public ProfilerConfig getProfilerConfig() {
+        return profilerConfig;
+    }
+
+    public ServerMetaDataHolder getServerMetaDataHolder() {
+        return null;
+    }
+
+    public int getAsyncId() {
+        return 0;
+    }
+
+    public void recordContextMetricIsError() {
+    }
+
+    public void recordContextMetric(int elapsedTime) {
+    }
+
+    public void recordAcceptResponseTime(String parentApplicationName, short parentApplicationType, int elapsedTime) {
+    }
+
+    public void recordUserAcceptResponseTime(int elapsedTime) {
+    }
+
+    private class StandInTrace implements Trace {
+        private final boolean sampled;
+
+        StandInTrace(boolean sampled) {
+            this.sampled = sampled;
+        }
+
+        public long getId() {
+            return 0;
+        }
+
+        public long getStartTime() {
+            return 0;
+        }
+
+        public Thread getBindThread() {
+            return null;
+        }
+
+        public TraceId getTraceId() {
+            return traceId;
+        }
+
+        public AsyncTraceId getAsyncTraceId() {
+            return null;
+        }
+
+        public AsyncTraceId getAsyncTraceId(boolean closeable) {
+            return null;
+        }
+
+        public boolean canSampled() {
+            return sampled;
+        }
+
+        public boolean isRoot() {
+            return rootSpan;
+        }
+
+        public boolean isAsync() {
+            return false;
+        }
+
+        public SpanRecorder getSpanRecorder() {
+            return spanRecorder;
+        }
+
+        public SpanEventRecorder currentSpanEventRecorder() {
+            return spanEventRecorder;
+        }
+
+        public SpanEventRecorder traceBlockBegin() {
+            return spanEventRecorder;
+        }
+
+        public SpanEventRecorder traceBlockBegin(int stackId) {
+            return spanEventRecorder;
+        }
+
+        public void traceBlockEnd() {
+        }
+
+        public void traceBlockEnd(int stackId) {
+        }
+
+        public boolean isRootStack() {
+            return true;
+        }
+
+        public int getCallStackFrameId() {
+            return 0;
+        }
+
+        public void close() {
+        }
+
+        public void flush() {
+        }
+
+        public TraceScope getScope(String name) {
+            return null;
+        }
+
+        public TraceScope addScope(String name) {
+            return null;
+        }
+    }
+
+    private class StandInSpanRecorder implements SpanRecorder {
+
+        public boolean canSampled() {
+            return true;
+        }
+
+        public boolean isRoot() {
+            return rootSpan;
+        }
+
+        public void recordStartTime(long startTime) {
+        }
+
+        public void recordTime(boolean time) {
+        }
+
+        public void recordException(Throwable throwable) {
+        }
+
+        public void recordException(boolean markError, Throwable throwable) {
+        }
+
+        public void recordApiId(int apiId) {
+        }
+
+        public void recordApi(MethodDescriptor methodDescriptor) {
+        }
+
+        public void recordApi(MethodDescriptor methodDescriptor, Object[] args) {
+        }
+
+        public void recordApi(MethodDescriptor methodDescriptor, Object args, int index) {
+        }
+
+        public void recordApi(MethodDescriptor methodDescriptor, Object[] args, int start, int end) {
+        }
+
+        public void recordApiCachedString(MethodDescriptor methodDescriptor, String args, int index) {
+        }
+
+        public void recordAttribute(AnnotationKey key, String value) {
+        }
+
+        public void recordAttribute(AnnotationKey key, int value) {
+        }
+
+        public void recordAttribute(AnnotationKey key, Object value) {
+        }
+
+        public void recordServiceType(ServiceType serviceType) {
+        }
+
+        public void recordRpcName(String rpc) {
+        }
+
+        public void recordRemoteAddress(String remoteAddress) {
+        }
+
+        public void recordEndPoint(String endPoint) {
+        }
+
+        public void recordParentApplication(String parentApplicationName, short parentApplicationType) {
+        }
+
+        public void recordAcceptorHost(String host) {
+        }
+
+        public void recordLogging(LoggingInfo loggingInfo) {
+        }
+
+        public Object attachFrameObject(Object frameObject) {
+            return null;
+        }
+
+        public Object getFrameObject() {
+            return null;
+        }
+
+        public Object detachFrameObject() {
+            return null;
+        }
+    }
+
+    private static class StandInSpanEventRecorder implements SpanEventRecorder {
+
+        public void recordTime(boolean time) {
+        }
+
+        public void recordException(Throwable throwable) {
+        }
+
+        public void recordException(boolean markError, Throwable throwable) {
+        }
+
+        public void recordApiId(int apiId) {
+        }
+
+        public void recordApi(MethodDescriptor methodDescriptor) {
+        }
+
+        public void recordApi(MethodDescriptor methodDescriptor, Object[] args) {
+        }
+
+        public void recordApi(MethodDescriptor methodDescriptor, Object args, int index) {
+        }
+
+        public void recordApi(MethodDescriptor methodDescriptor, Object[] args, int start, int end) {
+        }
+
+        public void recordApiCachedString(MethodDescriptor methodDescriptor, String args, int index) {
+        }
+
+        public ParsingResult recordSqlInfo(String sql) {
+            return null;
+        }
+
+        public void recordSqlParsingResult(ParsingResult parsingResult) {
+        }
+
+        public void recordSqlParsingResult(ParsingResult parsingResult, String bindValue) {
+        }
+
+        public void recordAttribute(AnnotationKey key, String value) {
+        }
+
+        public void recordAttribute(AnnotationKey key, int value) {
+        }
+
+        public void recordAttribute(AnnotationKey key, Object value) {
+        }
+
+        public void recordServiceType(ServiceType serviceType) {
+        }
+
+        public void recordRpcName(String rpc) {
+        }
+
+        public void recordDestinationId(String destinationId) {
+        }
+
+        public void recordEndPoint(String endPoint) {
+        }
+
+        public void recordNextSpanId(long spanId) {
+        }
+
+        public void recordAsyncId(int asyncId) {
+        }
+
+        public void recordNextAsyncId(int asyncId) {
+        }
+
+        public void recordAsyncSequence(short sequence) {
+        }
+
+        public AsyncTraceId recordNextAsyncId() {
+            return null;
+        }
+
+        public AsyncTraceId recordNextAsyncId(boolean closeable) {
+            return null;
+        }
+
+        public Object attachFrameObject(Object frameObject) {
+            return null;
+        }
+
+        public Object getFrameObject() {
+            return null;
+        }
+
+        public Object detachFrameObject() {
+            return null;
+        }
+    }
+
+    private static class StandInTraceId implements TraceId {
+
+        public TraceId getNextTraceId() {
+            return this;
+        }
+
+        public long getSpanId() {
+            return 0;
+        }
+
+        public String getTransactionId() {
+            return "benchmark-agent^0^0";
+        }
+
+        public String getAgentId() {
+            return "benchmark-agent";
+        }
+
+        public long getAgentStartTime() {
+            return 0;
+        }
+
+        public long getTransactionSequence() {
+            return 0;
+        }
+
+        public long getParentSpanId() {
+            return -1;
+        }
+
+        public short getFlags() {
+            return 0;
+        }
+
+        public boolean isRoot() {
+            return true;
+        }
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2014 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.navercorp.pinpoint.plugin.resteasy.benchmark;
+
+import com.navercorp.pinpoint.bootstrap.interceptor.AroundInterceptor;
+import org.jboss.netty.bootstrap.ServerBootstrap;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.ChannelPipeline;
+import org.jboss.netty.channel.ChannelPipelineFactory;
+import org.jboss.netty.channel.Channels;
+import org.jboss.netty.channel.socket.nio.NioServerSocketChannelFactory;
+import org.jboss.netty.handler.codec.http.HttpChunkAggregator;
+import org.jboss.netty.handler.codec.http.HttpRequestDecoder;
+import org.jboss.netty.handler.codec.http.HttpResponseEncoder;
+import org.jboss.netty.handler.execution.ExecutionHandler;
+import org.jboss.netty.handler.execution.OrderedMemoryAwareThreadPoolExecutor;
+import org.jboss.resteasy.core.SynchronousDispatcher;
+import org.jboss.resteasy.plugins.server.netty.RequestDispatcher;
+import org.jboss.resteasy.plugins.server.netty.RequestHandler;
+import org.jboss.resteasy.plugins.server.netty.RestEasyHttpRequestDecoder;
+import org.jboss.resteasy.plugins.server.netty.RestEasyHttpResponseEncoder;
+import org.jboss.resteasy.spi.HttpRequest;
+import org.jboss.resteasy.spi.HttpResponse;
+import org.jboss.resteasy.spi.ResteasyDeployment;
+import org.jboss.resteasy.spi.ResteasyProviderFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.Executors;
+
+/**
+ * Netty 3 NettyJaxrsServer, built handler by handler as NettyJaxrsServer.start() and HttpServerPipelineFactory
+ * build it, with an {@link ExecutionHandler} of executorThreadCount threads in front of the RequestHandler.
+ * <p>
+ * Without an agent nothing rewrites RequestDispatcher, so it is replaced by a subclass that calls the
+ * interceptor around service() the way the injected bytecode does.
+ */
+public class EmbeddedNettyServer {
+    public static final boolean NETTY4 = false;
+
+    private static final int EXECUTOR_THREAD_COUNT = 16;
+    private static final int MAX_REQUEST_SIZE = 10 * 1024 * 1024;
+
+    private final AroundInterceptor interceptor;
+    private ResteasyDeployment deployment;
+    private ServerBootstrap bootstrap;
+    private ExecutionHandler executionHandler;
+    private Channel channel;
+
+    /**
+     * @param interceptor null to serve requests without the plugin
+     */
+    public EmbeddedNettyServer(AroundInterceptor interceptor) {
+        this.interceptor = interceptor;
+    }
+
+    /**
+     * @return the port the server listens on, chosen by the OS
+     */
+    public int start(Class<?>... resourceClasses) throws InterruptedException {
+        this.deployment = new ResteasyDeployment();
+        for (Class<?> resourceClass : resourceClasses) {
+            deployment.getActualResourceClasses().add(resourceClass);
+        }
+        deployment.start();
+        final RequestDispatcher dispatcher = new InterceptedRequestDispatcher((SynchronousDispatcher) deployment.getDispatcher(),
+                deployment.getProviderFactory(), interceptor);
+
+        this.executionHandler = new ExecutionHandler(new OrderedMemoryAwareThreadPoolExecutor(EXECUTOR_THREAD_COUNT, 0L, 0L));
+        this.bootstrap = new ServerBootstrap(new NioServerSocketChannelFactory(Executors.newCachedThreadPool(), Executors.newCachedThreadPool()));
+        bootstrap.setPipelineFactory(new ChannelPipelineFactory() {
+            @Override
+            public ChannelPipeline getPipeline() {
+                final ChannelPipeline pipeline = Channels.pipeline();
+                pipeline.addLast("decoder", new HttpRequestDecoder());
+                pipeline.addLast("aggregator", new HttpChunkAggregator(MAX_REQUEST_SIZE));
+                pipeline.addLast("resteasyDecoder", new RestEasyHttpRequestDecoder(dispatcher.getDispatcher(), "", RestEasyHttpRequestDecoder.Protocol.HTTP));
+                pipeline.addLast("encoder", new HttpResponseEncoder());
+                pipeline.addLast("resteasyEncoder", new RestEasyHttpResponseEncoder(dispatcher));
+                pipeline.addLast("executionHandler", executionHandler);
+                pipeline.addLast("handler", new RequestHandler(dispatcher));
+                return pipeline;
+            }
+        });
+        bootstrap.setOption("child.tcpNoDelay", true);
+        bootstrap.setOption("child.keepAlive", true);
+        this.channel = bootstrap.bind(new InetSocketAddress("127.0.0.1", 0));
+        return ((InetSocketAddress) channel.getLocalAddress()).getPort();
+    }
+
+    public void stop() {
+        channel.close().awaitUninterruptibly();
+        bootstrap.releaseExternalResources();
+        executionHandler.releaseExternalResources();
+        deployment.stop();
+    }
+
+    private static class InterceptedRequestDispatcher extends RequestDispatcher {
+        private final AroundInterceptor interceptor;
+
+        InterceptedRequestDispatcher(SynchronousDispatcher dispatcher, ResteasyProviderFactory providerFactory, AroundInterceptor interceptor) {
+            super(dispatcher, providerFactory, null);
+            this.interceptor = interceptor;
+        }
+
+        @Override
+        public void service(ChannelHandlerContext ctx, HttpRequest request, HttpResponse response, boolean handleNotFound) throws IOException {
+            if (interceptor == null) {
+                super.service(ctx, request, response, handleNotFound);
+                return;
+            }
+            final Object[] args = {ctx, request, response, handleNotFound};
+            interceptor.before(this, args);
+            Throwable throwable = null;
+            try {
+                super.service(ctx, request, response, handleNotFound);
+            } catch (IOException e) {
+                throwable = e;
+                throw e;
+            } catch (RuntimeException e) {
+                throwable = e;
+                throw e;
+            } catch (Error e) {
+                throwable = e;
+                throw e;
+            } finally {
+                interceptor.after(this, args, null, throwable);
+            }
+        }
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2014 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.navercorp.pinpoint.plugin.resteasy.benchmark;
+package com.navercorp.pinpoint.plugin.resteasy.benchmark;
+
+import org.jboss.netty.channel.SimpleChannelUpstreamHandler;
+import org.jboss.netty.handler.codec.embedder.DecoderEmbedder;
+
+/**
+ * A real Netty 3 ChannelHandlerContext on an embedded channel, so ChannelLocal metadata is stored and read
+ * back as it is on a socket channel.
+ */
+final class StandInChannelHandlerContext {
+
+    private StandInChannelHandlerContext() {
+    }
+
+    static Object create() {
+        final SimpleChannelUpstreamHandler handler = new SimpleChannelUpstreamHandler();
+        final DecoderEmbedder<Object> embedder = new DecoderEmbedder<Object>(handler);
+        return embedder.getPipeline().getContext(handler);
+    }
+}
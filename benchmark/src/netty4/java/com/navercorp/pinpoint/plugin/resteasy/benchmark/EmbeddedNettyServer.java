@@ -0,0 +1,149 @@
+/*
+ * Copyright 2014 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.navercorp.pinpoint.plugin.resteasy.benchmark;
+
+import com.navercorp.pinpoint.bootstrap.interceptor.AroundInterceptor;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpRequestDecoder;
+import io.netty.handler.codec.http.HttpResponseEncoder;
+import io.netty.util.concurrent.DefaultEventExecutorGroup;
+import io.netty.util.concurrent.EventExecutorGroup;
+import org.jboss.resteasy.core.SynchronousDispatcher;
+import org.jboss.resteasy.plugins.server.netty.RequestDispatcher;
+import org.jboss.resteasy.plugins.server.netty.RequestHandler;
+import org.jboss.resteasy.plugins.server.netty.RestEasyHttpRequestDecoder;
+import org.jboss.resteasy.plugins.server.netty.RestEasyHttpResponseEncoder;
+import org.jboss.resteasy.spi.HttpRequest;
+import org.jboss.resteasy.spi.HttpResponse;
+import org.jboss.resteasy.spi.ResteasyDeployment;
+import org.jboss.resteasy.spi.ResteasyProviderFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+
+/**
+ * Netty 4 NettyJaxrsServer, built handler by handler as NettyJaxrsServer.start() and setupHandlers() build it,
+ * with the RequestHandler on an executor group of executorThreadCount threads.
+ * <p>
+ * Without an agent nothing rewrites RequestDispatcher, so it is replaced by a subclass that calls the
+ * interceptor around service() the way the injected bytecode does.
+ */
+public class EmbeddedNettyServer {
+    public static final boolean NETTY4 = true;
+
+    private static final int EXECUTOR_THREAD_COUNT = 16;
+    private static final int MAX_REQUEST_SIZE = 10 * 1024 * 1024;
+
+    private final AroundInterceptor interceptor;
+    private ResteasyDeployment deployment;
+    private EventLoopGroup bossGroup;
+    private EventLoopGroup workerGroup;
+    private EventExecutorGroup eventExecutor;
+    private Channel channel;
+
+    /**
+     * @param interceptor null to serve requests without the plugin
+     */
+    public EmbeddedNettyServer(AroundInterceptor interceptor) {
+        this.interceptor = interceptor;
+    }
+
+    /**
+     * @return the port the server listens on, chosen by the OS
+     */
+    public int start(Class<?>... resourceClasses) throws InterruptedException {
+        this.deployment = new ResteasyDeployment();
+        for (Class<?> resourceClass : resourceClasses) {
+            deployment.getActualResourceClasses().add(resourceClass);
+        }
+        deployment.start();
+        final RequestDispatcher dispatcher = new InterceptedRequestDispatcher((SynchronousDispatcher) deployment.getDispatcher(),
+                deployment.getProviderFactory(), interceptor);
+
+        this.bossGroup = new NioEventLoopGroup(1);
+        this.workerGroup = new NioEventLoopGroup();
+        this.eventExecutor = new DefaultEventExecutorGroup(EXECUTOR_THREAD_COUNT);
+        final ServerBootstrap bootstrap = new ServerBootstrap();
+        bootstrap.group(bossGroup, workerGroup)
+                .channel(NioServerSocketChannel.class)
+                .childHandler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel ch) {
+                        ch.pipeline().addLast(new HttpRequestDecoder());
+                        ch.pipeline().addLast(new HttpObjectAggregator(MAX_REQUEST_SIZE));
+                        ch.pipeline().addLast(new HttpResponseEncoder());
+                        ch.pipeline().addLast(new RestEasyHttpRequestDecoder(dispatcher.getDispatcher(), "", RestEasyHttpRequestDecoder.Protocol.HTTP));
+                        ch.pipeline().addLast(new RestEasyHttpResponseEncoder());
+                        ch.pipeline().addLast(eventExecutor, new RequestHandler(dispatcher));
+                    }
+                })
+                .childOption(ChannelOption.TCP_NODELAY, true)
+                .childOption(ChannelOption.SO_KEEPALIVE, true);
+        this.channel = bootstrap.bind(new InetSocketAddress("127.0.0.1", 0)).sync().channel();
+        return ((InetSocketAddress) channel.localAddress()).getPort();
+    }
+
+    public void stop() {
+        channel.close().awaitUninterruptibly();
+        eventExecutor.shutdownGracefully();
+        workerGroup.shutdownGracefully();
+        bossGroup.shutdownGracefully();
+        deployment.stop();
+    }
+
+    private static class InterceptedRequestDispatcher extends RequestDispatcher {
+        private final AroundInterceptor interceptor;
+
+        InterceptedRequestDispatcher(SynchronousDispatcher dispatcher, ResteasyProviderFactory providerFactory, AroundInterceptor interceptor) {
+            super(dispatcher, providerFactory, null);
+            this.interceptor = interceptor;
+        }
+
+        @Override
+        public void service(ChannelHandlerContext ctx, HttpRequest request, HttpResponse response, boolean handleNotFound) throws IOException {
+            if (interceptor == null) {
+                super.service(ctx, request, response, handleNotFound);
+                return;
+            }
+            final Object[] args = {ctx, request, response, handleNotFound};
+            interceptor.before(this, args);
+            Throwable throwable = null;
+            try {
+                super.service(ctx, request, response, handleNotFound);
+            } catch (IOException e) {
+                throwable = e;
+                throw e;
+            } catch (RuntimeException e) {
+                throwable = e;
+                throw e;
+            } catch (Error e) {
+                throwable = e;
+                throw e;
+            } finally {
+                interceptor.after(this, args, null, throwable);
+            }
+        }
+    }
+}
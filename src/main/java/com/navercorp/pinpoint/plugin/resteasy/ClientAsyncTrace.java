@@ -0,0 +1,54 @@
+/*
+ * Copyright 2014 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.navercorp.pinpoint.plugin.resteasy;
+
+import com.navercorp.pinpoint.bootstrap.context.AsyncTraceId;
+import com.navercorp.pinpoint.bootstrap.context.Trace;
+
+/**
+ * Links a ClientInvocation submitted with AsyncInvoker to the trace that submitted it.
+ * <p>
+ * submit() records the async trace id; invoke(), on the client's executor thread, continues it as an async trace
+ * and keeps that trace here until it returns.
+ */
+public final class ClientAsyncTrace {
+    private final AsyncTraceId asyncTraceId;
+    private Trace trace;
+
+    public ClientAsyncTrace(AsyncTraceId asyncTraceId) {
+        if (asyncTraceId == null) {
+            throw new NullPointerException("asyncTraceId must not be null");
+        }
+        this.asyncTraceId = asyncTraceId;
+    }
+
+    public AsyncTraceId getAsyncTraceId() {
+        return asyncTraceId;
+    }
+
+    /**
+     * Only touched by the thread running invoke().
+     */
+    public void setTrace(Trace trace) {
+        this.trace = trace;
+    }
+
+    public Trace takeTrace() {
+        final Trace trace = this.trace;
+        this.trace = null;
+        return trace;
+    }
+}
@@ -0,0 +1,238 @@
+/*
+ * Copyright 2014 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.navercorp.pinpoint.plugin.resteasy;
+
+import com.navercorp.pinpoint.bootstrap.config.Filter;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+/**
+ * profiler.resteasy.excludeurl compiled once, at configuration time.
+ * <p>
+ * The comma separated patterns follow the same Ant-style rules as ExcludePathFilter, but are split into
+ * <ul>
+ * <li>plain paths, looked up in a hash set</li>
+ * <li>"/prefix/**" patterns, matched by walking a prefix trie</li>
+ * <li>everything else, merged into a single regular expression</li>
+ * </ul>
+ * The set and the trie cost one pass over the path. Only paths excluded by the regular expression are
+ * remembered, up to cacheSize of them, so that a health check matched by a wildcard is answered with one map
+ * lookup. Traced paths, often one per resource id, are never cached: a miss allocates nothing.
+ */
+public class ExcludeUrlFilter implements Filter<String> {
+    private static final String PATH_SEPARATOR = "/";
+    private static final String ANY_PATH = "**";
+
+    private final Set<String> exactPaths = new HashSet<String>();
+    private final PrefixTrie prefixes = new PrefixTrie();
+    private final Pattern patterns;
+
+    private final int cacheSize;
+    private final ConcurrentMap<String, Boolean> cache;
+    private final AtomicInteger cached = new AtomicInteger();
+
+    public ExcludeUrlFilter(String excludeUrls, int cacheSize) {
+        if (excludeUrls == null) {
+            throw new NullPointerException("excludeUrls must not be null");
+        }
+        final List<String> antPatterns = new ArrayList<String>();
+        for (String token : excludeUrls.split(",")) {
+            final String excludeUrl = token.trim();
+            if (excludeUrl.isEmpty()) {
+                continue;
+            }
+            if (!isAntStylePattern(excludeUrl)) {
+                exactPaths.add(excludeUrl);
+                continue;
+            }
+            if (excludeUrl.endsWith(PATH_SEPARATOR + ANY_PATH)) {
+                final String prefix = excludeUrl.substring(0, excludeUrl.length() - ANY_PATH.length() - 1);
+                if (!isAntStylePattern(prefix)) {
+                    prefixes.add(prefix);
+                    continue;
+                }
+            }
+            antPatterns.add(excludeUrl);
+        }
+        this.patterns = compile(antPatterns);
+
+        this.cacheSize = cacheSize;
+        this.cache = cacheSize > 0 ? new ConcurrentHashMap<String, Boolean>(Math.min(cacheSize, 1024)) : null;
+    }
+
+    @Override
+    public boolean filter(String requestUri) {
+        if (requestUri == null) {
+            return NOT_FILTERED;
+        }
+        if (exactPaths.contains(requestUri)) {
+            return FILTERED;
+        }
+        if (prefixes.matches(requestUri)) {
+            return FILTERED;
+        }
+        if (patterns == null) {
+            return NOT_FILTERED;
+        }
+        if (cache != null && cache.containsKey(requestUri)) {
+            return FILTERED;
+        }
+        if (!patterns.matcher(requestUri).matches()) {
+            return NOT_FILTERED;
+        }
+        // once full, the paths cached first stay: excluded paths are few and hit from the start
+        if (cache != null && cached.get() < cacheSize && cache.putIfAbsent(requestUri, Boolean.TRUE) == null) {
+            cached.incrementAndGet();
+        }
+        return FILTERED;
+    }
+
+    private static boolean isAntStylePattern(String path) {
+        return path.indexOf('*') != -1 || path.indexOf('?') != -1;
+    }
+
+    private static Pattern compile(List<String> antPatterns) {
+        if (antPatterns.isEmpty()) {
+            return null;
+        }
+        final StringBuilder regex = new StringBuilder();
+        for (String antPattern : antPatterns) {
+            if (regex.length() != 0) {
+                regex.append('|');
+            }
+            regex.append("(?:");
+            appendRegex(regex, antPattern);
+            regex.append(')');
+        }
+        return Pattern.compile(regex.toString());
+    }
+
+    /**
+     * "**" matches any number of whole segments, "*" any characters within a segment and "?" exactly one.
+     */
+    private static void appendRegex(StringBuilder regex, String antPattern) {
+        if (!antPattern.startsWith(PATH_SEPARATOR)) {
+            // like AntPathMatcher, a relative pattern never matches an absolute path
+            regex.append("(?!/)");
+        }
+        final String[] segments = antPattern.split(PATH_SEPARATOR, -1);
+        boolean separator = false;
+        for (int i = 0; i < segments.length; i++) {
+            final String segment = segments[i];
+            if (ANY_PATH.equals(segment)) {
+                if (i == 0) {
+                    regex.append("(?:.*/)?");
+                    separator = false;
+                } else {
+                    regex.append("(?:/.*)?");
+                    separator = true;
+                }
+                continue;
+            }
+            if (separator) {
+                regex.append('/');
+            }
+            separator = true;
+            for (int j = 0; j < segment.length(); j++) {
+                final char c = segment.charAt(j);
+                if (c == '*') {
+                    regex.append("[^/]*");
+                } else if (c == '?') {
+                    regex.append("[^/]");
+                } else if (Character.isLetterOrDigit(c)) {
+                    regex.append(c);
+                } else {
+                    regex.append('\\').append(c);
+                }
+            }
+        }
+    }
+
+    /**
+     * Matches a path equal to a registered prefix or starting with prefix + '/'.
+     */
+    private static class PrefixTrie {
+        private final Node root = new Node();
+
+        void add(String prefix) {
+            Node node = root;
+            for (int i = 0; i < prefix.length(); i++) {
+                node = node.child(prefix.charAt(i), true);
+            }
+            node.terminal = true;
+        }
+
+        boolean matches(String path) {
+            Node node = root;
+            final int length = path.length();
+            for (int i = 0; i < length; i++) {
+                final char c = path.charAt(i);
+                if (node.terminal && c == '/') {
+                    return true;
+                }
+                node = node.child(c, false);
+                if (node == null) {
+                    return false;
+                }
+            }
+            return node.terminal;
+        }
+    }
+
+    private static class Node {
+        private char[] keys = new char[0];
+        private Node[] children = new Node[0];
+        private boolean terminal;
+
+        Node child(char key, boolean create) {
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] == key) {
+                    return children[i];
+                }
+            }
+            if (!create) {
+                return null;
+            }
+            final int length = keys.length;
+            final char[] newKeys = new char[length + 1];
+            final Node[] newChildren = new Node[length + 1];
+            System.arraycopy(keys, 0, newKeys, 0, length);
+            System.arraycopy(children, 0, newChildren, 0, length);
+            newKeys[length] = key;
+            newChildren[length] = new Node();
+            this.keys = newKeys;
+            this.children = newChildren;
+            return newChildren[length];
+        }
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("ExcludeUrlFilter{");
+        sb.append("exactPaths=").append(exactPaths);
+        sb.append(", patterns=").append(patterns);
+        sb.append(", cacheSize=").append(cacheSize);
+        sb.append('}');
+        return sb.toString();
+    }
+}
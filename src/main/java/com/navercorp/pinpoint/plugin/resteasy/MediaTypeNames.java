@@ -0,0 +1,45 @@
+/*
+ * Copyright 2014 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.navercorp.pinpoint.plugin.resteasy;
+
+import javax.ws.rs.core.MediaType;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * MediaType.toString() goes through the RuntimeDelegate and builds a new string each time; applications
+ * use a handful of media types, so their names are kept, up to a bound.
+ */
+public class MediaTypeNames {
+    private static final int MAX_SIZE = 256;
+
+    private final ConcurrentMap<MediaType, String> names = new ConcurrentHashMap<MediaType, String>();
+
+    public String getName(MediaType mediaType) {
+        if (mediaType == null) {
+            return null;
+        }
+        final String name = names.get(mediaType);
+        if (name != null) {
+            return name;
+        }
+        final String newName = mediaType.toString();
+        if (names.size() < MAX_SIZE) {
+            names.putIfAbsent(mediaType, newName);
+        }
+        return newName;
+    }
+}
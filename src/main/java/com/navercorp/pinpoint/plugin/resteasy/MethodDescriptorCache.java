@@ -0,0 +1,52 @@
+/*
+ * Copyright 2014 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.navercorp.pinpoint.plugin.resteasy;
+
+import com.navercorp.pinpoint.bootstrap.context.MethodDescriptor;
+import com.navercorp.pinpoint.bootstrap.context.TraceContext;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * One {@link ResourceMethodDescriptor} per method, registered with {@link TraceContext#cacheApi(MethodDescriptor)}
+ * the first time the method is seen. Later lookups are a lock-free map read.
+ */
+public class MethodDescriptorCache {
+    private final TraceContext traceContext;
+    private final ConcurrentMap<Method, MethodDescriptor> descriptors = new ConcurrentHashMap<Method, MethodDescriptor>();
+
+    public MethodDescriptorCache(TraceContext traceContext) {
+        if (traceContext == null) {
+            throw new NullPointerException("traceContext must not be null");
+        }
+        this.traceContext = traceContext;
+    }
+
+    public MethodDescriptor getMethodDescriptor(Method method) {
+        final MethodDescriptor descriptor = descriptors.get(method);
+        if (descriptor != null) {
+            return descriptor;
+        }
+        final MethodDescriptor newDescriptor = new ResourceMethodDescriptor(method);
+        // cacheApi() before publishing, so no caller ever records an unregistered api id.
+        // Two threads racing here both call cacheApi(), which returns the same id for the same descriptor.
+        traceContext.cacheApi(newDescriptor);
+        final MethodDescriptor existing = descriptors.putIfAbsent(method, newDescriptor);
+        return existing != null ? existing : newDescriptor;
+    }
+}
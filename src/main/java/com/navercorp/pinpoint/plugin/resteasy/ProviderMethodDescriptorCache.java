@@ -0,0 +1,54 @@
+/*
+ * Copyright 2014 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.navercorp.pinpoint.plugin.resteasy;
+
+import com.navercorp.pinpoint.bootstrap.context.MethodDescriptor;
+import com.navercorp.pinpoint.bootstrap.context.TraceContext;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * One {@link ResourceMethodDescriptor} per provider class for a given provider method, e.g.
+ * JacksonJsonProvider.readFrom(...), registered with {@link TraceContext#cacheApi(MethodDescriptor)} the
+ * first time the provider is seen. Same publication rules as {@link MethodDescriptorCache}.
+ */
+public class ProviderMethodDescriptorCache {
+    private final TraceContext traceContext;
+    private final String methodName;
+    private final String[] parameterTypes;
+    private final ConcurrentMap<Class<?>, MethodDescriptor> descriptors = new ConcurrentHashMap<Class<?>, MethodDescriptor>();
+
+    public ProviderMethodDescriptorCache(TraceContext traceContext, String methodName, String... parameterTypes) {
+        if (traceContext == null) {
+            throw new NullPointerException("traceContext must not be null");
+        }
+        this.traceContext = traceContext;
+        this.methodName = methodName;
+        this.parameterTypes = parameterTypes;
+    }
+
+    public MethodDescriptor getMethodDescriptor(Class<?> providerClass) {
+        final MethodDescriptor descriptor = descriptors.get(providerClass);
+        if (descriptor != null) {
+            return descriptor;
+        }
+        final MethodDescriptor newDescriptor = new ResourceMethodDescriptor(providerClass.getName(), methodName, parameterTypes);
+        traceContext.cacheApi(newDescriptor);
+        final MethodDescriptor existing = descriptors.putIfAbsent(providerClass, newDescriptor);
+        return existing != null ? existing : newDescriptor;
+    }
+}
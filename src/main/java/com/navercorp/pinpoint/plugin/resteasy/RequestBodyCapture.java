@@ -0,0 +1,148 @@
+/*
+ * Copyright 2014 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.navercorp.pinpoint.plugin.resteasy;
+
+import javax.ws.rs.core.MediaType;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds the HTTP_PARAM_ENTITY annotation from the body of a POST, PUT or PATCH request.
+ * <p>
+ * The Netty servers hand RESTEasy the whole request content as an in-memory stream over the aggregated
+ * buffer, which supports mark and reset: at most limit bytes are copied out of it and the stream is rewound
+ * for the resource method. Streams without mark support, multipart bodies and content types outside
+ * profiler.resteasy.requestbody.contenttypes are never read.
+ */
+public class RequestBodyCapture {
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final Charset ISO_8859_1 = Charset.forName("ISO-8859-1");
+    private static final String DROPPED = "...";
+    private static final String ANY_SUBTYPE = "*";
+
+    private final int limit;
+    private final List<String[]> contentTypes = new ArrayList<String[]>();
+    private final RequestParameterCapture formCapture;
+
+    /**
+     * @param contentTypes comma separated type/subtype or type/*
+     * @param formCapture  decodes application/x-www-form-urlencoded bodies
+     */
+    public RequestBodyCapture(int limit, String contentTypes, RequestParameterCapture formCapture) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("negative limit:" + limit);
+        }
+        if (contentTypes == null) {
+            throw new NullPointerException("contentTypes must not be null");
+        }
+        if (formCapture == null) {
+            throw new NullPointerException("formCapture must not be null");
+        }
+        this.limit = limit;
+        for (String token : contentTypes.split(",")) {
+            final String contentType = token.trim();
+            final int separator = contentType.indexOf('/');
+            if (separator <= 0 || separator == contentType.length() - 1) {
+                continue;
+            }
+            this.contentTypes.add(new String[]{contentType.substring(0, separator), contentType.substring(separator + 1)});
+        }
+        this.formCapture = formCapture;
+    }
+
+    /**
+     * @param mediaType Content-Type of the request, may be null
+     */
+    public boolean accepts(String httpMethod, MediaType mediaType) {
+        if (limit == 0 || mediaType == null) {
+            return false;
+        }
+        if (!"POST".equals(httpMethod) && !"PUT".equals(httpMethod) && !"PATCH".equals(httpMethod)) {
+            return false;
+        }
+        if ("multipart".equalsIgnoreCase(mediaType.getType())) {
+            return false;
+        }
+        for (String[] contentType : contentTypes) {
+            if (contentType[0].equalsIgnoreCase(mediaType.getType())
+                    && (ANY_SUBTYPE.equals(contentType[1]) || contentType[1].equalsIgnoreCase(mediaType.getSubtype()))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Reads the start of the body and rewinds the stream; call {@link #accepts} first.
+     *
+     * @return the captured body, null when there is nothing to record or the stream cannot be rewound
+     */
+    public String capture(InputStream inputStream, MediaType mediaType) throws IOException {
+        if (inputStream == null || !inputStream.markSupported()) {
+            return null;
+        }
+        // one byte more than kept, to know whether the body was cut
+        final byte[] buffer = new byte[limit + 1];
+        int length = 0;
+        inputStream.mark(buffer.length);
+        try {
+            while (length < buffer.length) {
+                final int read = inputStream.read(buffer, length, buffer.length - length);
+                if (read == -1) {
+                    break;
+                }
+                length += read;
+            }
+        } finally {
+            inputStream.reset();
+        }
+        if (length == 0) {
+            return null;
+        }
+        final boolean truncated = length > limit;
+        final int kept = Math.min(length, limit);
+
+        if (MediaType.APPLICATION_FORM_URLENCODED_TYPE.isCompatible(mediaType)) {
+            // URL-encoded, so ASCII whatever the charset
+            final String parameters = formCapture.capture(new String(buffer, 0, kept, ISO_8859_1));
+            if (parameters == null || !truncated || parameters.endsWith(DROPPED)) {
+                return parameters;
+            }
+            return parameters + DROPPED;
+        }
+        final String body = new String(buffer, 0, kept, getCharset(mediaType));
+        return truncated ? body + DROPPED : body;
+    }
+
+    private static Charset getCharset(MediaType mediaType) {
+        final String charset = mediaType.getParameters().get(MediaType.CHARSET_PARAMETER);
+        if (charset == null) {
+            return UTF8;
+        }
+        try {
+            return Charset.forName(charset);
+        } catch (Exception e) {
+            return UTF8;
+        }
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+}
@@ -0,0 +1,26 @@
+/*
+ * Copyright 2014 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.navercorp.pinpoint.plugin.resteasy;
+
+/**
+ * Added to NettyHttpRequest to carry the System.nanoTime() at which the request was decoded on the Netty
+ * I/O thread over to the thread that runs RequestDispatcher.service(). 0 when not recorded.
+ */
+public interface RequestDecodeTimeAccessor {
+    void _$PINPOINT$_setDecodeTime(long decodeTime);
+
+    long _$PINPOINT$_getDecodeTime();
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2014 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.navercorp.pinpoint.plugin.resteasy;
+
+/**
+ * Immutable view of the Pinpoint and proxy headers of one request, read by {@link RequestHeadersReader}.
+ * Span ids, flags and the parent application type are parsed once, when the snapshot is taken.
+ */
+public final class RequestHeaders {
+
+    private final String host;
+    private final String transactionId;
+    private final long parentSpanId;
+    private final long spanId;
+    private final short flags;
+    private final String sampled;
+    private final String parentApplicationName;
+    private final short parentApplicationType;
+    private final String acceptorHost;
+    private final String realIp;
+
+    RequestHeaders(String host, String transactionId, long parentSpanId, long spanId, short flags, String sampled,
+                   String parentApplicationName, short parentApplicationType, String acceptorHost, String realIp) {
+        this.host = host;
+        this.transactionId = transactionId;
+        this.parentSpanId = parentSpanId;
+        this.spanId = spanId;
+        this.flags = flags;
+        this.sampled = sampled;
+        this.parentApplicationName = parentApplicationName;
+        this.parentApplicationType = parentApplicationType;
+        this.acceptorHost = acceptorHost;
+        this.realIp = realIp;
+    }
+
+    /**
+     * @return the Host header (hostname:port)
+     */
+    public String getHost() {
+        return host;
+    }
+
+    public String getTransactionId() {
+        return transactionId;
+    }
+
+    public long getParentSpanId() {
+        return parentSpanId;
+    }
+
+    public long getSpanId() {
+        return spanId;
+    }
+
+    public short getFlags() {
+        return flags;
+    }
+
+    public String getSampled() {
+        return sampled;
+    }
+
+    public String getParentApplicationName() {
+        return parentApplicationName;
+    }
+
+    public short getParentApplicationType() {
+        return parentApplicationType;
+    }
+
+    /**
+     * @return the Pinpoint-Host header sent by the caller
+     */
+    public String getAcceptorHost() {
+        return acceptorHost;
+    }
+
+    /**
+     * @return the header configured by profiler.resteasy.realipheader, null when not configured or absent
+     */
+    public String getRealIp() {
+        return realIp;
+    }
+
+    /**
+     * Same contract as NumberUtils.parseLong(), without the NumberFormatException on malformed input.
+     */
+    static long parseLong(String value, long defaultValue) {
+        if (value == null) {
+            return defaultValue;
+        }
+        final int length = value.length();
+        if (length == 0) {
+            return defaultValue;
+        }
+        int index = 0;
+        boolean negative = false;
+        final char first = value.charAt(0);
+        if (first == '-') {
+            negative = true;
+            index++;
+        } else if (first == '+') {
+            index++;
+        }
+        if (index == length) {
+            return defaultValue;
+        }
+        // accumulate negatively, as Long.parseLong() does, so that Long.MIN_VALUE fits
+        final long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        final long multiplyLimit = limit / 10;
+        long result = 0;
+        for (; index < length; index++) {
+            final int digit = value.charAt(index) - '0';
+            if (digit < 0 || digit > 9) {
+                return defaultValue;
+            }
+            if (result < multiplyLimit) {
+                return defaultValue;
+            }
+            result *= 10;
+            if (result < limit + digit) {
+                return defaultValue;
+            }
+            result -= digit;
+        }
+        return negative ? result : -result;
+    }
+
+    static short parseShort(String value, short defaultValue) {
+        final long result = parseLong(value, Long.MIN_VALUE);
+        if (result < Short.MIN_VALUE || result > Short.MAX_VALUE) {
+            return defaultValue;
+        }
+        return (short) result;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("RequestHeaders{");
+        sb.append("host='").append(host).append('\'');
+        sb.append(", transactionId='").append(transactionId).append('\'');
+        sb.append(", parentSpanId=").append(parentSpanId);
+        sb.append(", spanId=").append(spanId);
+        sb.append(", flags=").append(flags);
+        sb.append(", sampled='").append(sampled).append('\'');
+        sb.append(", parentApplicationName='").append(parentApplicationName).append('\'');
+        sb.append(", parentApplicationType=").append(parentApplicationType);
+        sb.append(", acceptorHost='").append(acceptorHost).append('\'');
+        sb.append(", realIp='").append(realIp).append('\'');
+        sb.append('}');
+        return sb.toString();
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2014 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.navercorp.pinpoint.plugin.resteasy;
+
+import com.navercorp.pinpoint.bootstrap.context.Header;
+import com.navercorp.pinpoint.bootstrap.context.SpanId;
+import com.navercorp.pinpoint.common.trace.ServiceType;
+
+import javax.ws.rs.core.HttpHeaders;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads every header the plugin needs from the request header map in a single pass, instead of one
+ * case-insensitive lookup per header.
+ */
+public class RequestHeadersReader {
+    public static final String HOST = "Host";
+
+    private static final int HOST_INDEX = 0;
+    private static final int TRACE_ID_INDEX = 1;
+    private static final int PARENT_SPAN_ID_INDEX = 2;
+    private static final int SPAN_ID_INDEX = 3;
+    private static final int FLAGS_INDEX = 4;
+    private static final int SAMPLED_INDEX = 5;
+    private static final int PARENT_APPLICATION_NAME_INDEX = 6;
+    private static final int PARENT_APPLICATION_TYPE_INDEX = 7;
+    private static final int ACCEPTOR_HOST_INDEX = 8;
+    private static final int REAL_IP_INDEX = 9;
+
+    private final String[] headerNames;
+
+    /**
+     * @param realIpHeaderName profiler.resteasy.realipheader, may be null
+     */
+    public RequestHeadersReader(String realIpHeaderName) {
+        final boolean hasRealIpHeader = realIpHeaderName != null && !realIpHeaderName.isEmpty();
+        this.headerNames = new String[hasRealIpHeader ? REAL_IP_INDEX + 1 : REAL_IP_INDEX];
+        headerNames[HOST_INDEX] = HOST;
+        headerNames[TRACE_ID_INDEX] = Header.HTTP_TRACE_ID.toString();
+        headerNames[PARENT_SPAN_ID_INDEX] = Header.HTTP_PARENT_SPAN_ID.toString();
+        headerNames[SPAN_ID_INDEX] = Header.HTTP_SPAN_ID.toString();
+        headerNames[FLAGS_INDEX] = Header.HTTP_FLAGS.toString();
+        headerNames[SAMPLED_INDEX] = Header.HTTP_SAMPLED.toString();
+        headerNames[PARENT_APPLICATION_NAME_INDEX] = Header.HTTP_PARENT_APPLICATION_NAME.toString();
+        headerNames[PARENT_APPLICATION_TYPE_INDEX] = Header.HTTP_PARENT_APPLICATION_TYPE.toString();
+        headerNames[ACCEPTOR_HOST_INDEX] = Header.HTTP_HOST.toString();
+        if (hasRealIpHeader) {
+            headerNames[REAL_IP_INDEX] = realIpHeaderName;
+        }
+    }
+
+    public RequestHeaders read(HttpHeaders httpHeaders) {
+        String host = null;
+        String transactionId = null;
+        String parentSpanId = null;
+        String spanId = null;
+        String flags = null;
+        String sampled = null;
+        String parentApplicationName = null;
+        String parentApplicationType = null;
+        String acceptorHost = null;
+        String realIp = null;
+
+        for (Map.Entry<String, List<String>> entry : httpHeaders.getRequestHeaders().entrySet()) {
+            final int index = indexOf(entry.getKey());
+            if (index == -1) {
+                continue;
+            }
+            final String value = join(entry.getValue());
+            switch (index) {
+                case HOST_INDEX:
+                    host = value;
+                    break;
+                case TRACE_ID_INDEX:
+                    transactionId = value;
+                    break;
+                case PARENT_SPAN_ID_INDEX:
+                    parentSpanId = value;
+                    break;
+                case SPAN_ID_INDEX:
+                    spanId = value;
+                    break;
+                case FLAGS_INDEX:
+                    flags = value;
+                    break;
+                case SAMPLED_INDEX:
+                    sampled = value;
+                    break;
+                case PARENT_APPLICATION_NAME_INDEX:
+                    parentApplicationName = value;
+                    break;
+                case PARENT_APPLICATION_TYPE_INDEX:
+                    parentApplicationType = value;
+                    break;
+                case ACCEPTOR_HOST_INDEX:
+                    acceptorHost = value;
+                    break;
+                default:
+                    realIp = value;
+                    break;
+            }
+        }
+
+        return new RequestHeaders(host, transactionId,
+                RequestHeaders.parseLong(parentSpanId, SpanId.NULL),
+                RequestHeaders.parseLong(spanId, SpanId.NULL),
+                RequestHeaders.parseShort(flags, (short) 0),
+                sampled, parentApplicationName,
+                RequestHeaders.parseShort(parentApplicationType, ServiceType.UNDEFINED.getCode()),
+                acceptorHost, realIp);
+    }
+
+    private int indexOf(String name) {
+        if (name == null) {
+            return -1;
+        }
+        final int length = name.length();
+        for (int i = 0; i < headerNames.length; i++) {
+            final String headerName = headerNames[i];
+            if (headerName.length() == length && headerName.equalsIgnoreCase(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Same result as HttpHeaders.getHeaderString(): multiple values are joined with ','.
+     */
+    private static String join(List<String> values) {
+        if (values == null || values.isEmpty()) {
+            return null;
+        }
+        if (values.size() == 1) {
+            return values.get(0);
+        }
+        final StringBuilder sb = new StringBuilder();
+        for (String value : values) {
+            if (sb.length() != 0) {
+                sb.append(',');
+            }
+            sb.append(value);
+        }
+        return sb.toString();
+    }
+}
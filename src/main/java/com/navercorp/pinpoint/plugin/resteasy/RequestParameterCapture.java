@@ -0,0 +1,151 @@
+/*
+ * Copyright 2014 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.navercorp.pinpoint.plugin.resteasy;
+
+import java.nio.charset.Charset;
+
+/**
+ * Builds the HTTP_PARAM annotation straight from a raw, still URL-encoded "k1=v1&amp;k2=v2" string.
+ * <p>
+ * Names and values are decoded only as far as they are kept: each one is cut at eachLimit characters
+ * and the scan stops as soon as totalLimit is exceeded, so a multi-kilobyte query string costs no more
+ * than the part that ends up in the trace.
+ */
+public class RequestParameterCapture {
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final String DROPPED = "...";
+
+    private final int eachLimit;
+    private final int totalLimit;
+
+    public RequestParameterCapture(int eachLimit, int totalLimit) {
+        if (eachLimit < 0) {
+            throw new IllegalArgumentException("negative eachLimit:" + eachLimit);
+        }
+        if (totalLimit < 0) {
+            throw new IllegalArgumentException("negative totalLimit:" + totalLimit);
+        }
+        this.eachLimit = eachLimit;
+        this.totalLimit = totalLimit;
+    }
+
+    /**
+     * @param rawQuery encoded parameters, may be null
+     * @return the captured parameters, null when there is nothing to record
+     */
+    public String capture(String rawQuery) {
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return null;
+        }
+        final int length = rawQuery.length();
+        final StringBuilder params = new StringBuilder(Math.min(length, totalLimit) + DROPPED.length());
+        int start = 0;
+        while (start < length) {
+            int end = rawQuery.indexOf('&', start);
+            if (end == -1) {
+                end = length;
+            }
+            if (end > start) {
+                if (params.length() != 0) {
+                    params.append('&');
+                }
+                // skip appending parameters if parameter size is bigger than totalLimit
+                if (params.length() > totalLimit) {
+                    params.append(DROPPED);
+                    return params.toString();
+                }
+                int separator = rawQuery.indexOf('=', start);
+                if (separator == -1 || separator > end) {
+                    separator = end;
+                }
+                decode(params, rawQuery, start, separator);
+                params.append('=');
+                if (separator < end) {
+                    decode(params, rawQuery, separator + 1, end);
+                }
+            }
+            start = end + 1;
+        }
+        return params.length() == 0 ? null : params.toString();
+    }
+
+    /**
+     * Appends at most eachLimit decoded characters of rawQuery[start, end).
+     */
+    private void decode(StringBuilder params, String rawQuery, int start, int end) {
+        final int limit = params.length() + eachLimit;
+        int index = start;
+        while (index < end) {
+            if (params.length() >= limit) {
+                params.append(DROPPED);
+                return;
+            }
+            final char c = rawQuery.charAt(index);
+            if (c == '+') {
+                params.append(' ');
+                index++;
+            } else if (c == '%') {
+                index = decodePercentRun(params, rawQuery, index, end, limit);
+            } else {
+                params.append(c);
+                index++;
+            }
+        }
+    }
+
+    /**
+     * Decodes consecutive %XX escapes as one UTF-8 sequence.
+     *
+     * @return index of the first character after the run
+     */
+    private static int decodePercentRun(StringBuilder params, String rawQuery, int start, int end, int limit) {
+        // a UTF-8 sequence is at most 4 bytes, so this many escapes always cover the characters still kept
+        final int maxEnd = start + 3 * 4 * (limit - params.length());
+        int index = start;
+        while (index + 2 < end && index < maxEnd && rawQuery.charAt(index) == '%'
+                && Character.digit(rawQuery.charAt(index + 1), 16) != -1 && Character.digit(rawQuery.charAt(index + 2), 16) != -1) {
+            index += 3;
+        }
+        final int count = (index - start) / 3;
+        if (count == 0) {
+            // malformed escape, keep it as is
+            params.append('%');
+            return start + 1;
+        }
+        final byte[] bytes = new byte[count];
+        for (int i = 0; i < count; i++) {
+            final int offset = start + i * 3;
+            bytes[i] = (byte) ((Character.digit(rawQuery.charAt(offset + 1), 16) << 4) + Character.digit(rawQuery.charAt(offset + 2), 16));
+        }
+        final String decoded = new String(bytes, UTF8);
+        final int remaining = limit - params.length();
+        if (decoded.length() > remaining) {
+            params.append(decoded, 0, remaining);
+            params.append(DROPPED);
+            return end;
+        }
+        params.append(decoded);
+        return index;
+    }
+
+    public int getEachLimit() {
+        return eachLimit;
+    }
+
+    public int getTotalLimit() {
+        return totalLimit;
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2014 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.navercorp.pinpoint.plugin.resteasy;
+
+import com.navercorp.pinpoint.bootstrap.config.Filter;
+import com.navercorp.pinpoint.bootstrap.context.RemoteAddressResolver;
+import com.navercorp.pinpoint.plugin.resteasy.interceptor.RequestDispatcherServiceInterceptor;
+import com.navercorp.pinpoint.plugin.resteasy.sampler.EndpointSampler;
+import com.navercorp.pinpoint.plugin.resteasy.sampler.TailSampler;
+
+/**
+ * The per-request decisions of RequestDispatcherServiceInterceptor, compiled from one {@link RestEasyConfiguration}:
+ * exclude matcher, header reader, real-IP resolver, parameter and body capture and samplers.
+ * <p>
+ * Immutable; {@link RestEasyConfigHolder} replaces the whole snapshot when the configuration file changes.
+ */
+public final class RequestTraceSettings {
+    private final Filter<String> excludeUrlFilter;
+    private final RequestHeadersReader requestHeadersReader;
+    private final RemoteAddressResolver<RequestHeaders> remoteAddressResolver;
+    private final RequestParameterCapture requestParameterCapture;
+    private final RequestBodyCapture requestBodyCapture;
+    private final EndpointSampler endpointSampler;
+    private final TailSampler tailSampler;
+
+    public RequestTraceSettings(RestEasyConfiguration configuration) {
+        if (configuration == null) {
+            throw new NullPointerException("configuration must not be null");
+        }
+        this.excludeUrlFilter = configuration.getRestEasyExcludeUrlFilter();
+        final String proxyIpHeader = configuration.getRestEasyRealIpHeader();
+        this.requestHeadersReader = new RequestHeadersReader(proxyIpHeader);
+        if (proxyIpHeader == null || proxyIpHeader.isEmpty()) {
+            this.remoteAddressResolver = new RequestDispatcherServiceInterceptor.Bypass();
+        } else {
+            this.remoteAddressResolver = new RequestDispatcherServiceInterceptor.RealIpHeaderResolver(configuration.getResteasyRealIpEmptyValue());
+        }
+        if (configuration.isRestEasyTraceRequestParam()) {
+            this.requestParameterCapture = new RequestParameterCapture(configuration.getRestEasyRequestParamEachLimit(), configuration.getRestEasyRequestParamTotalLimit());
+        } else {
+            this.requestParameterCapture = null;
+        }
+        if (configuration.isRestEasyTraceRequestBody()) {
+            this.requestBodyCapture = new RequestBodyCapture(configuration.getRestEasyRequestBodyLimit(), configuration.getRestEasyRequestBodyContentTypes(),
+                    new RequestParameterCapture(configuration.getRestEasyRequestParamEachLimit(), configuration.getRestEasyRequestParamTotalLimit()));
+        } else {
+            this.requestBodyCapture = null;
+        }
+        if (configuration.isRestEasyEndpointSamplingEnable()) {
+            this.endpointSampler = new EndpointSampler(configuration.getRestEasyEndpointSamplingEndpointLimit(), configuration.getRestEasyEndpointSamplingTotalLimit(),
+                    configuration.getRestEasyEndpointSamplingBurst(), configuration.getRestEasyEndpointSamplingPathDepth(), configuration.getRestEasyEndpointSamplingStripes());
+        } else {
+            this.endpointSampler = null;
+        }
+        if (configuration.isRestEasyTailSamplingEnable()) {
+            this.tailSampler = new TailSampler(configuration.getRestEasyTailSamplingThreshold(), configuration.getRestEasyTailSamplingLimit(),
+                    configuration.getRestEasyTailSamplingBurst());
+        } else {
+            this.tailSampler = null;
+        }
+    }
+
+    public Filter<String> getExcludeUrlFilter() {
+        return excludeUrlFilter;
+    }
+
+    public RequestHeadersReader getRequestHeadersReader() {
+        return requestHeadersReader;
+    }
+
+    public RemoteAddressResolver<RequestHeaders> getRemoteAddressResolver() {
+        return remoteAddressResolver;
+    }
+
+    /**
+     * @return null when profiler.resteasy.tracerequestparam is off
+     */
+    public RequestParameterCapture getRequestParameterCapture() {
+        return requestParameterCapture;
+    }
+
+    /**
+     * @return null when profiler.resteasy.tracerequestbody is off
+     */
+    public RequestBodyCapture getRequestBodyCapture() {
+        return requestBodyCapture;
+    }
+
+    /**
+     * @return null when profiler.resteasy.endpointsampling.enable is off
+     */
+    public EndpointSampler getEndpointSampler() {
+        return endpointSampler;
+    }
+
+    /**
+     * @return null when profiler.resteasy.tailsampling.enable is off
+     */
+    public TailSampler getTailSampler() {
+        return tailSampler;
+    }
+}
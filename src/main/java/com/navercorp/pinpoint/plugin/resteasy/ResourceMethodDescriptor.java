@@ -0,0 +1,132 @@
+/*
+ * Copyright 2014 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.navercorp.pinpoint.plugin.resteasy;
+
+import com.navercorp.pinpoint.bootstrap.context.MethodDescriptor;
+import com.navercorp.pinpoint.common.trace.MethodType;
+
+import java.lang.reflect.Method;
+
+/**
+ * Describes a JAX-RS resource method, or any other method RESTEasy calls on behalf of a request,
+ * from its reflective {@link Method}.
+ */
+public class ResourceMethodDescriptor implements MethodDescriptor {
+    private final String className;
+    private final String methodName;
+    private final String[] parameterTypes;
+    private final String parameterDescriptor;
+    private int apiId = 0;
+    private int type = MethodType.DEFAULT;
+
+    public ResourceMethodDescriptor(Method method) {
+        this(method.getDeclaringClass().getName(), method.getName(), toTypeNames(method.getParameterTypes()));
+    }
+
+    public ResourceMethodDescriptor(String className, String methodName, String[] parameterTypes) {
+        if (className == null) {
+            throw new NullPointerException("className must not be null");
+        }
+        if (methodName == null) {
+            throw new NullPointerException("methodName must not be null");
+        }
+        this.className = className;
+        this.methodName = methodName;
+        this.parameterTypes = parameterTypes;
+        this.parameterDescriptor = toParameterDescriptor(parameterTypes);
+    }
+
+    private static String[] toTypeNames(Class<?>[] types) {
+        final String[] names = new String[types.length];
+        for (int i = 0; i < types.length; i++) {
+            names[i] = types[i].getName();
+        }
+        return names;
+    }
+
+    private static String toParameterDescriptor(String[] parameterTypes) {
+        if (parameterTypes == null || parameterTypes.length == 0) {
+            return "()";
+        }
+        final StringBuilder sb = new StringBuilder("(");
+        for (int i = 0; i < parameterTypes.length; i++) {
+            if (i != 0) {
+                sb.append(", ");
+            }
+            sb.append(parameterTypes[i]);
+        }
+        return sb.append(')').toString();
+    }
+
+    @Override
+    public String getMethodName() {
+        return methodName;
+    }
+
+    @Override
+    public String getClassName() {
+        return className;
+    }
+
+    @Override
+    public String[] getParameterTypes() {
+        return parameterTypes;
+    }
+
+    @Override
+    public String[] getParameterVariableName() {
+        return null;
+    }
+
+    @Override
+    public String getParameterDescriptor() {
+        return parameterDescriptor;
+    }
+
+    @Override
+    public int getLineNumber() {
+        return -1;
+    }
+
+    @Override
+    public String getFullName() {
+        return className + "." + methodName + parameterDescriptor;
+    }
+
+    @Override
+    public void setApiId(int apiId) {
+        this.apiId = apiId;
+    }
+
+    @Override
+    public int getApiId() {
+        return apiId;
+    }
+
+    @Override
+    public String getApiDescriptor() {
+        return getFullName();
+    }
+
+    @Override
+    public int getType() {
+        return type;
+    }
+
+    public void setType(int type) {
+        this.type = type;
+    }
+}
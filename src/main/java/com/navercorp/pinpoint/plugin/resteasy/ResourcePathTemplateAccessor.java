@@ -0,0 +1,26 @@
+/*
+ * Copyright 2014 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.navercorp.pinpoint.plugin.resteasy;
+
+/**
+ * Added to ResourceMethodInvoker and ResourceLocatorInvoker to keep the normalized @Path template of the
+ * invoker, so it is built once per resource method.
+ */
+public interface ResourcePathTemplateAccessor {
+    void _$PINPOINT$_setResourcePathTemplate(String resourcePathTemplate);
+
+    String _$PINPOINT$_getResourcePathTemplate();
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2014 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.navercorp.pinpoint.plugin.resteasy;
+
+import org.jboss.resteasy.spi.HttpRequest;
+
+/**
+ * Turns JAX-RS @Path values into the RPC names recorded for a request.
+ */
+public final class ResourcePathTemplates {
+    private ResourcePathTemplates() {}
+
+    /**
+     * "orders/{id: [0-9]+}//items/" becomes "/orders/{id}/items": leading slash added, parameter regular
+     * expressions removed, empty segments and the trailing slash dropped.
+     */
+    public static String normalize(String path) {
+        if (path == null || path.isEmpty()) {
+            return "";
+        }
+        final StringBuilder template = new StringBuilder(path.length() + 1);
+        final int length = path.length();
+        int index = 0;
+        while (index < length) {
+            final char c = path.charAt(index);
+            if (c == '/') {
+                index++;
+                continue;
+            }
+            template.append('/');
+            while (index < length && path.charAt(index) != '/') {
+                final char segmentChar = path.charAt(index);
+                if (segmentChar == '{') {
+                    index = appendParameter(template, path, index);
+                } else {
+                    template.append(segmentChar);
+                    index++;
+                }
+            }
+        }
+        return template.toString();
+    }
+
+    /**
+     * Appends "{name}" for "{name: regex}", regex braces included.
+     *
+     * @return index of the first character after the closing brace
+     */
+    private static int appendParameter(StringBuilder template, String path, int start) {
+        template.append('{');
+        int depth = 0;
+        boolean inName = true;
+        int index = start;
+        final int length = path.length();
+        while (index < length) {
+            final char c = path.charAt(index++);
+            if (c == '{') {
+                depth++;
+            } else if (c == '}') {
+                depth--;
+                if (depth == 0) {
+                    break;
+                }
+            } else if (c == ':' && depth == 1) {
+                inName = false;
+            } else if (inName && !Character.isWhitespace(c)) {
+                template.append(c);
+            }
+        }
+        template.append('}');
+        return index;
+    }
+
+    /**
+     * Joins two normalized templates.
+     */
+    public static String join(String prefix, String template) {
+        if (prefix == null || prefix.isEmpty()) {
+            return template;
+        }
+        if (template == null || template.isEmpty()) {
+            return prefix;
+        }
+        return prefix.concat(template);
+    }
+
+    /**
+     * Appends the template of a matched locator or resource method to the one the request has collected so far.
+     *
+     * @return the template matched so far
+     */
+    public static String append(HttpRequest request, String template) {
+        final String prefix = (String) request.getAttribute(RestEasyConstants.RESOURCE_PATH_TEMPLATE_ATTRIBUTE);
+        final String matched = join(prefix, template);
+        request.setAttribute(RestEasyConstants.RESOURCE_PATH_TEMPLATE_ATTRIBUTE, matched);
+        return matched;
+    }
+
+    /**
+     * @return template, "/" for the root resource
+     */
+    public static String toRpcName(String template) {
+        if (template == null || template.isEmpty()) {
+            return "/";
+        }
+        return template;
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2014 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.navercorp.pinpoint.plugin.resteasy;
+
+import com.navercorp.pinpoint.bootstrap.context.SpanRecorder;
+import com.navercorp.pinpoint.bootstrap.context.Trace;
+import com.navercorp.pinpoint.plugin.resteasy.connection.WriteCompletionListener;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The body of a traced response on its way to the channel. RequestHandler writes the response after
+ * RequestDispatcher.service() has returned, so the root trace is handed over to the response and closed
+ * once the last byte has been written to the socket, with time to first byte, time to last byte and the
+ * number of entity bytes.
+ */
+public class ResponseTransfer implements WriteCompletionListener {
+    private final Trace trace;
+    private final Object channelHandlerContext;
+    private final long startNanos;
+    private volatile long firstByteNanos;
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicBoolean completed = new AtomicBoolean();
+    private boolean lastWriteExpected;
+
+    public ResponseTransfer(Trace trace, Object channelHandlerContext, long startNanos) {
+        if (trace == null) {
+            throw new NullPointerException("trace must not be null");
+        }
+        this.trace = trace;
+        this.channelHandlerContext = channelHandlerContext;
+        this.startNanos = startNanos;
+    }
+
+    /**
+     * @return the org.jboss.netty or io.netty ChannelHandlerContext of RESTEasy's RequestHandler, may be null
+     */
+    public Object getChannelHandlerContext() {
+        return channelHandlerContext;
+    }
+
+    /**
+     * The status line and headers are about to be written to the channel.
+     */
+    public void firstByte() {
+        if (firstByteNanos == 0) {
+            firstByteNanos = System.nanoTime();
+        }
+    }
+
+    public void addBytes(long written) {
+        if (written > 0) {
+            bytes.addAndGet(written);
+        }
+    }
+
+    /**
+     * Set on the thread running NettyHttpResponse.finish(), before and after it.
+     */
+    public void setLastWriteExpected(boolean lastWriteExpected) {
+        this.lastWriteExpected = lastWriteExpected;
+    }
+
+    public boolean isLastWriteExpected() {
+        return lastWriteExpected;
+    }
+
+    @Override
+    public void writesComplete(boolean success) {
+        complete(success);
+    }
+
+    /**
+     * Records the transfer on the root span and closes the trace, once.
+     */
+    public void complete(boolean success) {
+        if (!completed.compareAndSet(false, true)) {
+            return;
+        }
+        final long lastByteNanos = System.nanoTime();
+        try {
+            final SpanRecorder recorder = trace.getSpanRecorder();
+            final long firstByte = firstByteNanos;
+            if (firstByte != 0) {
+                recorder.recordAttribute(RestEasyConstants.RESPONSE_FIRST_BYTE, toMicros(firstByte - startNanos));
+            }
+            if (success) {
+                recorder.recordAttribute(RestEasyConstants.RESPONSE_LAST_BYTE, toMicros(lastByteNanos - startNanos));
+            }
+            recorder.recordAttribute(RestEasyConstants.RESPONSE_BYTES, bytes.get());
+        } finally {
+            trace.close();
+        }
+    }
+
+    private static int toMicros(long nanos) {
+        return (int) Math.min(TimeUnit.NANOSECONDS.toMicros(Math.max(nanos, 0)), Integer.MAX_VALUE);
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2014 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.navercorp.pinpoint.plugin.resteasy;
+
+import com.navercorp.pinpoint.bootstrap.config.DefaultProfilerConfig;
+import com.navercorp.pinpoint.bootstrap.config.ProfilerConfig;
+import com.navercorp.pinpoint.bootstrap.logging.PLogger;
+import com.navercorp.pinpoint.bootstrap.logging.PLoggerFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The {@link RequestTraceSettings} shared by all interceptors, read through a single volatile reference.
+ * <p>
+ * With profiler.resteasy.config.reload on, a daemon thread polls the profiler configuration file and compiles
+ * a new snapshot once it has stopped changing, so exclusions, parameter capture and sampling can be tightened without a
+ * restart. Settings that decide what gets instrumented are only read at startup, from
+ * {@link #getStartupConfiguration()}, which a reload leaves alone.
+ */
+public final class RestEasyConfigHolder {
+    private static final Object LOCK = new Object();
+    private static RestEasyConfigHolder instance;
+
+    private final PLogger logger = PLoggerFactory.getLogger(this.getClass());
+
+    private final RestEasyConfiguration startupConfiguration;
+    private volatile RequestTraceSettings settings;
+    private File configFile;
+    private long lastModified;
+    // the change seen on the previous poll, loaded once a whole poll interval has passed without another one
+    private long pendingModified;
+    private long pendingLength;
+
+    private RestEasyConfigHolder(RestEasyConfiguration configuration) {
+        this.startupConfiguration = configuration;
+        this.settings = new RequestTraceSettings(configuration);
+    }
+
+    /**
+     * @param profilerConfig used by the first call only
+     */
+    public static RestEasyConfigHolder getInstance(ProfilerConfig profilerConfig) {
+        synchronized (LOCK) {
+            if (instance == null) {
+                final RestEasyConfiguration configuration = new RestEasyConfiguration(profilerConfig);
+                instance = new RestEasyConfigHolder(configuration);
+                if (configuration.isRestEasyConfigReload()) {
+                    instance.startWatcher(configuration.getRestEasyConfigReloadFile(), configuration.getRestEasyConfigReloadInterval());
+                }
+            }
+            return instance;
+        }
+    }
+
+    public RequestTraceSettings get() {
+        return settings;
+    }
+
+    /**
+     * @return the configuration the plugin was set up with, for interceptor constructors
+     */
+    public RestEasyConfiguration getStartupConfiguration() {
+        return startupConfiguration;
+    }
+
+    private void startWatcher(String path, int intervalSeconds) {
+        if (path == null || path.isEmpty()) {
+            path = System.getProperty("pinpoint.config");
+        }
+        if (path == null || path.isEmpty()) {
+            logger.warn("profiler.resteasy.config.reload ignored, no configuration file. Set profiler.resteasy.config.reload.file");
+            return;
+        }
+        this.configFile = new File(path);
+        this.lastModified = configFile.lastModified();
+        final long intervalMillis = Math.max(intervalSeconds, 1) * 1000L;
+        final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                final Thread thread = new Thread(runnable, "Pinpoint-resteasy-config-watcher");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                reloadIfModified();
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        if (logger.isInfoEnabled()) {
+            logger.info("watching {} every {}ms", configFile.getAbsolutePath(), intervalMillis);
+        }
+    }
+
+    private void reloadIfModified() {
+        try {
+            final long modified = configFile.lastModified();
+            if (modified == 0 || modified == lastModified) {
+                return;
+            }
+            // a file still being written parses fine and would drop every key not written yet,
+            // so wait until neither the mtime nor the length has moved for one poll interval
+            final long length = configFile.length();
+            if (modified != pendingModified || length != pendingLength) {
+                this.pendingModified = modified;
+                this.pendingLength = length;
+                return;
+            }
+            final RequestTraceSettings newSettings = new RequestTraceSettings(new RestEasyConfiguration(new DefaultProfilerConfig(load(configFile))));
+            this.lastModified = modified;
+            this.settings = newSettings;
+            if (logger.isInfoEnabled()) {
+                logger.info("{} reloaded", configFile.getAbsolutePath());
+            }
+        } catch (Throwable th) {
+            // keep the current snapshot and try again on the next poll
+            if (logger.isWarnEnabled()) {
+                logger.warn("{} reload failed. Caused:{}", configFile.getAbsolutePath(), th.getMessage(), th);
+            }
+        }
+    }
+
+    private static Properties load(File file) throws IOException {
+        final Properties properties = new Properties();
+        final InputStream in = new FileInputStream(file);
+        try {
+            properties.load(in);
+        } finally {
+            in.close();
+        }
+        return properties;
+    }
+}
@@ -14,7 +14,6 @@
  */
 package com.navercorp.pinpoint.plugin.resteasy;
 
-import com.navercorp.pinpoint.bootstrap.config.ExcludePathFilter;
 import com.navercorp.pinpoint.bootstrap.config.Filter;
 import com.navercorp.pinpoint.bootstrap.config.ProfilerConfig;
 import com.navercorp.pinpoint.bootstrap.config.SkipFilter;
@@ -30,6 +29,60 @@ public class RestEasyConfiguration {
     private final Filter<String> restEasyExcludeUrlFilter;
     private final String restEasyRealIpHeader;
     private final String resteasyRealIpEmptyValue;
+    private final boolean restEasyTraceRequestParam;
+    private final int restEasyRequestParamEachLimit;
+    private final int restEasyRequestParamTotalLimit;
+    private final boolean restEasyTraceRequestBody;
+    private final int restEasyRequestBodyLimit;
+    private final String restEasyRequestBodyContentTypes;
+    private final boolean restEasyRpcNameTemplate;
+    private final boolean restEasyTraceResourceMethod;
+    private final boolean restEasyEndpointSamplingEnable;
+    private final int restEasyEndpointSamplingEndpointLimit;
+    private final int restEasyEndpointSamplingTotalLimit;
+    private final int restEasyEndpointSamplingBurst;
+    private final int restEasyEndpointSamplingPathDepth;
+    private final int restEasyEndpointSamplingStripes;
+    private final boolean restEasyTailSamplingEnable;
+    private final int restEasyTailSamplingThreshold;
+    private final int restEasyTailSamplingLimit;
+    private final int restEasyTailSamplingBurst;
+    private final boolean restEasyTraceMappedException;
+    private final int restEasyExceptionDedupLimit;
+    private final int restEasyExceptionDedupWindow;
+    private final int restEasyExceptionDedupMaxKeys;
+    private final boolean restEasyTraceAsync;
+    private final boolean restEasyTraceEntityProvider;
+    private final boolean restEasyClientEnable;
+    private final boolean restEasyClientHttpClient4Propagate;
+    private final boolean restEasyHandoffEnable;
+    private final boolean restEasyThreadResourceEnable;
+    private final boolean restEasyThreadResourceEndpointStats;
+    private final int restEasyThreadResourceMaxEndpoints;
+    private final boolean restEasyResponseTransferEnable;
+    private final boolean restEasyConnectionStatsEnable;
+    private final boolean restEasyConnectionStatsTls;
+    private final boolean restEasyEventLoopWatchdogEnable;
+    private final int restEasyEventLoopWatchdogThreshold;
+    private final boolean restEasyEventLoopWatchdogStackTrace;
+    private final int restEasyEventLoopWatchdogMaxThreads;
+    private final boolean restEasyInFlightEnable;
+    private final int restEasyInFlightThreshold;
+    private final boolean restEasyInFlightStackTrace;
+    private final int restEasyInFlightMaxThreads;
+    private final int restEasyInFlightScanInterval;
+    private final int restEasyInFlightMaxEndpoints;
+    private final boolean restEasyLatencyHistogramEnable;
+    private final int restEasyLatencyHistogramMaxEndpoints;
+    private final int restEasyLatencyHistogramStripes;
+    private final int restEasyStatsInterval;
+    private final boolean restEasyRequestLogEnable;
+    private final String restEasyRequestLogFile;
+    private final int restEasyRequestLogCapacity;
+    private final int restEasyRequestLogMaxEndpoints;
+    private final boolean restEasyConfigReload;
+    private final String restEasyConfigReloadFile;
+    private final int restEasyConfigReloadInterval;
     private List<String> restEasyBootstrapMains;
     private final boolean netty4 ;
 
@@ -44,13 +97,78 @@ public class RestEasyConfiguration {
         }
         final String resteasyExcludeURL = config.readString("profiler.resteasy.excludeurl", "");
         if (!resteasyExcludeURL.isEmpty()) {
-            this.restEasyExcludeUrlFilter = new ExcludePathFilter(resteasyExcludeURL);
+            final int excludeUrlCacheSize = config.readInt("profiler.resteasy.excludeurl.cachesize", 1024);
+            this.restEasyExcludeUrlFilter = new ExcludeUrlFilter(resteasyExcludeURL, excludeUrlCacheSize);
         } else{
             this.restEasyExcludeUrlFilter = new  SkipFilter<String>();
         }
 
         this.restEasyRealIpHeader = config.readString("profiler.resteasy.realipheader", null);
         this.resteasyRealIpEmptyValue = config.readString("profiler.resteasy.realipemptyvalue", null);
+
+        this.restEasyTraceRequestParam = config.readBoolean("profiler.resteasy.tracerequestparam", true);
+        this.restEasyRequestParamEachLimit = config.readInt("profiler.resteasy.requestparam.eachlimit", 64);
+        this.restEasyRequestParamTotalLimit = config.readInt("profiler.resteasy.requestparam.totallimit", 512);
+        this.restEasyTraceRequestBody = config.readBoolean("profiler.resteasy.tracerequestbody", false);
+        this.restEasyRequestBodyLimit = config.readInt("profiler.resteasy.requestbody.limit", 1024);
+        this.restEasyRequestBodyContentTypes = config.readString("profiler.resteasy.requestbody.contenttypes",
+                "application/x-www-form-urlencoded,application/json,application/xml,text/*");
+        this.restEasyRpcNameTemplate = config.readBoolean("profiler.resteasy.rpcname.template", true);
+        this.restEasyTraceResourceMethod = config.readBoolean("profiler.resteasy.traceresourcemethod", true);
+
+        this.restEasyEndpointSamplingEnable = config.readBoolean("profiler.resteasy.endpointsampling.enable", false);
+        this.restEasyEndpointSamplingEndpointLimit = config.readInt("profiler.resteasy.endpointsampling.endpointlimit", 10);
+        this.restEasyEndpointSamplingTotalLimit = config.readInt("profiler.resteasy.endpointsampling.totallimit", 100);
+        this.restEasyEndpointSamplingBurst = config.readInt("profiler.resteasy.endpointsampling.burst", 5);
+        this.restEasyEndpointSamplingPathDepth = config.readInt("profiler.resteasy.endpointsampling.pathdepth", 1);
+        this.restEasyEndpointSamplingStripes = config.readInt("profiler.resteasy.endpointsampling.stripes", 256);
+
+        this.restEasyTailSamplingEnable = config.readBoolean("profiler.resteasy.tailsampling.enable", false);
+        this.restEasyTailSamplingThreshold = config.readInt("profiler.resteasy.tailsampling.threshold", 1000);
+        this.restEasyTailSamplingLimit = config.readInt("profiler.resteasy.tailsampling.limit", 10);
+        this.restEasyTailSamplingBurst = config.readInt("profiler.resteasy.tailsampling.burst", 5);
+
+        this.restEasyTraceMappedException = config.readBoolean("profiler.resteasy.tracemappedexception", true);
+        this.restEasyExceptionDedupLimit = config.readInt("profiler.resteasy.exceptiondedup.limit", 0);
+        this.restEasyExceptionDedupWindow = config.readInt("profiler.resteasy.exceptiondedup.window", 60);
+        this.restEasyExceptionDedupMaxKeys = config.readInt("profiler.resteasy.exceptiondedup.maxkeys", 1024);
+
+        this.restEasyTraceAsync = config.readBoolean("profiler.resteasy.traceasync", true);
+        this.restEasyTraceEntityProvider = config.readBoolean("profiler.resteasy.traceentityprovider", false);
+        this.restEasyClientEnable = config.readBoolean("profiler.resteasy.client.enable", true);
+        this.restEasyClientHttpClient4Propagate = config.readBoolean("profiler.resteasy.client.httpclient4.propagate", false);
+        this.restEasyHandoffEnable = config.readBoolean("profiler.resteasy.handoff.enable", false);
+        this.restEasyThreadResourceEnable = config.readBoolean("profiler.resteasy.threadresource.enable", false);
+        this.restEasyThreadResourceEndpointStats = config.readBoolean("profiler.resteasy.threadresource.endpointstats", false);
+        this.restEasyThreadResourceMaxEndpoints = config.readInt("profiler.resteasy.threadresource.maxendpoints", 256);
+        this.restEasyResponseTransferEnable = config.readBoolean("profiler.resteasy.responsetransfer.enable", false);
+        this.restEasyConnectionStatsEnable = config.readBoolean("profiler.resteasy.connectionstats.enable", false);
+        this.restEasyConnectionStatsTls = config.readBoolean("profiler.resteasy.connectionstats.tls", true);
+        this.restEasyEventLoopWatchdogEnable = config.readBoolean("profiler.resteasy.eventloopwatchdog.enable", false);
+        this.restEasyEventLoopWatchdogThreshold = config.readInt("profiler.resteasy.eventloopwatchdog.threshold", 100);
+        this.restEasyEventLoopWatchdogStackTrace = config.readBoolean("profiler.resteasy.eventloopwatchdog.stacktrace", false);
+        this.restEasyEventLoopWatchdogMaxThreads = config.readInt("profiler.resteasy.eventloopwatchdog.maxthreads", 256);
+
+        this.restEasyInFlightEnable = config.readBoolean("profiler.resteasy.inflight.enable", false);
+        this.restEasyInFlightThreshold = config.readInt("profiler.resteasy.inflight.threshold", 5000);
+        this.restEasyInFlightStackTrace = config.readBoolean("profiler.resteasy.inflight.stacktrace", false);
+        this.restEasyInFlightMaxThreads = config.readInt("profiler.resteasy.inflight.maxthreads", 1024);
+        this.restEasyInFlightScanInterval = config.readInt("profiler.resteasy.inflight.scaninterval", 1000);
+        this.restEasyInFlightMaxEndpoints = config.readInt("profiler.resteasy.inflight.maxendpoints", 256);
+
+        this.restEasyLatencyHistogramEnable = config.readBoolean("profiler.resteasy.latencyhistogram.enable", false);
+        this.restEasyLatencyHistogramMaxEndpoints = config.readInt("profiler.resteasy.latencyhistogram.maxendpoints", 256);
+        this.restEasyLatencyHistogramStripes = config.readInt("profiler.resteasy.latencyhistogram.stripes", 4);
+        this.restEasyStatsInterval = config.readInt("profiler.resteasy.stats.interval", 60);
+
+        this.restEasyRequestLogEnable = config.readBoolean("profiler.resteasy.requestlog.enable", false);
+        this.restEasyRequestLogFile = config.readString("profiler.resteasy.requestlog.file", "");
+        this.restEasyRequestLogCapacity = config.readInt("profiler.resteasy.requestlog.capacity", 262144);
+        this.restEasyRequestLogMaxEndpoints = config.readInt("profiler.resteasy.requestlog.maxendpoints", 256);
+
+        this.restEasyConfigReload = config.readBoolean("profiler.resteasy.config.reload", false);
+        this.restEasyConfigReloadFile = config.readString("profiler.resteasy.config.reload.file", "");
+        this.restEasyConfigReloadInterval = config.readInt("profiler.resteasy.config.reload.interval", 10);
     }
 
     public boolean isRestEasyEnable() {
@@ -73,6 +191,258 @@ public class RestEasyConfiguration {
         return resteasyRealIpEmptyValue;
     }
 
+    public boolean isRestEasyTraceRequestParam() {
+        return restEasyTraceRequestParam;
+    }
+
+    public int getRestEasyRequestParamEachLimit() {
+        return restEasyRequestParamEachLimit;
+    }
+
+    public int getRestEasyRequestParamTotalLimit() {
+        return restEasyRequestParamTotalLimit;
+    }
+
+    public boolean isRestEasyTraceRequestBody() {
+        return restEasyTraceRequestBody;
+    }
+
+    /**
+     * @return bytes of the body read at most
+     */
+    public int getRestEasyRequestBodyLimit() {
+        return restEasyRequestBodyLimit;
+    }
+
+    public String getRestEasyRequestBodyContentTypes() {
+        return restEasyRequestBodyContentTypes;
+    }
+
+    public boolean isRestEasyRpcNameTemplate() {
+        return restEasyRpcNameTemplate;
+    }
+
+    public boolean isRestEasyTraceResourceMethod() {
+        return restEasyTraceResourceMethod;
+    }
+
+    public boolean isRestEasyEndpointSamplingEnable() {
+        return restEasyEndpointSamplingEnable;
+    }
+
+    public int getRestEasyEndpointSamplingEndpointLimit() {
+        return restEasyEndpointSamplingEndpointLimit;
+    }
+
+    public int getRestEasyEndpointSamplingTotalLimit() {
+        return restEasyEndpointSamplingTotalLimit;
+    }
+
+    public int getRestEasyEndpointSamplingBurst() {
+        return restEasyEndpointSamplingBurst;
+    }
+
+    public int getRestEasyEndpointSamplingPathDepth() {
+        return restEasyEndpointSamplingPathDepth;
+    }
+
+    public int getRestEasyEndpointSamplingStripes() {
+        return restEasyEndpointSamplingStripes;
+    }
+
+    public boolean isRestEasyTailSamplingEnable() {
+        return restEasyTailSamplingEnable;
+    }
+
+    /**
+     * @return milliseconds
+     */
+    public int getRestEasyTailSamplingThreshold() {
+        return restEasyTailSamplingThreshold;
+    }
+
+    public int getRestEasyTailSamplingLimit() {
+        return restEasyTailSamplingLimit;
+    }
+
+    public int getRestEasyTailSamplingBurst() {
+        return restEasyTailSamplingBurst;
+    }
+
+    public boolean isRestEasyTraceMappedException() {
+        return restEasyTraceMappedException;
+    }
+
+    /**
+     * @return exceptions of one class and endpoint recorded with their message per window, 0 to record all of them
+     */
+    public int getRestEasyExceptionDedupLimit() {
+        return restEasyExceptionDedupLimit;
+    }
+
+    /**
+     * @return seconds
+     */
+    public int getRestEasyExceptionDedupWindow() {
+        return restEasyExceptionDedupWindow;
+    }
+
+    public int getRestEasyExceptionDedupMaxKeys() {
+        return restEasyExceptionDedupMaxKeys;
+    }
+
+    public boolean isRestEasyTraceAsync() {
+        return restEasyTraceAsync;
+    }
+
+    public boolean isRestEasyTraceEntityProvider() {
+        return restEasyTraceEntityProvider;
+    }
+
+    public boolean isRestEasyClientEnable() {
+        return restEasyClientEnable;
+    }
+
+    public boolean isRestEasyClientHttpClient4Propagate() {
+        return restEasyClientHttpClient4Propagate;
+    }
+
+    public boolean isRestEasyHandoffEnable() {
+        return restEasyHandoffEnable;
+    }
+
+    public boolean isRestEasyThreadResourceEnable() {
+        return restEasyThreadResourceEnable;
+    }
+
+    public boolean isRestEasyThreadResourceEndpointStats() {
+        return restEasyThreadResourceEndpointStats;
+    }
+
+    public int getRestEasyThreadResourceMaxEndpoints() {
+        return restEasyThreadResourceMaxEndpoints;
+    }
+
+    public boolean isRestEasyResponseTransferEnable() {
+        return restEasyResponseTransferEnable;
+    }
+
+    public boolean isRestEasyConnectionStatsEnable() {
+        return restEasyConnectionStatsEnable;
+    }
+
+    public boolean isRestEasyConnectionStatsTls() {
+        return restEasyConnectionStatsTls;
+    }
+
+    public boolean isRestEasyEventLoopWatchdogEnable() {
+        return restEasyEventLoopWatchdogEnable;
+    }
+
+    /**
+     * @return milliseconds
+     */
+    public int getRestEasyEventLoopWatchdogThreshold() {
+        return restEasyEventLoopWatchdogThreshold;
+    }
+
+    public boolean isRestEasyEventLoopWatchdogStackTrace() {
+        return restEasyEventLoopWatchdogStackTrace;
+    }
+
+    public int getRestEasyEventLoopWatchdogMaxThreads() {
+        return restEasyEventLoopWatchdogMaxThreads;
+    }
+
+    public boolean isRestEasyInFlightEnable() {
+        return restEasyInFlightEnable;
+    }
+
+    /**
+     * @return milliseconds
+     */
+    public int getRestEasyInFlightThreshold() {
+        return restEasyInFlightThreshold;
+    }
+
+    public boolean isRestEasyInFlightStackTrace() {
+        return restEasyInFlightStackTrace;
+    }
+
+    public int getRestEasyInFlightMaxThreads() {
+        return restEasyInFlightMaxThreads;
+    }
+
+    /**
+     * @return milliseconds
+     */
+    public int getRestEasyInFlightScanInterval() {
+        return restEasyInFlightScanInterval;
+    }
+
+    public int getRestEasyInFlightMaxEndpoints() {
+        return restEasyInFlightMaxEndpoints;
+    }
+
+    public boolean isRestEasyLatencyHistogramEnable() {
+        return restEasyLatencyHistogramEnable;
+    }
+
+    public int getRestEasyLatencyHistogramMaxEndpoints() {
+        return restEasyLatencyHistogramMaxEndpoints;
+    }
+
+    public int getRestEasyLatencyHistogramStripes() {
+        return restEasyLatencyHistogramStripes;
+    }
+
+    /**
+     * @return seconds between two snapshots of the in-agent stats
+     */
+    public int getRestEasyStatsInterval() {
+        return restEasyStatsInterval;
+    }
+
+    public boolean isRestEasyRequestLogEnable() {
+        return restEasyRequestLogEnable;
+    }
+
+    /**
+     * @return the ring file, empty for pinpoint-resteasy-&lt;agentId&gt;.requests in java.io.tmpdir
+     */
+    public String getRestEasyRequestLogFile() {
+        return restEasyRequestLogFile;
+    }
+
+    /**
+     * @return records kept, 160 bytes each
+     */
+    public int getRestEasyRequestLogCapacity() {
+        return restEasyRequestLogCapacity;
+    }
+
+    public int getRestEasyRequestLogMaxEndpoints() {
+        return restEasyRequestLogMaxEndpoints;
+    }
+
+    public boolean isRestEasyConfigReload() {
+        return restEasyConfigReload;
+    }
+
+    /**
+     * @return the file polled for changes, empty for the file named by -Dpinpoint.config
+     */
+    public String getRestEasyConfigReloadFile() {
+        return restEasyConfigReloadFile;
+    }
+
+    /**
+     * @return seconds between two checks of the configuration file
+     */
+    public int getRestEasyConfigReloadInterval() {
+        return restEasyConfigReloadInterval;
+    }
+
     public boolean isNetty4() {
         return netty4;
     }
@@ -16,6 +16,9 @@ package com.navercorp.pinpoint.plugin.resteasy;
 
 import static com.navercorp.pinpoint.common.trace.ServiceTypeProperty.*;
 
+import com.navercorp.pinpoint.common.trace.AnnotationKey;
+import com.navercorp.pinpoint.common.trace.AnnotationKeyFactory;
+import com.navercorp.pinpoint.common.trace.AnnotationKeyProperty;
 import com.navercorp.pinpoint.common.trace.ServiceType;
 import com.navercorp.pinpoint.common.trace.ServiceTypeFactory;
 
@@ -25,4 +28,81 @@ public final class RestEasyConstants {
     public static final String TYPE_NAME = "RESTEASY";
     public static final ServiceType RESTEASY = ServiceTypeFactory.of(1910, "RESTEASY", RECORD_STATISTICS);
     public static final ServiceType RESTEASY_METHOD = ServiceTypeFactory.of(1911, "RESTEASY_METHOD");
+    public static final ServiceType RESTEASY_CLIENT = ServiceTypeFactory.of(9910, "RESTEASY_CLIENT", RECORD_STATISTICS);
+
+    /**
+     * Microseconds between decoding the request on the Netty I/O thread and RequestDispatcher.service().
+     */
+    public static final AnnotationKey QUEUE_WAIT = AnnotationKeyFactory.of(930, "resteasy.queue.wait.us", AnnotationKeyProperty.VIEW_IN_RECORD_SET);
+
+    /**
+     * Microseconds RequestDispatcher.service() held a Netty I/O thread, recorded when over the watchdog threshold.
+     */
+    public static final AnnotationKey EVENT_LOOP_BLOCKED = AnnotationKeyFactory.of(931, "resteasy.eventloop.blocked.us", AnnotationKeyProperty.VIEW_IN_RECORD_SET);
+
+    /**
+     * Microseconds from RequestDispatcher.service() to the response headers being written to the channel.
+     */
+    public static final AnnotationKey RESPONSE_FIRST_BYTE = AnnotationKeyFactory.of(932, "resteasy.response.ttfb.us", AnnotationKeyProperty.VIEW_IN_RECORD_SET);
+
+    /**
+     * Microseconds from RequestDispatcher.service() to the last byte of the response being written to the socket.
+     */
+    public static final AnnotationKey RESPONSE_LAST_BYTE = AnnotationKeyFactory.of(933, "resteasy.response.ttlb.us", AnnotationKeyProperty.VIEW_IN_RECORD_SET);
+
+    /**
+     * Response entity bytes written to the channel.
+     */
+    public static final AnnotationKey RESPONSE_BYTES = AnnotationKeyFactory.of(934, "resteasy.response.bytes", AnnotationKeyProperty.VIEW_IN_RECORD_SET);
+
+    /**
+     * Media type, entity class and bytes of an entity read by a MessageBodyReader or written by a MessageBodyWriter.
+     */
+    public static final AnnotationKey ENTITY_MEDIA_TYPE = AnnotationKeyFactory.of(935, "resteasy.entity.mediatype", AnnotationKeyProperty.VIEW_IN_RECORD_SET);
+    public static final AnnotationKey ENTITY_TYPE = AnnotationKeyFactory.of(936, "resteasy.entity.type", AnnotationKeyProperty.VIEW_IN_RECORD_SET);
+    public static final AnnotationKey ENTITY_BYTES = AnnotationKeyFactory.of(937, "resteasy.entity.bytes", AnnotationKeyProperty.VIEW_IN_RECORD_SET);
+
+    /**
+     * CPU microseconds and heap bytes the dispatching thread spent in RequestDispatcher.service().
+     */
+    public static final AnnotationKey CPU_TIME = AnnotationKeyFactory.of(938, "resteasy.cpu.us", AnnotationKeyProperty.VIEW_IN_RECORD_SET);
+    public static final AnnotationKey ALLOCATED_BYTES = AnnotationKeyFactory.of(939, "resteasy.alloc.bytes", AnnotationKeyProperty.VIEW_IN_RECORD_SET);
+
+    /**
+     * Why a request the agent sampler had rejected was recorded anyway: slow, error or 5xx.
+     */
+    public static final AnnotationKey TAIL_SAMPLED = AnnotationKeyFactory.of(940, "resteasy.tail.sampled", AnnotationKeyProperty.VIEW_IN_RECORD_SET);
+
+    /**
+     * Class of the exception that ended the request: escaping service(), or mapped to a response by RESTEasy
+     * and counted as an error, see {@link #MAPPED_EXCEPTION_CLASS}.
+     */
+    public static final AnnotationKey EXCEPTION_CLASS = AnnotationKeyFactory.of(941, "resteasy.exception.class", AnnotationKeyProperty.VIEW_IN_RECORD_SET);
+
+    /**
+     * Identical exceptions recorded by class only since the previous one recorded with its message.
+     */
+    public static final AnnotationKey EXCEPTION_SUPPRESSED = AnnotationKeyFactory.of(942, "resteasy.exception.suppressed", AnnotationKeyProperty.VIEW_IN_RECORD_SET);
+
+    /**
+     * TLS handshake of the connection, recorded on its first request: microseconds from accept to handshake completion,
+     * and "protocol cipher-suite [resumed]".
+     */
+    public static final AnnotationKey TLS_HANDSHAKE = AnnotationKeyFactory.of(943, "resteasy.tls.handshake.us", AnnotationKeyProperty.VIEW_IN_RECORD_SET);
+    public static final AnnotationKey TLS_SESSION = AnnotationKeyFactory.of(944, "resteasy.tls.session", AnnotationKeyProperty.VIEW_IN_RECORD_SET);
+
+    /**
+     * Class of a mapped exception answered with a client status, e.g. NotFoundException with 404: not an error.
+     */
+    public static final AnnotationKey MAPPED_EXCEPTION_CLASS = AnnotationKeyFactory.of(945, "resteasy.exception.mapped", AnnotationKeyProperty.VIEW_IN_RECORD_SET);
+
+    /**
+     * HttpRequest attribute holding the exception passed to SynchronousDispatcher.writeException().
+     */
+    public static final String MAPPED_EXCEPTION_ATTRIBUTE = "com.navercorp.pinpoint.plugin.resteasy.mappedException";
+
+    /**
+     * HttpRequest attribute holding the @Path template matched so far, locators included.
+     */
+    public static final String RESOURCE_PATH_TEMPLATE_ATTRIBUTE = "com.navercorp.pinpoint.plugin.resteasy.resourcePathTemplate";
 }
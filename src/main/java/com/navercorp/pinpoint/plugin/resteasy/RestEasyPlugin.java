@@ -21,6 +21,7 @@ import java.security.ProtectionDomain;
 import com.navercorp.pinpoint.bootstrap.instrument.InstrumentClass;
 import com.navercorp.pinpoint.bootstrap.instrument.InstrumentException;
 import com.navercorp.pinpoint.bootstrap.instrument.InstrumentMethod;
+import com.navercorp.pinpoint.bootstrap.instrument.MethodFilters;
 import com.navercorp.pinpoint.bootstrap.instrument.Instrumentor;
 import com.navercorp.pinpoint.bootstrap.instrument.transformer.TransformCallback;
 import com.navercorp.pinpoint.bootstrap.instrument.transformer.TransformTemplate;
@@ -93,6 +94,313 @@ public class RestEasyPlugin implements ProfilerPlugin, TransformTemplateAware {
                 return target.toBytecode();
             }
         });
+
+        if (config.isRestEasyRpcNameTemplate() || config.isRestEasyTraceResourceMethod()) {
+            addResourceInvokerTransformers(config);
+        }
+        if (config.isRestEasyTraceMappedException()) {
+            addSynchronousDispatcherTransformer();
+        }
+        if (config.isRestEasyTraceAsync()) {
+            addAsynchronousResponseTransformers();
+        }
+        if (config.isRestEasyTraceEntityProvider()) {
+            addEntityProviderTransformers();
+        }
+        if (config.isRestEasyClientEnable()) {
+            addClientInvocationTransformer();
+        }
+        if (config.isRestEasyHandoffEnable()) {
+            addNettyHttpRequestTransformer(config);
+        }
+        if (config.isRestEasyResponseTransferEnable()) {
+            addNettyHttpResponseTransformers(config);
+        }
+        if (config.isRestEasyConnectionStatsEnable() || config.isRestEasyResponseTransferEnable()) {
+            // the response transfer handler goes on RESTEasy channels the same way
+            addServerPipelineTransformer(config);
+        }
+    }
+
+    private void addServerPipelineTransformer(final RestEasyConfiguration config) {
+        if (config.isNetty4()) {
+            // the Netty 4 server builds each channel pipeline in a private method instead of a pipeline factory
+            addServerPipelineTransformer("org.jboss.resteasy.plugins.server.netty.NettyJaxrsServer", "setupHandlers");
+        } else {
+            addServerPipelineTransformer("org.jboss.resteasy.plugins.server.netty.HttpServerPipelineFactory", "getPipeline");
+            // adds its SslHandler first once the plain pipeline is built, the stats handler is moved back in front of it
+            addServerPipelineTransformer("org.jboss.resteasy.plugins.server.netty.HttpsServerPipelineFactory", "getPipeline");
+        }
+    }
+
+    private void addServerPipelineTransformer(final String pipelineClassName, final String methodName) {
+        transformTemplate.transform(pipelineClassName, new TransformCallback() {
+            @Override
+            public byte[] doInTransform(Instrumentor instrumentor, ClassLoader classLoader, String className, Class<?> classBeingRedefined, ProtectionDomain protectionDomain, byte[] classfileBuffer) throws InstrumentException {
+                InstrumentClass target = instrumentor.getInstrumentClass(classLoader, className, classfileBuffer);
+
+                boolean found = false;
+                for (InstrumentMethod pipelineMethod : target.getDeclaredMethods(MethodFilters.name(methodName))) {
+                    pipelineMethod.addInterceptor("com.navercorp.pinpoint.plugin.resteasy.interceptor.ServerPipelineInterceptor");
+                    found = true;
+                }
+                if (!found) {
+                    logger.error("{}.{}() not found", pipelineClassName, methodName) ;
+                }
+
+                return target.toBytecode();
+            }
+        });
+    }
+
+    private void addEntityProviderTransformers() {
+        transformTemplate.transform("org.jboss.resteasy.core.interception.AbstractReaderInterceptorContext", new TransformCallback() {
+            @Override
+            public byte[] doInTransform(Instrumentor instrumentor, ClassLoader classLoader, String className, Class<?> classBeingRedefined, ProtectionDomain protectionDomain, byte[] classfileBuffer) throws InstrumentException {
+                InstrumentClass target = instrumentor.getInstrumentClass(classLoader, className, classfileBuffer);
+
+                InstrumentMethod readFromMethod = target.getDeclaredMethod("readFrom", "javax.ws.rs.ext.MessageBodyReader");
+                if (readFromMethod != null) {
+                    readFromMethod.addInterceptor("com.navercorp.pinpoint.plugin.resteasy.interceptor.MessageBodyReaderInterceptor");
+                } else {
+                    logger.error("AbstractReaderInterceptorContext.readFrom() not found") ;
+                }
+
+                return target.toBytecode();
+            }
+        });
+
+        transformTemplate.transform("org.jboss.resteasy.core.interception.AbstractWriterInterceptorContext", new TransformCallback() {
+            @Override
+            public byte[] doInTransform(Instrumentor instrumentor, ClassLoader classLoader, String className, Class<?> classBeingRedefined, ProtectionDomain protectionDomain, byte[] classfileBuffer) throws InstrumentException {
+                InstrumentClass target = instrumentor.getInstrumentClass(classLoader, className, classfileBuffer);
+
+                InstrumentMethod writeToMethod = target.getDeclaredMethod("writeTo", "javax.ws.rs.ext.MessageBodyWriter");
+                if (writeToMethod != null) {
+                    writeToMethod.addInterceptor("com.navercorp.pinpoint.plugin.resteasy.interceptor.MessageBodyWriterInterceptor");
+                } else {
+                    logger.error("AbstractWriterInterceptorContext.writeTo() not found") ;
+                }
+
+                return target.toBytecode();
+            }
+        });
+    }
+
+    private void addSynchronousDispatcherTransformer() {
+        transformTemplate.transform("org.jboss.resteasy.core.SynchronousDispatcher", new TransformCallback() {
+            @Override
+            public byte[] doInTransform(Instrumentor instrumentor, ClassLoader classLoader, String className, Class<?> classBeingRedefined, ProtectionDomain protectionDomain, byte[] classfileBuffer) throws InstrumentException {
+                InstrumentClass target = instrumentor.getInstrumentClass(classLoader, className, classfileBuffer);
+
+                InstrumentMethod writeExceptionMethod = target.getDeclaredMethod(
+                        "writeException",
+                        "org.jboss.resteasy.spi.HttpRequest",
+                        "org.jboss.resteasy.spi.HttpResponse",
+                        "java.lang.Throwable");
+                if (writeExceptionMethod != null) {
+                    writeExceptionMethod.addInterceptor("com.navercorp.pinpoint.plugin.resteasy.interceptor.SynchronousDispatcherWriteExceptionInterceptor");
+                } else {
+                    logger.error("SynchronousDispatcher.writeException() not found") ;
+                }
+
+                return target.toBytecode();
+            }
+        });
+    }
+
+    private void addClientInvocationTransformer() {
+        transformTemplate.transform("org.jboss.resteasy.client.jaxrs.internal.ClientInvocation", new TransformCallback() {
+            @Override
+            public byte[] doInTransform(Instrumentor instrumentor, ClassLoader classLoader, String className, Class<?> classBeingRedefined, ProtectionDomain protectionDomain, byte[] classfileBuffer) throws InstrumentException {
+                InstrumentClass target = instrumentor.getInstrumentClass(classLoader, className, classfileBuffer);
+
+                InstrumentMethod invokeMethod = target.getDeclaredMethod("invoke");
+                if (invokeMethod == null) {
+                    logger.error("ClientInvocation.invoke() not found") ;
+                    return target.toBytecode();
+                }
+                target.addField("com.navercorp.pinpoint.plugin.resteasy.ClientAsyncTraceAccessor");
+                invokeMethod.addInterceptor("com.navercorp.pinpoint.plugin.resteasy.interceptor.ClientInvocationInvokeInterceptor");
+
+                // AsyncInvoker: submit() runs invoke() on the client's executor
+                for (InstrumentMethod submitMethod : target.getDeclaredMethods(MethodFilters.name("submit"))) {
+                    submitMethod.addInterceptor("com.navercorp.pinpoint.plugin.resteasy.interceptor.ClientInvocationSubmitInterceptor");
+                }
+
+                return target.toBytecode();
+            }
+        });
+    }
+
+    private void addNettyHttpResponseTransformers(final RestEasyConfiguration config) {
+        transformTemplate.transform("org.jboss.resteasy.plugins.server.netty.NettyHttpResponse", new TransformCallback() {
+            @Override
+            public byte[] doInTransform(Instrumentor instrumentor, ClassLoader classLoader, String className, Class<?> classBeingRedefined, ProtectionDomain protectionDomain, byte[] classfileBuffer) throws InstrumentException {
+                InstrumentClass target = instrumentor.getInstrumentClass(classLoader, className, classfileBuffer);
+
+                // without finish() nobody would close the handed over trace, so the accessor is only added along with it
+                InstrumentMethod finishMethod = target.getDeclaredMethod("finish");
+                if (finishMethod == null) {
+                    logger.error("NettyHttpResponse.finish() not found") ;
+                    return target.toBytecode();
+                }
+                target.addField("com.navercorp.pinpoint.plugin.resteasy.ResponseTransferAccessor");
+                finishMethod.addInterceptor("com.navercorp.pinpoint.plugin.resteasy.interceptor.NettyHttpResponseFinishInterceptor");
+
+                if (config.isNetty4()) {
+                    InstrumentMethod prepareChunkStreamMethod = target.getDeclaredMethod("prepareChunkStream");
+                    if (prepareChunkStreamMethod != null) {
+                        prepareChunkStreamMethod.addInterceptor("com.navercorp.pinpoint.plugin.resteasy.interceptor.NettyHttpResponsePrepareChunkStreamInterceptor");
+                    } else {
+                        logger.error("NettyHttpResponse.prepareChunkStream() not found") ;
+                    }
+                }
+
+                return target.toBytecode();
+            }
+        });
+
+        if (!config.isNetty4()) {
+            return;
+        }
+        transformTemplate.transform("org.jboss.resteasy.plugins.server.netty.ChunkOutputStream", new TransformCallback() {
+            @Override
+            public byte[] doInTransform(Instrumentor instrumentor, ClassLoader classLoader, String className, Class<?> classBeingRedefined, ProtectionDomain protectionDomain, byte[] classfileBuffer) throws InstrumentException {
+                InstrumentClass target = instrumentor.getInstrumentClass(classLoader, className, classfileBuffer);
+                target.addGetter("com.navercorp.pinpoint.plugin.resteasy.NettyHttpResponseGetter", "response");
+                target.addGetter("com.navercorp.pinpoint.plugin.resteasy.ByteBufGetter", "buffer");
+
+                InstrumentMethod flushMethod = target.getDeclaredMethod("flush");
+                if (flushMethod != null) {
+                    flushMethod.addInterceptor("com.navercorp.pinpoint.plugin.resteasy.interceptor.ChunkOutputStreamFlushInterceptor");
+                } else {
+                    logger.error("ChunkOutputStream.flush() not found") ;
+                }
+
+                return target.toBytecode();
+            }
+        });
+    }
+
+    private void addNettyHttpRequestTransformer(final RestEasyConfiguration config) {
+        transformTemplate.transform("org.jboss.resteasy.plugins.server.netty.NettyHttpRequest", new TransformCallback() {
+            @Override
+            public byte[] doInTransform(Instrumentor instrumentor, ClassLoader classLoader, String className, Class<?> classBeingRedefined, ProtectionDomain protectionDomain, byte[] classfileBuffer) throws InstrumentException {
+                InstrumentClass target = instrumentor.getInstrumentClass(classLoader, className, classfileBuffer);
+                target.addField("com.navercorp.pinpoint.plugin.resteasy.RequestDecodeTimeAccessor");
+
+                InstrumentMethod constructor;
+                if (config.isNetty4()) {
+                    constructor = target.getConstructor(
+                            netty4ChannelHandlerContextClass,
+                            "org.jboss.resteasy.specimpl.ResteasyHttpHeaders",
+                            "org.jboss.resteasy.specimpl.ResteasyUriInfo",
+                            "java.lang.String",
+                            "org.jboss.resteasy.core.SynchronousDispatcher",
+                            "org.jboss.resteasy.plugins.server.netty.NettyHttpResponse",
+                            "boolean");
+                } else {
+                    constructor = target.getConstructor(
+                            "org.jboss.resteasy.specimpl.ResteasyHttpHeaders",
+                            "org.jboss.resteasy.specimpl.ResteasyUriInfo",
+                            "java.lang.String",
+                            "org.jboss.resteasy.core.SynchronousDispatcher",
+                            "org.jboss.resteasy.plugins.server.netty.NettyHttpResponse",
+                            "boolean");
+                }
+                if (constructor != null) {
+                    constructor.addInterceptor("com.navercorp.pinpoint.plugin.resteasy.interceptor.NettyHttpRequestConstructorInterceptor");
+                } else {
+                    logger.error("NettyHttpRequest constructor not found") ;
+                }
+
+                return target.toBytecode();
+            }
+        });
+    }
+
+    private void addAsynchronousResponseTransformers() {
+        transformTemplate.transform("org.jboss.resteasy.core.AbstractAsynchronousResponse", new TransformCallback() {
+            @Override
+            public byte[] doInTransform(Instrumentor instrumentor, ClassLoader classLoader, String className, Class<?> classBeingRedefined, ProtectionDomain protectionDomain, byte[] classfileBuffer) throws InstrumentException {
+                InstrumentClass target = instrumentor.getInstrumentClass(classLoader, className, classfileBuffer);
+                target.addField("com.navercorp.pinpoint.plugin.resteasy.SuspendedRequestAccessor");
+
+                for (String parameterType : va("java.lang.Object", "java.lang.Throwable")) {
+                    InstrumentMethod resumeMethod = target.getDeclaredMethod("internalResume", parameterType);
+                    if (resumeMethod != null) {
+                        resumeMethod.addInterceptor("com.navercorp.pinpoint.plugin.resteasy.interceptor.AsynchronousResponseResumeInterceptor");
+                    } else {
+                        logger.error("AbstractAsynchronousResponse.internalResume({}) not found", parameterType) ;
+                    }
+                }
+
+                return target.toBytecode();
+            }
+        });
+
+        transformTemplate.transform("org.jboss.resteasy.plugins.server.netty.NettyExecutionContext$NettyHttpAsyncResponse", new TransformCallback() {
+            @Override
+            public byte[] doInTransform(Instrumentor instrumentor, ClassLoader classLoader, String className, Class<?> classBeingRedefined, ProtectionDomain protectionDomain, byte[] classfileBuffer) throws InstrumentException {
+                InstrumentClass target = instrumentor.getInstrumentClass(classLoader, className, classfileBuffer);
+
+                for (InstrumentMethod cancelMethod : target.getDeclaredMethods(MethodFilters.name("cancel"))) {
+                    cancelMethod.addInterceptor("com.navercorp.pinpoint.plugin.resteasy.interceptor.AsynchronousResponseCancelInterceptor");
+                }
+
+                return target.toBytecode();
+            }
+        });
+    }
+
+    private void addResourceInvokerTransformers(final RestEasyConfiguration config) {
+        transformTemplate.transform("org.jboss.resteasy.core.ResourceMethodInvoker", new TransformCallback() {
+            @Override
+            public byte[] doInTransform(Instrumentor instrumentor, ClassLoader classLoader, String className, Class<?> classBeingRedefined, ProtectionDomain protectionDomain, byte[] classfileBuffer) throws InstrumentException {
+                InstrumentClass target = instrumentor.getInstrumentClass(classLoader, className, classfileBuffer);
+                target.addField("com.navercorp.pinpoint.plugin.resteasy.ResourcePathTemplateAccessor");
+                target.addGetter("com.navercorp.pinpoint.plugin.resteasy.ResourceMethodGetter", "method");
+
+                InstrumentMethod invokeMethod = target.getDeclaredMethod(
+                        "invoke",
+                        "org.jboss.resteasy.spi.HttpRequest",
+                        "org.jboss.resteasy.spi.HttpResponse",
+                        "java.lang.Object");
+                if (invokeMethod != null) {
+                    invokeMethod.addInterceptor("com.navercorp.pinpoint.plugin.resteasy.interceptor.ResourceMethodInvokerInterceptor");
+                } else {
+                    logger.error("ResourceMethodInvoker.invoke() not found") ;
+                }
+
+                return target.toBytecode();
+            }
+        });
+
+        if (!config.isRestEasyRpcNameTemplate()) {
+            return;
+        }
+        transformTemplate.transform("org.jboss.resteasy.core.ResourceLocatorInvoker", new TransformCallback() {
+            @Override
+            public byte[] doInTransform(Instrumentor instrumentor, ClassLoader classLoader, String className, Class<?> classBeingRedefined, ProtectionDomain protectionDomain, byte[] classfileBuffer) throws InstrumentException {
+                InstrumentClass target = instrumentor.getInstrumentClass(classLoader, className, classfileBuffer);
+                target.addField("com.navercorp.pinpoint.plugin.resteasy.ResourcePathTemplateAccessor");
+                target.addGetter("com.navercorp.pinpoint.plugin.resteasy.ResourceLocatorGetter", "method");
+
+                InstrumentMethod invokeMethod = target.getDeclaredMethod(
+                        "invokeOnTargetObject",
+                        "org.jboss.resteasy.spi.HttpRequest",
+                        "org.jboss.resteasy.spi.HttpResponse",
+                        "java.lang.Object");
+                if (invokeMethod != null) {
+                    invokeMethod.addInterceptor("com.navercorp.pinpoint.plugin.resteasy.interceptor.ResourceLocatorInvokerInterceptor");
+                } else {
+                    logger.error("ResourceLocatorInvoker.invokeOnTargetObject() not found") ;
+                }
+
+                return target.toBytecode();
+            }
+        });
     }
 
     @Override
@@ -23,5 +23,22 @@ public class RestEasyTypeProvider implements TraceMetadataProvider {
     public void setup(TraceMetadataSetupContext context) {
         context.addServiceType(RestEasyConstants.RESTEASY);
         context.addServiceType(RestEasyConstants.RESTEASY_METHOD);
+        context.addServiceType(RestEasyConstants.RESTEASY_CLIENT);
+        context.addAnnotationKey(RestEasyConstants.QUEUE_WAIT);
+        context.addAnnotationKey(RestEasyConstants.EVENT_LOOP_BLOCKED);
+        context.addAnnotationKey(RestEasyConstants.RESPONSE_FIRST_BYTE);
+        context.addAnnotationKey(RestEasyConstants.RESPONSE_LAST_BYTE);
+        context.addAnnotationKey(RestEasyConstants.RESPONSE_BYTES);
+        context.addAnnotationKey(RestEasyConstants.ENTITY_MEDIA_TYPE);
+        context.addAnnotationKey(RestEasyConstants.ENTITY_TYPE);
+        context.addAnnotationKey(RestEasyConstants.ENTITY_BYTES);
+        context.addAnnotationKey(RestEasyConstants.CPU_TIME);
+        context.addAnnotationKey(RestEasyConstants.ALLOCATED_BYTES);
+        context.addAnnotationKey(RestEasyConstants.TAIL_SAMPLED);
+        context.addAnnotationKey(RestEasyConstants.EXCEPTION_CLASS);
+        context.addAnnotationKey(RestEasyConstants.EXCEPTION_SUPPRESSED);
+        context.addAnnotationKey(RestEasyConstants.TLS_HANDSHAKE);
+        context.addAnnotationKey(RestEasyConstants.TLS_SESSION);
+        context.addAnnotationKey(RestEasyConstants.MAPPED_EXCEPTION_CLASS);
     }
 }
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2014 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.navercorp.pinpoint.plugin.resteasy;
+
+import com.navercorp.pinpoint.bootstrap.context.AsyncTraceId;
+import com.navercorp.pinpoint.bootstrap.context.Trace;
+import com.navercorp.pinpoint.common.trace.AnnotationKey;
+import com.navercorp.pinpoint.plugin.resteasy.metric.EndpointHistograms;
+import com.navercorp.pinpoint.plugin.resteasy.requestlog.RequestLog;
+import com.navercorp.pinpoint.plugin.resteasy.requestlog.RequestSummary;
+import org.jboss.resteasy.spi.HttpResponse;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A request whose RequestDispatcher.service() returned while its AsyncResponse was still suspended.
+ * <p>
+ * The root trace stays open, unbound from any thread, until the response is resumed or cancelled. Dispatch
+ * and resume may finish in either order on different threads: {@link #suspend} and {@link #resume} hand
+ * over under the response monitor, and whichever of the two comes last completes the request.
+ */
+public class SuspendedRequest {
+    private static final SuspendedRequest RESUMED = new SuspendedRequest(null, null, null, null, 0, null);
+
+    private final Trace trace;
+    private final AsyncTraceId asyncTraceId;
+    private final EndpointHistograms endpointHistograms;
+    private final String endpoint;
+    private final long startNanos;
+    private final HttpResponse response;
+    private final AtomicBoolean completed = new AtomicBoolean();
+    // only touched by the thread running internalResume()
+    private Trace resumeTrace;
+    // set before suspend() publishes the request
+    private RequestLog requestLog;
+    private RequestSummary requestSummary;
+
+    /**
+     * @param trace              sampled root trace, null when the request is not traced
+     * @param asyncTraceId       id of the async trace recording the resume, null when the request is not traced
+     * @param endpointHistograms null when profiler.resteasy.latencyhistogram.enable is false
+     */
+    public SuspendedRequest(Trace trace, AsyncTraceId asyncTraceId, EndpointHistograms endpointHistograms, String endpoint, long startNanos, HttpResponse response) {
+        this.trace = trace;
+        this.asyncTraceId = asyncTraceId;
+        this.endpointHistograms = endpointHistograms;
+        this.endpoint = endpoint;
+        this.startNanos = startNanos;
+        this.response = response;
+    }
+
+    /**
+     * Dispatch side: attaches the request to its asynchronous response, or completes it right away when
+     * the response has already been resumed.
+     */
+    public static void suspend(SuspendedRequestAccessor asyncResponse, SuspendedRequest suspendedRequest) {
+        final boolean resumed;
+        synchronized (asyncResponse) {
+            resumed = asyncResponse._$PINPOINT$_getSuspendedRequest() == RESUMED;
+            asyncResponse._$PINPOINT$_setSuspendedRequest(resumed ? null : suspendedRequest);
+        }
+        if (resumed) {
+            suspendedRequest.complete(null);
+        }
+    }
+
+    /**
+     * Resume side: detaches the request, or leaves a mark for {@link #suspend} when dispatch is still running.
+     *
+     * @return the request to complete, null when dispatch will complete it
+     */
+    public static SuspendedRequest resume(SuspendedRequestAccessor asyncResponse) {
+        synchronized (asyncResponse) {
+            final SuspendedRequest suspendedRequest = asyncResponse._$PINPOINT$_getSuspendedRequest();
+            if (suspendedRequest == null) {
+                asyncResponse._$PINPOINT$_setSuspendedRequest(RESUMED);
+                return null;
+            }
+            if (suspendedRequest == RESUMED) {
+                return null;
+            }
+            asyncResponse._$PINPOINT$_setSuspendedRequest(null);
+            return suspendedRequest;
+        }
+    }
+
+    /**
+     * @return the request attached to the response, null when none or already detached
+     */
+    public static SuspendedRequest get(SuspendedRequestAccessor asyncResponse) {
+        synchronized (asyncResponse) {
+            final SuspendedRequest suspendedRequest = asyncResponse._$PINPOINT$_getSuspendedRequest();
+            return suspendedRequest == RESUMED ? null : suspendedRequest;
+        }
+    }
+
+    /**
+     * Writes the request to requestLog when it completes.
+     */
+    public void setRequestLog(RequestLog requestLog, RequestSummary requestSummary) {
+        this.requestLog = requestLog;
+        this.requestSummary = requestSummary;
+    }
+
+    public AsyncTraceId getAsyncTraceId() {
+        return asyncTraceId;
+    }
+
+    public void setResumeTrace(Trace resumeTrace) {
+        this.resumeTrace = resumeTrace;
+    }
+
+    /**
+     * @return the async trace started for the resume, null when none
+     */
+    public Trace takeResumeTrace() {
+        final Trace trace = this.resumeTrace;
+        this.resumeTrace = null;
+        return trace;
+    }
+
+    /**
+     * Records the latency and closes the root trace, once.
+     *
+     * @param throwable the exception the response was resumed with, may be null
+     */
+    public void complete(Throwable throwable) {
+        if (!completed.compareAndSet(false, true)) {
+            return;
+        }
+        final int status = response != null ? response.getStatus() : 0;
+        try {
+            if (endpointHistograms != null) {
+                endpointHistograms.record(endpoint, (System.nanoTime() - startNanos) / 1000, status, throwable != null);
+            }
+            if (requestLog != null) {
+                requestLog.write(requestSummary, endpoint, status, throwable != null, true);
+            }
+        } finally {
+            if (trace != null) {
+                if (response != null) {
+                    trace.getSpanRecorder().recordAttribute(AnnotationKey.HTTP_STATUS_CODE, status);
+                }
+                if (throwable != null) {
+                    trace.getSpanRecorder().recordException(throwable);
+                }
+                trace.close();
+            }
+        }
+    }
+}
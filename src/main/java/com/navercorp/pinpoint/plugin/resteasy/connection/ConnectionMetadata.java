@@ -0,0 +1,74 @@
+/*
+ * Copyright 2014 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.navercorp.pinpoint.plugin.resteasy.connection;
+
+/**
+ * What the root span records about the client side of a keep-alive connection, derived once from the
+ * peer socket address and the Host and real-IP headers, and reused while those headers stay the same.
+ */
+public final class ConnectionMetadata {
+    private final String host;
+    private final String realIp;
+    private final String peerAddress;
+    private final String endPoint;
+    private final String remoteAddress;
+
+    public ConnectionMetadata(String host, String realIp, String peerAddress, String endPoint, String remoteAddress) {
+        this.host = host;
+        this.realIp = realIp;
+        this.peerAddress = peerAddress;
+        this.endPoint = endPoint;
+        this.remoteAddress = remoteAddress;
+    }
+
+    /**
+     * @return whether this metadata was derived from the same Host and real-IP header values
+     */
+    public boolean matches(String host, String realIp) {
+        return equals(this.host, host) && equals(this.realIp, realIp);
+    }
+
+    private static boolean equals(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    /**
+     * @return IP address of the socket peer, null when unknown
+     */
+    public String getPeerAddress() {
+        return peerAddress;
+    }
+
+    public String getEndPoint() {
+        return endPoint;
+    }
+
+    public String getRemoteAddress() {
+        return remoteAddress;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("ConnectionMetadata{");
+        sb.append("host='").append(host).append('\'');
+        sb.append(", realIp='").append(realIp).append('\'');
+        sb.append(", peerAddress='").append(peerAddress).append('\'');
+        sb.append(", endPoint='").append(endPoint).append('\'');
+        sb.append(", remoteAddress='").append(remoteAddress).append('\'');
+        sb.append('}');
+        return sb.toString();
+    }
+}
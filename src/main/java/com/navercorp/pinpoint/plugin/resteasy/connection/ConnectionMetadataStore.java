@@ -0,0 +1,115 @@
+/*
+ * Copyright 2014 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.navercorp.pinpoint.plugin.resteasy.connection;
+
+import com.navercorp.pinpoint.plugin.resteasy.metric.ConnectionStats;
+import com.navercorp.pinpoint.plugin.resteasy.metric.TlsStats;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+
+/**
+ * Keeps a {@link ConnectionMetadata} on the Netty channel behind the ChannelHandlerContext passed to
+ * RequestDispatcher.service(). Netty 3 and Netty 4 have unrelated channel APIs, so each has its own
+ * implementation, and only the one matching profiler.resteasy.isnetty4 is ever loaded. The few other channel
+ * operations the interceptors need live here for the same reason.
+ */
+public abstract class ConnectionMetadataStore {
+    static final String CONNECTION_STATS_HANDLER_NAME = "pinpoint-connection-stats";
+    static final String RESPONSE_TRANSFER_HANDLER_NAME = "pinpoint-response-transfer";
+
+    public static ConnectionMetadataStore create(boolean netty4) {
+        if (netty4) {
+            return new Netty4ConnectionMetadataStore();
+        }
+        return new Netty3ConnectionMetadataStore();
+    }
+
+    /**
+     * @param channelHandlerContext org.jboss.netty or io.netty ChannelHandlerContext, may be null
+     * @return the metadata stored on the channel, null when none
+     */
+    public abstract ConnectionMetadata get(Object channelHandlerContext);
+
+    public abstract void set(Object channelHandlerContext, ConnectionMetadata metadata);
+
+    /**
+     * @return IP address of the socket peer, null when unknown
+     */
+    public abstract String getPeerAddress(Object channelHandlerContext);
+
+    /**
+     * @return whether the current thread is the I/O thread of the channel, i.e. no executor is configured
+     */
+    public abstract boolean isIoThread(Object channelHandlerContext);
+
+    /**
+     * Has the response transfer handler of the channel notify the listener once the write ending the response
+     * being written completes; channel writes are ordered, so by then the whole response is on the socket.
+     *
+     * @return false when the channel has no response transfer handler
+     */
+    public abstract boolean expectLastWrite(Object channelHandlerContext, WriteCompletionListener listener);
+
+    /**
+     * Takes back a listener handed to {@link #expectLastWrite(Object, WriteCompletionListener)}.
+     *
+     * @return false when a write has already picked it up
+     */
+    public abstract boolean cancelLastWrite(Object channelHandlerContext, WriteCompletionListener listener);
+
+    /**
+     * @param outputStream NettyHttpResponse.getOutputStream()
+     * @return bytes held by a response that buffers its whole entity, -1 when the response streams its entity
+     */
+    public abstract long getBufferedBytes(OutputStream outputStream);
+
+    /**
+     * Puts a handler feeding connectionStats at the head of a server channel pipeline.
+     *
+     * @param pipelineOwner Netty 3 ChannelPipeline returned by HttpServerPipelineFactory.getPipeline(),
+     *                      Netty 4 channel passed to NettyJaxrsServer.setupHandlers()
+     * @param tlsStats      fed with the handshake of channels having an SslHandler, null to leave TLS alone
+     */
+    public abstract void addConnectionStatsHandler(Object pipelineOwner, ConnectionStats connectionStats, TlsStats tlsStats);
+
+    /**
+     * Puts the handler {@link #expectLastWrite(Object, WriteCompletionListener)} relies on in front of RESTEasy's
+     * RequestHandler, the last handler of a server channel pipeline. Only RESTEasy channels see it.
+     *
+     * @param pipelineOwner as for {@link #addConnectionStatsHandler(Object, ConnectionStats, TlsStats)}
+     */
+    public abstract void addResponseTransferHandler(Object pipelineOwner);
+
+    /**
+     * Counts a request against the connection it came in on, no-op when the channel has no stats handler.
+     *
+     * @return the TLS handshake of the connection when this is its first request, null otherwise
+     */
+    public abstract TlsHandshake requestServed(Object channelHandlerContext);
+
+    static String toHostAddress(SocketAddress socketAddress) {
+        if (socketAddress instanceof InetSocketAddress) {
+            final InetSocketAddress inetSocketAddress = (InetSocketAddress) socketAddress;
+            // the textual IP, never a reverse DNS lookup
+            if (inetSocketAddress.getAddress() != null) {
+                return inetSocketAddress.getAddress().getHostAddress();
+            }
+        }
+        return null;
+    }
+}
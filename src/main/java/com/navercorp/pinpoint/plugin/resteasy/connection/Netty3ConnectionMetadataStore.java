@@ -0,0 +1,145 @@
+/*
+ * Copyright 2014 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.navercorp.pinpoint.plugin.resteasy.connection;
+
+import com.navercorp.pinpoint.plugin.resteasy.metric.ConnectionStats;
+import com.navercorp.pinpoint.plugin.resteasy.metric.TlsStats;
+import org.jboss.netty.buffer.ChannelBufferOutputStream;
+import org.jboss.netty.channel.ChannelHandler;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.ChannelLocal;
+import org.jboss.netty.channel.ChannelPipeline;
+import org.jboss.netty.handler.execution.ExecutionHandler;
+
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * Netty 3: the metadata lives in a {@link ChannelLocal}, removed when the channel closes.
+ */
+class Netty3ConnectionMetadataStore extends ConnectionMetadataStore {
+    private static final ChannelLocal<ConnectionMetadata> CONNECTION_METADATA = new ChannelLocal<ConnectionMetadata>(true);
+
+    @Override
+    public ConnectionMetadata get(Object channelHandlerContext) {
+        if (channelHandlerContext == null) {
+            return null;
+        }
+        return CONNECTION_METADATA.get(((ChannelHandlerContext) channelHandlerContext).getChannel());
+    }
+
+    @Override
+    public void set(Object channelHandlerContext, ConnectionMetadata metadata) {
+        if (channelHandlerContext == null) {
+            return;
+        }
+        CONNECTION_METADATA.set(((ChannelHandlerContext) channelHandlerContext).getChannel(), metadata);
+    }
+
+    @Override
+    public String getPeerAddress(Object channelHandlerContext) {
+        if (channelHandlerContext == null) {
+            return null;
+        }
+        return toHostAddress(((ChannelHandlerContext) channelHandlerContext).getChannel().getRemoteAddress());
+    }
+
+    @Override
+    public boolean isIoThread(Object channelHandlerContext) {
+        if (channelHandlerContext == null) {
+            return false;
+        }
+        // Netty 3 has no inEventLoop(): without an ExecutionHandler upstream, handlers run on the I/O thread
+        return ((ChannelHandlerContext) channelHandlerContext).getPipeline().get(ExecutionHandler.class) == null;
+    }
+
+    @Override
+    public boolean expectLastWrite(Object channelHandlerContext, WriteCompletionListener listener) {
+        if (channelHandlerContext == null) {
+            return false;
+        }
+        final Object handler = ((ChannelHandlerContext) channelHandlerContext).getPipeline().get(RESPONSE_TRANSFER_HANDLER_NAME);
+        if (handler instanceof Netty3ResponseTransferHandler) {
+            ((Netty3ResponseTransferHandler) handler).expect(listener);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public boolean cancelLastWrite(Object channelHandlerContext, WriteCompletionListener listener) {
+        if (channelHandlerContext == null) {
+            return false;
+        }
+        final Object handler = ((ChannelHandlerContext) channelHandlerContext).getPipeline().get(RESPONSE_TRANSFER_HANDLER_NAME);
+        return handler instanceof Netty3ResponseTransferHandler && ((Netty3ResponseTransferHandler) handler).cancel(listener);
+    }
+
+    /**
+     * Called for HttpServerPipelineFactory.getPipeline() and again for HttpsServerPipelineFactory.getPipeline(),
+     * which puts its SslHandler first after the former returns: the handler is then moved back to the head, so
+     * that TLS traffic is counted encrypted as on Netty 4.
+     */
+    @Override
+    public void addConnectionStatsHandler(Object pipelineOwner, ConnectionStats connectionStats, TlsStats tlsStats) {
+        final ChannelPipeline pipeline = (ChannelPipeline) pipelineOwner;
+        final ChannelHandler handler = pipeline.get(CONNECTION_STATS_HANDLER_NAME);
+        if (handler == null) {
+            pipeline.addFirst(CONNECTION_STATS_HANDLER_NAME, new Netty3ConnectionStatsHandler(connectionStats, tlsStats));
+        } else if (pipeline.getFirst() != handler) {
+            // not attached to a channel yet, moving it fires no event
+            pipeline.remove(handler);
+            pipeline.addFirst(CONNECTION_STATS_HANDLER_NAME, handler);
+        }
+    }
+
+    /**
+     * Called for both pipeline factories like {@link #addConnectionStatsHandler(Object, ConnectionStats, TlsStats)};
+     * HttpsServerPipelineFactory only adds at the head, so the handler stays in front of RequestHandler.
+     */
+    @Override
+    public void addResponseTransferHandler(Object pipelineOwner) {
+        final ChannelPipeline pipeline = (ChannelPipeline) pipelineOwner;
+        if (pipeline.get(RESPONSE_TRANSFER_HANDLER_NAME) == null) {
+            final List<String> names = pipeline.getNames();
+            pipeline.addBefore(names.get(names.size() - 1), RESPONSE_TRANSFER_HANDLER_NAME, new Netty3ResponseTransferHandler());
+        }
+    }
+
+    @Override
+    public TlsHandshake requestServed(Object channelHandlerContext) {
+        if (channelHandlerContext == null) {
+            return null;
+        }
+        // name lookup, a hash map in the Netty 3 pipeline
+        final Object handler = ((ChannelHandlerContext) channelHandlerContext).getPipeline().get(CONNECTION_STATS_HANDLER_NAME);
+        if (handler instanceof Netty3ConnectionStatsHandler) {
+            return ((Netty3ConnectionStatsHandler) handler).requestServed();
+        }
+        return null;
+    }
+
+    /**
+     * The Netty 3 NettyHttpResponse writes its entity into a ChannelBuffer and sends it in one piece.
+     */
+    @Override
+    public long getBufferedBytes(OutputStream outputStream) {
+        if (outputStream instanceof ChannelBufferOutputStream) {
+            return ((ChannelBufferOutputStream) outputStream).buffer().readableBytes();
+        }
+        return -1;
+    }
+}
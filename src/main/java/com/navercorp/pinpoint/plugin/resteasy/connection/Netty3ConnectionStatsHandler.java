@@ -0,0 +1,116 @@
+/*
+ * Copyright 2014 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.navercorp.pinpoint.plugin.resteasy.connection;
+
+import com.navercorp.pinpoint.plugin.resteasy.metric.ConnectionStats;
+import com.navercorp.pinpoint.plugin.resteasy.metric.TlsStats;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.channel.ChannelFuture;
+import org.jboss.netty.channel.ChannelFutureListener;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.ChannelStateEvent;
+import org.jboss.netty.channel.MessageEvent;
+import org.jboss.netty.channel.SimpleChannelHandler;
+import org.jboss.netty.handler.ssl.SslHandler;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One per channel, at the head of the pipeline. Netty 3 sends downstream events on the writing thread,
+ * so the per channel counters are atomic.
+ * <p>
+ * This handler is at the head of the pipeline, in front of the SslHandler of HttpsServerPipelineFactory, so
+ * over TLS the bytes counted are the encrypted records. The handshake is started here, as Netty 3 servers are
+ * expected to, so its future can be timed from the moment the connection was accepted.
+ */
+class Netty3ConnectionStatsHandler extends SimpleChannelHandler {
+    private final ConnectionStats connectionStats;
+    private final TlsStats tlsStats;
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong bytesRead = new AtomicLong();
+    private final AtomicLong bytesWritten = new AtomicLong();
+    private volatile TlsHandshake tlsHandshake;
+
+    Netty3ConnectionStatsHandler(ConnectionStats connectionStats, TlsStats tlsStats) {
+        this.connectionStats = connectionStats;
+        this.tlsStats = tlsStats;
+    }
+
+    /**
+     * @return the TLS handshake for the first request on the connection, null otherwise
+     */
+    TlsHandshake requestServed() {
+        final long served = requests.incrementAndGet();
+        connectionStats.requestServed();
+        return served == 1 ? tlsHandshake : null;
+    }
+
+    @Override
+    public void channelConnected(ChannelHandlerContext ctx, ChannelStateEvent e) throws Exception {
+        connectionStats.opened();
+        if (tlsStats != null) {
+            final SslHandler sslHandler = ctx.getPipeline().get(SslHandler.class);
+            if (sslHandler != null) {
+                timeHandshake(sslHandler);
+            }
+        }
+        super.channelConnected(ctx, e);
+    }
+
+    private void timeHandshake(final SslHandler sslHandler) {
+        final long startNanos = System.nanoTime();
+        final long startMillis = System.currentTimeMillis();
+        // returns the pending future when the handshake is already under way
+        sslHandler.handshake().addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture future) throws Exception {
+                if (!future.isSuccess()) {
+                    tlsStats.handshakeFailed();
+                    return;
+                }
+                final TlsHandshake handshake = TlsHandshake.completed(sslHandler.getEngine(), startNanos, startMillis);
+                tlsStats.handshake(handshake.getDurationMicros(), handshake.getProtocol(), handshake.getCipherSuite(), handshake.isResumed());
+                tlsHandshake = handshake;
+            }
+        });
+    }
+
+    @Override
+    public void channelClosed(ChannelHandlerContext ctx, ChannelStateEvent e) throws Exception {
+        connectionStats.closed(requests.get(), bytesRead.get(), bytesWritten.get());
+        super.channelClosed(ctx, e);
+    }
+
+    @Override
+    public void messageReceived(ChannelHandlerContext ctx, MessageEvent e) throws Exception {
+        if (e.getMessage() instanceof ChannelBuffer) {
+            final int bytes = ((ChannelBuffer) e.getMessage()).readableBytes();
+            bytesRead.addAndGet(bytes);
+            connectionStats.read(bytes);
+        }
+        super.messageReceived(ctx, e);
+    }
+
+    @Override
+    public void writeRequested(ChannelHandlerContext ctx, MessageEvent e) throws Exception {
+        if (e.getMessage() instanceof ChannelBuffer) {
+            final int bytes = ((ChannelBuffer) e.getMessage()).readableBytes();
+            bytesWritten.addAndGet(bytes);
+            connectionStats.written(bytes);
+        }
+        super.writeRequested(ctx, e);
+    }
+}
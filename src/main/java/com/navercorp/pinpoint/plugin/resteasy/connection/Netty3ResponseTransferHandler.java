@@ -0,0 +1,80 @@
+/*
+ * Copyright 2014 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.navercorp.pinpoint.plugin.resteasy.connection;
+
+import org.jboss.netty.channel.ChannelFuture;
+import org.jboss.netty.channel.ChannelFutureListener;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.ChannelStateEvent;
+import org.jboss.netty.channel.MessageEvent;
+import org.jboss.netty.channel.SimpleChannelHandler;
+import org.jboss.netty.handler.codec.http.HttpChunk;
+import org.jboss.netty.handler.codec.http.HttpMessage;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Same as {@link Netty4ResponseTransferHandler}, in front of the Netty 3 RequestHandler. Any message but a chunked
+ * HttpMessage or a chunk other than the last one ends a response, the NettyHttpResponse RestEasyHttpResponseEncoder
+ * encodes further down included. Netty 3 sends downstream events on the writing thread.
+ */
+class Netty3ResponseTransferHandler extends SimpleChannelHandler {
+    private final AtomicReference<WriteCompletionListener> expected = new AtomicReference<WriteCompletionListener>();
+
+    void expect(WriteCompletionListener listener) {
+        final WriteCompletionListener previous = expected.getAndSet(listener);
+        if (previous != null) {
+            previous.writesComplete(false);
+        }
+    }
+
+    boolean cancel(WriteCompletionListener listener) {
+        return expected.compareAndSet(listener, null);
+    }
+
+    @Override
+    public void writeRequested(ChannelHandlerContext ctx, MessageEvent e) throws Exception {
+        final WriteCompletionListener listener = isLast(e.getMessage()) ? expected.getAndSet(null) : null;
+        if (listener != null) {
+            e.getFuture().addListener(new ChannelFutureListener() {
+                @Override
+                public void operationComplete(ChannelFuture future) {
+                    listener.writesComplete(future.isSuccess());
+                }
+            });
+        }
+        super.writeRequested(ctx, e);
+    }
+
+    @Override
+    public void channelClosed(ChannelHandlerContext ctx, ChannelStateEvent e) throws Exception {
+        final WriteCompletionListener listener = expected.getAndSet(null);
+        if (listener != null) {
+            listener.writesComplete(false);
+        }
+        super.channelClosed(ctx, e);
+    }
+
+    private static boolean isLast(Object message) {
+        if (message instanceof HttpChunk) {
+            return ((HttpChunk) message).isLast();
+        }
+        if (message instanceof HttpMessage) {
+            return !((HttpMessage) message).isChunked();
+        }
+        return true;
+    }
+}
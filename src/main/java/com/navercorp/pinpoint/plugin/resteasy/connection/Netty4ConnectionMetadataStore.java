@@ -0,0 +1,127 @@
+/*
+ * Copyright 2014 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.navercorp.pinpoint.plugin.resteasy.connection;
+
+import com.navercorp.pinpoint.plugin.resteasy.metric.ConnectionStats;
+import com.navercorp.pinpoint.plugin.resteasy.metric.TlsStats;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPipeline;
+import io.netty.util.AttributeKey;
+
+import java.io.OutputStream;
+
+/**
+ * Netty 4: the metadata lives in a channel attribute, which goes away with the channel.
+ */
+class Netty4ConnectionMetadataStore extends ConnectionMetadataStore {
+    private static final AttributeKey<ConnectionMetadata> CONNECTION_METADATA = AttributeKey.valueOf("com.navercorp.pinpoint.plugin.resteasy.connectionMetadata");
+
+    @Override
+    public ConnectionMetadata get(Object channelHandlerContext) {
+        if (channelHandlerContext == null) {
+            return null;
+        }
+        // channel().attr(), not ctx.attr(): on Netty 4.0 the latter is scoped to the handler
+        return ((ChannelHandlerContext) channelHandlerContext).channel().attr(CONNECTION_METADATA).get();
+    }
+
+    @Override
+    public void set(Object channelHandlerContext, ConnectionMetadata metadata) {
+        if (channelHandlerContext == null) {
+            return;
+        }
+        ((ChannelHandlerContext) channelHandlerContext).channel().attr(CONNECTION_METADATA).set(metadata);
+    }
+
+    @Override
+    public String getPeerAddress(Object channelHandlerContext) {
+        if (channelHandlerContext == null) {
+            return null;
+        }
+        return toHostAddress(((ChannelHandlerContext) channelHandlerContext).channel().remoteAddress());
+    }
+
+    @Override
+    public boolean isIoThread(Object channelHandlerContext) {
+        if (channelHandlerContext == null) {
+            return false;
+        }
+        return ((ChannelHandlerContext) channelHandlerContext).channel().eventLoop().inEventLoop();
+    }
+
+    @Override
+    public boolean expectLastWrite(Object channelHandlerContext, WriteCompletionListener listener) {
+        if (channelHandlerContext == null) {
+            return false;
+        }
+        final Object handler = ((ChannelHandlerContext) channelHandlerContext).pipeline().get(RESPONSE_TRANSFER_HANDLER_NAME);
+        if (handler instanceof Netty4ResponseTransferHandler) {
+            ((Netty4ResponseTransferHandler) handler).expect(listener);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public boolean cancelLastWrite(Object channelHandlerContext, WriteCompletionListener listener) {
+        if (channelHandlerContext == null) {
+            return false;
+        }
+        final Object handler = ((ChannelHandlerContext) channelHandlerContext).pipeline().get(RESPONSE_TRANSFER_HANDLER_NAME);
+        return handler instanceof Netty4ResponseTransferHandler && ((Netty4ResponseTransferHandler) handler).cancel(listener);
+    }
+
+    /**
+     * setupHandlers() has already put any SslHandler in the pipeline, so TLS traffic is counted encrypted.
+     */
+    @Override
+    public void addConnectionStatsHandler(Object pipelineOwner, ConnectionStats connectionStats, TlsStats tlsStats) {
+        final ChannelPipeline pipeline = ((Channel) pipelineOwner).pipeline();
+        if (pipeline.get(CONNECTION_STATS_HANDLER_NAME) == null) {
+            pipeline.addFirst(CONNECTION_STATS_HANDLER_NAME, new Netty4ConnectionStatsHandler(connectionStats, tlsStats));
+        }
+    }
+
+    @Override
+    public void addResponseTransferHandler(Object pipelineOwner) {
+        final ChannelPipeline pipeline = ((Channel) pipelineOwner).pipeline();
+        if (pipeline.get(RESPONSE_TRANSFER_HANDLER_NAME) == null) {
+            // on the I/O thread whatever executor RequestHandler runs on
+            pipeline.addBefore(pipeline.lastContext().name(), RESPONSE_TRANSFER_HANDLER_NAME, new Netty4ResponseTransferHandler());
+        }
+    }
+
+    @Override
+    public TlsHandshake requestServed(Object channelHandlerContext) {
+        if (channelHandlerContext == null) {
+            return null;
+        }
+        final Object handler = ((ChannelHandlerContext) channelHandlerContext).pipeline().get(CONNECTION_STATS_HANDLER_NAME);
+        if (handler instanceof Netty4ConnectionStatsHandler) {
+            return ((Netty4ConnectionStatsHandler) handler).requestServed();
+        }
+        return null;
+    }
+
+    /**
+     * The Netty 4 NettyHttpResponse streams its entity in chunks, counted by ChunkOutputStreamFlushInterceptor.
+     */
+    @Override
+    public long getBufferedBytes(OutputStream outputStream) {
+        return -1;
+    }
+}
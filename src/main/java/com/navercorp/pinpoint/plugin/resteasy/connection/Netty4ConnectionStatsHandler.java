@@ -0,0 +1,125 @@
+/*
+ * Copyright 2014 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.navercorp.pinpoint.plugin.resteasy.connection;
+
+import com.navercorp.pinpoint.plugin.resteasy.metric.ConnectionStats;
+import com.navercorp.pinpoint.plugin.resteasy.metric.TlsStats;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufHolder;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.ssl.SslHandler;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.GenericFutureListener;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One per channel, at the head of the pipeline. Handler methods run on the event loop, but requests are
+ * counted on the executor thread that serves them, so the per channel counters are atomic.
+ * <p>
+ * NettyJaxrsServer adds its SslHandler behind this one, so over TLS the bytes counted are the encrypted records.
+ * The handshake is timed from channelActive() to the completion of its handshake future.
+ */
+class Netty4ConnectionStatsHandler extends ChannelDuplexHandler {
+    private final ConnectionStats connectionStats;
+    private final TlsStats tlsStats;
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong bytesRead = new AtomicLong();
+    private final AtomicLong bytesWritten = new AtomicLong();
+    private volatile TlsHandshake tlsHandshake;
+
+    Netty4ConnectionStatsHandler(ConnectionStats connectionStats, TlsStats tlsStats) {
+        this.connectionStats = connectionStats;
+        this.tlsStats = tlsStats;
+    }
+
+    /**
+     * @return the TLS handshake for the first request on the connection, null otherwise
+     */
+    TlsHandshake requestServed() {
+        final long served = requests.incrementAndGet();
+        connectionStats.requestServed();
+        return served == 1 ? tlsHandshake : null;
+    }
+
+    @Override
+    public void channelActive(ChannelHandlerContext ctx) throws Exception {
+        connectionStats.opened();
+        if (tlsStats != null) {
+            final SslHandler sslHandler = ctx.pipeline().get(SslHandler.class);
+            if (sslHandler != null) {
+                timeHandshake(sslHandler);
+            }
+        }
+        super.channelActive(ctx);
+    }
+
+    private void timeHandshake(final SslHandler sslHandler) {
+        final long startNanos = System.nanoTime();
+        final long startMillis = System.currentTimeMillis();
+        sslHandler.handshakeFuture().addListener(new GenericFutureListener<Future<Channel>>() {
+            @Override
+            public void operationComplete(Future<Channel> future) throws Exception {
+                if (!future.isSuccess()) {
+                    tlsStats.handshakeFailed();
+                    return;
+                }
+                final TlsHandshake handshake = TlsHandshake.completed(sslHandler.engine(), startNanos, startMillis);
+                tlsStats.handshake(handshake.getDurationMicros(), handshake.getProtocol(), handshake.getCipherSuite(), handshake.isResumed());
+                tlsHandshake = handshake;
+            }
+        });
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        connectionStats.closed(requests.get(), bytesRead.get(), bytesWritten.get());
+        super.channelInactive(ctx);
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        final int bytes = readableBytes(msg);
+        if (bytes > 0) {
+            bytesRead.addAndGet(bytes);
+            connectionStats.read(bytes);
+        }
+        super.channelRead(ctx, msg);
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        final int bytes = readableBytes(msg);
+        if (bytes > 0) {
+            bytesWritten.addAndGet(bytes);
+            connectionStats.written(bytes);
+        }
+        super.write(ctx, msg, promise);
+    }
+
+    private static int readableBytes(Object msg) {
+        if (msg instanceof ByteBuf) {
+            return ((ByteBuf) msg).readableBytes();
+        }
+        if (msg instanceof ByteBufHolder) {
+            return ((ByteBufHolder) msg).content().readableBytes();
+        }
+        return 0;
+    }
+}
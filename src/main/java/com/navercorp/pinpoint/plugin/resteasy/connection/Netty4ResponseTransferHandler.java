@@ -0,0 +1,81 @@
+/*
+ * Copyright 2014 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.navercorp.pinpoint.plugin.resteasy.connection;
+
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.codec.http.LastHttpContent;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * One per channel, right in front of RESTEasy's RequestHandler, so that it sees the HttpObjects a response is
+ * written as before the encoders turn them into bytes. NettyHttpResponse.finish() always ends with a
+ * LastHttpContent, FullHttpResponse included: the listener expected by then is notified with the outcome of
+ * that write.
+ * <p>
+ * One listener is expected at a time, finish() running once per request. Only a client pipelining requests
+ * can have the last write of the previous response picked up instead, which moves the recorded last byte
+ * earlier.
+ */
+class Netty4ResponseTransferHandler extends ChannelDuplexHandler {
+    private final AtomicReference<WriteCompletionListener> expected = new AtomicReference<WriteCompletionListener>();
+
+    void expect(WriteCompletionListener listener) {
+        final WriteCompletionListener previous = expected.getAndSet(listener);
+        if (previous != null) {
+            previous.writesComplete(false);
+        }
+    }
+
+    boolean cancel(WriteCompletionListener listener) {
+        return expected.compareAndSet(listener, null);
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        final WriteCompletionListener listener = msg instanceof LastHttpContent ? expected.getAndSet(null) : null;
+        if (listener == null) {
+            ctx.write(msg, promise);
+            return;
+        }
+        if (promise.isVoid()) {
+            // no future to wait for, the write is taken as done once handed on
+            ctx.write(msg, promise);
+            listener.writesComplete(true);
+            return;
+        }
+        promise.addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture future) {
+                listener.writesComplete(future.isSuccess());
+            }
+        });
+        ctx.write(msg, promise);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        final WriteCompletionListener listener = expected.getAndSet(null);
+        if (listener != null) {
+            listener.writesComplete(false);
+        }
+        super.channelInactive(ctx);
+    }
+}
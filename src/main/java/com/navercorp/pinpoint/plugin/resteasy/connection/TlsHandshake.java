@@ -0,0 +1,70 @@
+/*
+ * Copyright 2014 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.navercorp.pinpoint.plugin.resteasy.connection;
+
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLSession;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The TLS handshake of one connection, attached to the first request served over it.
+ */
+public final class TlsHandshake {
+    private final long durationMicros;
+    private final String protocol;
+    private final String cipherSuite;
+    private final boolean resumed;
+
+    TlsHandshake(long durationMicros, String protocol, String cipherSuite, boolean resumed) {
+        this.durationMicros = durationMicros;
+        this.protocol = protocol;
+        this.cipherSuite = cipherSuite;
+        this.resumed = resumed;
+    }
+
+    /**
+     * @param startNanos  System.nanoTime() when the connection was accepted
+     * @param startMillis System.currentTimeMillis() at the same time
+     */
+    static TlsHandshake completed(SSLEngine engine, long startNanos, long startMillis) {
+        final long durationMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos);
+        final SSLSession session = engine.getSession();
+        // SSLSession has no resumed flag: an abbreviated handshake reuses a session created before the connection
+        final boolean resumed = session.getCreationTime() < startMillis;
+        return new TlsHandshake(durationMicros, session.getProtocol(), session.getCipherSuite(), resumed);
+    }
+
+    public long getDurationMicros() {
+        return durationMicros;
+    }
+
+    public String getProtocol() {
+        return protocol;
+    }
+
+    public String getCipherSuite() {
+        return cipherSuite;
+    }
+
+    public boolean isResumed() {
+        return resumed;
+    }
+
+    @Override
+    public String toString() {
+        return protocol + ' ' + cipherSuite + (resumed ? " resumed" : "");
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2014 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.navercorp.pinpoint.plugin.resteasy.interceptor;
+
+import com.navercorp.pinpoint.bootstrap.context.AsyncTraceId;
+import com.navercorp.pinpoint.bootstrap.context.MethodDescriptor;
+import com.navercorp.pinpoint.bootstrap.context.SpanEventRecorder;
+import com.navercorp.pinpoint.bootstrap.context.Trace;
+import com.navercorp.pinpoint.bootstrap.context.TraceContext;
+import com.navercorp.pinpoint.bootstrap.interceptor.AroundInterceptor;
+import com.navercorp.pinpoint.bootstrap.logging.PLogger;
+import com.navercorp.pinpoint.bootstrap.logging.PLoggerFactory;
+import com.navercorp.pinpoint.common.trace.ServiceType;
+import com.navercorp.pinpoint.plugin.resteasy.AsyncMethodDescriptor;
+import com.navercorp.pinpoint.plugin.resteasy.RestEasyConstants;
+import com.navercorp.pinpoint.plugin.resteasy.SuspendedRequest;
+import com.navercorp.pinpoint.plugin.resteasy.SuspendedRequestAccessor;
+
+/**
+ * AbstractAsynchronousResponse.internalResume(Object) and internalResume(Throwable)
+ * <p>
+ * Records the resume, i.e. writing the response, in an async trace of the suspended request, then closes
+ * the request's root trace so that its span covers the whole time the request was suspended.
+ */
+public class AsynchronousResponseResumeInterceptor implements AroundInterceptor {
+    private static final AsyncMethodDescriptor ASYNC_METHOD_DESCRIPTOR = new AsyncMethodDescriptor();
+
+    private final PLogger logger = PLoggerFactory.getLogger(this.getClass());
+    private final boolean isDebug = logger.isDebugEnabled();
+
+    private final TraceContext traceContext;
+    private final MethodDescriptor methodDescriptor;
+
+    public AsynchronousResponseResumeInterceptor(TraceContext traceContext, MethodDescriptor methodDescriptor) {
+        this.traceContext = traceContext;
+        this.methodDescriptor = methodDescriptor;
+
+        traceContext.cacheApi(ASYNC_METHOD_DESCRIPTOR);
+    }
+
+    @Override
+    public void before(Object target, Object[] args) {
+        if (isDebug) {
+            logger.beforeInterceptor(target, args);
+        }
+
+        try {
+            final SuspendedRequest suspendedRequest = SuspendedRequest.get((SuspendedRequestAccessor) target);
+            if (suspendedRequest == null || suspendedRequest.getAsyncTraceId() == null) {
+                return;
+            }
+            // resumed from a thread that is itself traced, e.g. within another request: leave its trace alone
+            if (traceContext.currentRawTraceObject() != null) {
+                return;
+            }
+            final AsyncTraceId asyncTraceId = suspendedRequest.getAsyncTraceId();
+            final Trace trace = traceContext.continueAsyncTraceObject(asyncTraceId, asyncTraceId.getAsyncId(), asyncTraceId.getSpanStartTime());
+            if (trace == null) {
+                return;
+            }
+            SpanEventRecorder recorder = trace.traceBlockBegin();
+            recorder.recordServiceType(ServiceType.ASYNC);
+            recorder.recordApi(ASYNC_METHOD_DESCRIPTOR);
+
+            recorder = trace.traceBlockBegin();
+            recorder.recordServiceType(RestEasyConstants.RESTEASY_METHOD);
+            suspendedRequest.setResumeTrace(trace);
+        } catch (Throwable th) {
+            if (logger.isWarnEnabled()) {
+                logger.warn("BEFORE. Caused:{}", th.getMessage(), th);
+            }
+        }
+    }
+
+    @Override
+    public void after(Object target, Object[] args, Object result, Throwable throwable) {
+        if (isDebug) {
+            logger.afterInterceptor(target, args, result, throwable);
+        }
+
+        final SuspendedRequestAccessor asyncResponse = (SuspendedRequestAccessor) target;
+        final Throwable resumeException = args[0] instanceof Throwable ? (Throwable) args[0] : throwable;
+        try {
+            final SuspendedRequest attached = SuspendedRequest.get(asyncResponse);
+            if (attached != null) {
+                closeAsyncTrace(attached.takeResumeTrace(), resumeException);
+            }
+        } finally {
+            final SuspendedRequest suspendedRequest = SuspendedRequest.resume(asyncResponse);
+            if (suspendedRequest != null) {
+                suspendedRequest.complete(resumeException);
+            }
+        }
+    }
+
+    private void closeAsyncTrace(Trace trace, Throwable throwable) {
+        if (trace == null) {
+            return;
+        }
+        try {
+            SpanEventRecorder recorder = trace.currentSpanEventRecorder();
+            recorder.recordApi(methodDescriptor);
+            recorder.recordException(throwable);
+        } catch (Throwable th) {
+            if (logger.isWarnEnabled()) {
+                logger.warn("AFTER. Caused:{}", th.getMessage(), th);
+            }
+        } finally {
+            trace.traceBlockEnd();
+            trace.traceBlockEnd();
+            trace.close();
+            traceContext.removeTraceObject();
+        }
+    }
+}
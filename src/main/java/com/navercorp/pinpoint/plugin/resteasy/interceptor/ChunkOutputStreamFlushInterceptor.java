@@ -0,0 +1,60 @@
+/*
+ * Copyright 2014 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.navercorp.pinpoint.plugin.resteasy.interceptor;
+
+import com.navercorp.pinpoint.bootstrap.interceptor.AroundInterceptor;
+import com.navercorp.pinpoint.bootstrap.logging.PLogger;
+import com.navercorp.pinpoint.bootstrap.logging.PLoggerFactory;
+import com.navercorp.pinpoint.plugin.resteasy.ByteBufGetter;
+import com.navercorp.pinpoint.plugin.resteasy.NettyHttpResponseGetter;
+import com.navercorp.pinpoint.plugin.resteasy.ResponseTransfer;
+import com.navercorp.pinpoint.plugin.resteasy.ResponseTransferAccessor;
+
+/**
+ * ChunkOutputStream.flush() (Netty 4)
+ * <p>
+ * Every flush writes the buffered chunk to the channel; counts its bytes.
+ */
+public class ChunkOutputStreamFlushInterceptor implements AroundInterceptor {
+    private final PLogger logger = PLoggerFactory.getLogger(this.getClass());
+    private final boolean isDebug = logger.isDebugEnabled();
+
+    @Override
+    public void before(Object target, Object[] args) {
+        if (isDebug) {
+            logger.beforeInterceptor(target, args);
+        }
+
+        try {
+            final Object response = ((NettyHttpResponseGetter) target)._$PINPOINT$_getNettyHttpResponse();
+            if (!(response instanceof ResponseTransferAccessor)) {
+                return;
+            }
+            final ResponseTransfer responseTransfer = ((ResponseTransferAccessor) response)._$PINPOINT$_getResponseTransfer();
+            if (responseTransfer != null) {
+                responseTransfer.addBytes(((ByteBufGetter) target)._$PINPOINT$_getByteBuf().readableBytes());
+            }
+        } catch (Throwable th) {
+            if (logger.isWarnEnabled()) {
+                logger.warn("BEFORE. Caused:{}", th.getMessage(), th);
+            }
+        }
+    }
+
+    @Override
+    public void after(Object target, Object[] args, Object result, Throwable throwable) {
+    }
+}
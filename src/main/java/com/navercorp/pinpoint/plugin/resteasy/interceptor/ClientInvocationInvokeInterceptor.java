@@ -0,0 +1,233 @@
+/*
+ * Copyright 2014 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.navercorp.pinpoint.plugin.resteasy.interceptor;
+
+import com.navercorp.pinpoint.bootstrap.context.AsyncTraceId;
+import com.navercorp.pinpoint.bootstrap.context.Header;
+import com.navercorp.pinpoint.bootstrap.context.MethodDescriptor;
+import com.navercorp.pinpoint.bootstrap.context.SpanEventRecorder;
+import com.navercorp.pinpoint.bootstrap.context.Trace;
+import com.navercorp.pinpoint.bootstrap.context.TraceContext;
+import com.navercorp.pinpoint.bootstrap.context.TraceId;
+import com.navercorp.pinpoint.bootstrap.interceptor.AroundInterceptor;
+import com.navercorp.pinpoint.bootstrap.logging.PLogger;
+import com.navercorp.pinpoint.bootstrap.logging.PLoggerFactory;
+import com.navercorp.pinpoint.bootstrap.sampler.SamplingFlagUtils;
+import com.navercorp.pinpoint.common.trace.AnnotationKey;
+import com.navercorp.pinpoint.common.trace.ServiceType;
+import com.navercorp.pinpoint.plugin.resteasy.AsyncMethodDescriptor;
+import com.navercorp.pinpoint.plugin.resteasy.ClientAsyncTrace;
+import com.navercorp.pinpoint.plugin.resteasy.ClientAsyncTraceAccessor;
+import com.navercorp.pinpoint.plugin.resteasy.RestEasyConfigHolder;
+import com.navercorp.pinpoint.plugin.resteasy.RestEasyConfiguration;
+import com.navercorp.pinpoint.plugin.resteasy.RestEasyConstants;
+import org.jboss.resteasy.client.jaxrs.engines.ApacheHttpClient4Engine;
+import org.jboss.resteasy.client.jaxrs.internal.ClientInvocation;
+
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.Response;
+import java.net.URI;
+
+/**
+ * ClientInvocation.invoke()
+ * <p>
+ * Records a RESTEASY_CLIENT span event for the call and sends the next span's id along in the same Pinpoint
+ * headers RequestDispatcherServiceInterceptor reads on the server side. An invocation submitted through
+ * AsyncInvoker runs invoke() on the client's executor: it continues the async trace recorded by
+ * {@link ClientInvocationSubmitInterceptor} there.
+ * <p>
+ * The headers replace any the application set. On ApacheHttpClient4Engine the httpclient4 plugin traces the
+ * same call one level down and sends its own span id, so there the headers and the next span id are left to it
+ * unless profiler.resteasy.client.httpclient4.propagate is on. The call is then recorded as a RESTEASY_METHOD span
+ * event without destination: its HTTP_CLIENT_4 event is the one edge of the server map.
+ */
+public class ClientInvocationInvokeInterceptor implements AroundInterceptor {
+    private static final AsyncMethodDescriptor ASYNC_METHOD_DESCRIPTOR = new AsyncMethodDescriptor();
+
+    private final PLogger logger = PLoggerFactory.getLogger(this.getClass());
+    private final boolean isDebug = logger.isDebugEnabled();
+
+    private final TraceContext traceContext;
+    private final MethodDescriptor methodDescriptor;
+    private final boolean httpClient4Propagate;
+
+    public ClientInvocationInvokeInterceptor(TraceContext traceContext, MethodDescriptor methodDescriptor) {
+        this.traceContext = traceContext;
+        this.methodDescriptor = methodDescriptor;
+
+        RestEasyConfiguration restEasyConfig = RestEasyConfigHolder.getInstance(traceContext.getProfilerConfig()).getStartupConfiguration();
+        this.httpClient4Propagate = restEasyConfig.isRestEasyClientHttpClient4Propagate();
+
+        traceContext.cacheApi(ASYNC_METHOD_DESCRIPTOR);
+    }
+
+    @Override
+    public void before(Object target, Object[] args) {
+        if (isDebug) {
+            logger.beforeInterceptor(target, args);
+        }
+
+        try {
+            final ClientInvocation invocation = (ClientInvocation) target;
+            Trace trace = traceContext.currentRawTraceObject();
+            if (trace == null) {
+                trace = continueAsyncTrace(target);
+                if (trace == null) {
+                    return;
+                }
+            }
+            if (!trace.canSampled()) {
+                if (isPropagating(invocation)) {
+                    // putSingle(), since header() adds a value to whatever the application or a retry left there
+                    invocation.getHeaders().getHeaders().putSingle(Header.HTTP_SAMPLED.toString(), SamplingFlagUtils.SAMPLING_RATE_FALSE);
+                }
+                return;
+            }
+
+            final SpanEventRecorder recorder = trace.traceBlockBegin();
+            if (!isPropagating(invocation)) {
+                recorder.recordServiceType(RestEasyConstants.RESTEASY_METHOD);
+                return;
+            }
+            recorder.recordServiceType(RestEasyConstants.RESTEASY_CLIENT);
+            final MultivaluedMap<String, Object> headers = invocation.getHeaders().getHeaders();
+            final TraceId nextId = trace.getTraceId().getNextTraceId();
+            recorder.recordNextSpanId(nextId.getSpanId());
+
+            headers.putSingle(Header.HTTP_TRACE_ID.toString(), nextId.getTransactionId());
+            headers.putSingle(Header.HTTP_SPAN_ID.toString(), String.valueOf(nextId.getSpanId()));
+            headers.putSingle(Header.HTTP_PARENT_SPAN_ID.toString(), String.valueOf(nextId.getParentSpanId()));
+            headers.putSingle(Header.HTTP_FLAGS.toString(), String.valueOf(nextId.getFlags()));
+            headers.putSingle(Header.HTTP_PARENT_APPLICATION_NAME.toString(), traceContext.getApplicationName());
+            headers.putSingle(Header.HTTP_PARENT_APPLICATION_TYPE.toString(), String.valueOf(traceContext.getServerTypeCode()));
+            final String host = getHost(invocation.getUri());
+            if (host != null) {
+                headers.putSingle(Header.HTTP_HOST.toString(), host);
+            }
+        } catch (Throwable th) {
+            if (logger.isWarnEnabled()) {
+                logger.warn("BEFORE. Caused:{}", th.getMessage(), th);
+            }
+        }
+    }
+
+    /**
+     * @return false when the httpclient4 plugin sends the Pinpoint headers for this call
+     */
+    private boolean isPropagating(ClientInvocation invocation) {
+        if (httpClient4Propagate) {
+            return true;
+        }
+        return !(invocation.getClient().httpEngine() instanceof ApacheHttpClient4Engine);
+    }
+
+    /**
+     * @return the async trace of an invocation submitted from a sampled trace, null for any other invocation
+     */
+    private Trace continueAsyncTrace(Object target) {
+        final ClientAsyncTrace clientAsyncTrace = ((ClientAsyncTraceAccessor) target)._$PINPOINT$_getClientAsyncTrace();
+        if (clientAsyncTrace == null) {
+            return null;
+        }
+        final AsyncTraceId asyncTraceId = clientAsyncTrace.getAsyncTraceId();
+        final Trace trace = traceContext.continueAsyncTraceObject(asyncTraceId, asyncTraceId.getAsyncId(), asyncTraceId.getSpanStartTime());
+        if (trace == null) {
+            return null;
+        }
+        final SpanEventRecorder recorder = trace.traceBlockBegin();
+        recorder.recordServiceType(ServiceType.ASYNC);
+        recorder.recordApi(ASYNC_METHOD_DESCRIPTOR);
+        clientAsyncTrace.setTrace(trace);
+        return trace;
+    }
+
+    @Override
+    public void after(Object target, Object[] args, Object result, Throwable throwable) {
+        if (isDebug) {
+            logger.afterInterceptor(target, args, result, throwable);
+        }
+
+        final ClientAsyncTraceAccessor accessor = (ClientAsyncTraceAccessor) target;
+        final ClientAsyncTrace clientAsyncTrace = accessor._$PINPOINT$_getClientAsyncTrace();
+        final Trace asyncTrace = clientAsyncTrace != null ? clientAsyncTrace.takeTrace() : null;
+        if (asyncTrace != null) {
+            // a ClientInvocation can be submitted again, each submit() records its own async id
+            accessor._$PINPOINT$_setClientAsyncTrace(null);
+        }
+        final Trace trace = asyncTrace != null ? asyncTrace : traceContext.currentTraceObject();
+        if (trace == null) {
+            return;
+        }
+        try {
+            final SpanEventRecorder recorder = trace.currentSpanEventRecorder();
+            final ClientInvocation invocation = (ClientInvocation) target;
+            final URI uri = invocation.getUri();
+            recorder.recordApi(methodDescriptor);
+            if (uri != null) {
+                if (isPropagating(invocation)) {
+                    final String host = getHost(uri);
+                    recorder.recordDestinationId(host != null ? host : "UNKNOWN");
+                }
+                recorder.recordAttribute(AnnotationKey.HTTP_URL, getUrl(uri));
+            }
+            if (result instanceof Response) {
+                recorder.recordAttribute(AnnotationKey.HTTP_STATUS_CODE, ((Response) result).getStatus());
+            }
+            recorder.recordException(throwable);
+        } catch (Throwable th) {
+            if (logger.isWarnEnabled()) {
+                logger.warn("AFTER. Caused:{}", th.getMessage(), th);
+            }
+        } finally {
+            trace.traceBlockEnd();
+            if (asyncTrace != null) {
+                // the ASYNC span event opened by continueAsyncTrace()
+                trace.traceBlockEnd();
+                trace.close();
+                traceContext.removeTraceObject();
+            }
+        }
+    }
+
+    /**
+     * @return host:port as the caller addresses it, the Pinpoint-Host header and the destination of the call
+     */
+    private static String getHost(URI uri) {
+        final String host = uri.getHost();
+        if (host == null) {
+            return null;
+        }
+        final int port = uri.getPort();
+        return port == -1 ? host : host + ":" + port;
+    }
+
+    /**
+     * @return the URI without query string and fragment, which may hold credentials or personal data
+     */
+    private static String getUrl(URI uri) {
+        final StringBuilder url = new StringBuilder();
+        if (uri.getScheme() != null) {
+            url.append(uri.getScheme()).append("://");
+        }
+        if (uri.getRawAuthority() != null) {
+            url.append(uri.getRawAuthority());
+        }
+        if (uri.getRawPath() != null) {
+            url.append(uri.getRawPath());
+        }
+        return url.toString();
+    }
+}
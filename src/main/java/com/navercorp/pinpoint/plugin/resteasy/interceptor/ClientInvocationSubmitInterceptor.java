@@ -0,0 +1,85 @@
+/*
+ * Copyright 2014 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.navercorp.pinpoint.plugin.resteasy.interceptor;
+
+import com.navercorp.pinpoint.bootstrap.context.AsyncTraceId;
+import com.navercorp.pinpoint.bootstrap.context.MethodDescriptor;
+import com.navercorp.pinpoint.bootstrap.context.SpanEventRecorder;
+import com.navercorp.pinpoint.bootstrap.context.Trace;
+import com.navercorp.pinpoint.bootstrap.context.TraceContext;
+import com.navercorp.pinpoint.bootstrap.interceptor.AroundInterceptor;
+import com.navercorp.pinpoint.bootstrap.logging.PLogger;
+import com.navercorp.pinpoint.bootstrap.logging.PLoggerFactory;
+import com.navercorp.pinpoint.common.trace.ServiceType;
+import com.navercorp.pinpoint.plugin.resteasy.ClientAsyncTrace;
+import com.navercorp.pinpoint.plugin.resteasy.ClientAsyncTraceAccessor;
+
+/**
+ * ClientInvocation.submit(...)
+ * <p>
+ * AsyncInvoker calls end here. submit() hands invoke() to the client's executor and returns its Future at once,
+ * so the span event is opened and closed in before(): it marks where the call was made and records the async
+ * trace id {@link ClientInvocationInvokeInterceptor} continues on the executor thread. The caller never waits.
+ */
+public class ClientInvocationSubmitInterceptor implements AroundInterceptor {
+    private final PLogger logger = PLoggerFactory.getLogger(this.getClass());
+    private final boolean isDebug = logger.isDebugEnabled();
+
+    private final TraceContext traceContext;
+    private final MethodDescriptor methodDescriptor;
+
+    public ClientInvocationSubmitInterceptor(TraceContext traceContext, MethodDescriptor methodDescriptor) {
+        this.traceContext = traceContext;
+        this.methodDescriptor = methodDescriptor;
+    }
+
+    @Override
+    public void before(Object target, Object[] args) {
+        if (isDebug) {
+            logger.beforeInterceptor(target, args);
+        }
+
+        final ClientAsyncTraceAccessor accessor = (ClientAsyncTraceAccessor) target;
+        // still waiting for the executor: the submit() that linked it records the call
+        if (accessor._$PINPOINT$_getClientAsyncTrace() != null) {
+            return;
+        }
+        final Trace trace = traceContext.currentTraceObject();
+        if (trace == null) {
+            return;
+        }
+        final SpanEventRecorder recorder = trace.traceBlockBegin();
+        try {
+            recorder.recordServiceType(ServiceType.INTERNAL_METHOD);
+            recorder.recordApi(methodDescriptor);
+            final AsyncTraceId asyncTraceId = recorder.recordNextAsyncId();
+            accessor._$PINPOINT$_setClientAsyncTrace(new ClientAsyncTrace(asyncTraceId));
+        } catch (Throwable th) {
+            if (logger.isWarnEnabled()) {
+                logger.warn("BEFORE. Caused:{}", th.getMessage(), th);
+            }
+        } finally {
+            trace.traceBlockEnd();
+        }
+    }
+
+    @Override
+    public void after(Object target, Object[] args, Object result, Throwable throwable) {
+        if (isDebug) {
+            logger.afterInterceptor(target, args, result, throwable);
+        }
+    }
+}
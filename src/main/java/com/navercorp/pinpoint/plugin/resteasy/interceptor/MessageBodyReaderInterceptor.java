@@ -0,0 +1,112 @@
+/*
+ * Copyright 2014 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.navercorp.pinpoint.plugin.resteasy.interceptor;
+
+import com.navercorp.pinpoint.bootstrap.context.SpanEventRecorder;
+import com.navercorp.pinpoint.bootstrap.context.Trace;
+import com.navercorp.pinpoint.bootstrap.context.TraceContext;
+import com.navercorp.pinpoint.bootstrap.interceptor.AroundInterceptor;
+import com.navercorp.pinpoint.bootstrap.logging.PLogger;
+import com.navercorp.pinpoint.bootstrap.logging.PLoggerFactory;
+import com.navercorp.pinpoint.plugin.resteasy.CountingInputStream;
+import com.navercorp.pinpoint.plugin.resteasy.MediaTypeNames;
+import com.navercorp.pinpoint.plugin.resteasy.ProviderMethodDescriptorCache;
+import com.navercorp.pinpoint.plugin.resteasy.RestEasyConstants;
+
+import javax.ws.rs.ext.ReaderInterceptorContext;
+
+/**
+ * AbstractReaderInterceptorContext.readFrom(MessageBodyReader)
+ * <p>
+ * Records the entity deserialization as a span event of the provider's readFrom(), with the media type,
+ * the entity type and the bytes the provider consumed.
+ */
+public class MessageBodyReaderInterceptor implements AroundInterceptor {
+    private final PLogger logger = PLoggerFactory.getLogger(this.getClass());
+    private final boolean isDebug = logger.isDebugEnabled();
+
+    private final TraceContext traceContext;
+    private final ProviderMethodDescriptorCache methodDescriptorCache;
+    private final MediaTypeNames mediaTypeNames = new MediaTypeNames();
+
+    public MessageBodyReaderInterceptor(TraceContext traceContext) {
+        this.traceContext = traceContext;
+        this.methodDescriptorCache = new ProviderMethodDescriptorCache(traceContext, "readFrom",
+                "java.lang.Class", "java.lang.reflect.Type", "java.lang.annotation.Annotation[]", "javax.ws.rs.core.MediaType",
+                "javax.ws.rs.core.MultivaluedMap", "java.io.InputStream");
+    }
+
+    @Override
+    public void before(Object target, Object[] args) {
+        if (isDebug) {
+            logger.beforeInterceptor(target, args);
+        }
+
+        final Trace trace = traceContext.currentTraceObject();
+        if (trace == null) {
+            return;
+        }
+
+        trace.traceBlockBegin().recordServiceType(RestEasyConstants.RESTEASY_METHOD);
+        try {
+            final ReaderInterceptorContext context = (ReaderInterceptorContext) target;
+            context.setInputStream(new CountingInputStream(context.getInputStream()));
+        } catch (Throwable th) {
+            if (logger.isWarnEnabled()) {
+                logger.warn("BEFORE. Caused:{}", th.getMessage(), th);
+            }
+        }
+    }
+
+    @Override
+    public void after(Object target, Object[] args, Object result, Throwable throwable) {
+        if (isDebug) {
+            logger.afterInterceptor(target, args, result, throwable);
+        }
+
+        final Trace trace = traceContext.currentTraceObject();
+        if (trace == null) {
+            return;
+        }
+
+        try {
+            final ReaderInterceptorContext context = (ReaderInterceptorContext) target;
+            SpanEventRecorder recorder = trace.currentSpanEventRecorder();
+            if (args[0] != null) {
+                recorder.recordApi(methodDescriptorCache.getMethodDescriptor(args[0].getClass()));
+            }
+            final String mediaType = mediaTypeNames.getName(context.getMediaType());
+            if (mediaType != null) {
+                recorder.recordAttribute(RestEasyConstants.ENTITY_MEDIA_TYPE, mediaType);
+            }
+            if (context.getType() != null) {
+                recorder.recordAttribute(RestEasyConstants.ENTITY_TYPE, context.getType().getName());
+            }
+            if (context.getInputStream() instanceof CountingInputStream) {
+                final CountingInputStream countingInputStream = (CountingInputStream) context.getInputStream();
+                recorder.recordAttribute(RestEasyConstants.ENTITY_BYTES, countingInputStream.getCount());
+                context.setInputStream(countingInputStream.getDelegate());
+            }
+            recorder.recordException(throwable);
+        } catch (Throwable th) {
+            if (logger.isWarnEnabled()) {
+                logger.warn("AFTER. Caused:{}", th.getMessage(), th);
+            }
+        } finally {
+            trace.traceBlockEnd();
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2014 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.navercorp.pinpoint.plugin.resteasy.interceptor;
+
+import com.navercorp.pinpoint.bootstrap.context.SpanEventRecorder;
+import com.navercorp.pinpoint.bootstrap.context.Trace;
+import com.navercorp.pinpoint.bootstrap.context.TraceContext;
+import com.navercorp.pinpoint.bootstrap.interceptor.AroundInterceptor;
+import com.navercorp.pinpoint.bootstrap.logging.PLogger;
+import com.navercorp.pinpoint.bootstrap.logging.PLoggerFactory;
+import com.navercorp.pinpoint.plugin.resteasy.CountingOutputStream;
+import com.navercorp.pinpoint.plugin.resteasy.MediaTypeNames;
+import com.navercorp.pinpoint.plugin.resteasy.ProviderMethodDescriptorCache;
+import com.navercorp.pinpoint.plugin.resteasy.RestEasyConstants;
+
+import javax.ws.rs.ext.WriterInterceptorContext;
+
+/**
+ * AbstractWriterInterceptorContext.writeTo(MessageBodyWriter)
+ * <p>
+ * Records the entity serialization as a span event of the provider's writeTo(), with the media type,
+ * the entity type and the bytes the provider produced.
+ */
+public class MessageBodyWriterInterceptor implements AroundInterceptor {
+    private final PLogger logger = PLoggerFactory.getLogger(this.getClass());
+    private final boolean isDebug = logger.isDebugEnabled();
+
+    private final TraceContext traceContext;
+    private final ProviderMethodDescriptorCache methodDescriptorCache;
+    private final MediaTypeNames mediaTypeNames = new MediaTypeNames();
+
+    public MessageBodyWriterInterceptor(TraceContext traceContext) {
+        this.traceContext = traceContext;
+        this.methodDescriptorCache = new ProviderMethodDescriptorCache(traceContext, "writeTo",
+                "java.lang.Object", "java.lang.Class", "java.lang.reflect.Type", "java.lang.annotation.Annotation[]", "javax.ws.rs.core.MediaType",
+                "javax.ws.rs.core.MultivaluedMap", "java.io.OutputStream");
+    }
+
+    @Override
+    public void before(Object target, Object[] args) {
+        if (isDebug) {
+            logger.beforeInterceptor(target, args);
+        }
+
+        final Trace trace = traceContext.currentTraceObject();
+        if (trace == null) {
+            return;
+        }
+
+        trace.traceBlockBegin().recordServiceType(RestEasyConstants.RESTEASY_METHOD);
+        try {
+            final WriterInterceptorContext context = (WriterInterceptorContext) target;
+            context.setOutputStream(new CountingOutputStream(context.getOutputStream()));
+        } catch (Throwable th) {
+            if (logger.isWarnEnabled()) {
+                logger.warn("BEFORE. Caused:{}", th.getMessage(), th);
+            }
+        }
+    }
+
+    @Override
+    public void after(Object target, Object[] args, Object result, Throwable throwable) {
+        if (isDebug) {
+            logger.afterInterceptor(target, args, result, throwable);
+        }
+
+        final Trace trace = traceContext.currentTraceObject();
+        if (trace == null) {
+            return;
+        }
+
+        try {
+            final WriterInterceptorContext context = (WriterInterceptorContext) target;
+            SpanEventRecorder recorder = trace.currentSpanEventRecorder();
+            if (args[0] != null) {
+                recorder.recordApi(methodDescriptorCache.getMethodDescriptor(args[0].getClass()));
+            }
+            final String mediaType = mediaTypeNames.getName(context.getMediaType());
+            if (mediaType != null) {
+                recorder.recordAttribute(RestEasyConstants.ENTITY_MEDIA_TYPE, mediaType);
+            }
+            if (context.getType() != null) {
+                recorder.recordAttribute(RestEasyConstants.ENTITY_TYPE, context.getType().getName());
+            }
+            if (context.getOutputStream() instanceof CountingOutputStream) {
+                final CountingOutputStream countingOutputStream = (CountingOutputStream) context.getOutputStream();
+                recorder.recordAttribute(RestEasyConstants.ENTITY_BYTES, countingOutputStream.getCount());
+                context.setOutputStream(countingOutputStream.getDelegate());
+            }
+            recorder.recordException(throwable);
+        } catch (Throwable th) {
+            if (logger.isWarnEnabled()) {
+                logger.warn("AFTER. Caused:{}", th.getMessage(), th);
+            }
+        } finally {
+            trace.traceBlockEnd();
+        }
+    }
+}
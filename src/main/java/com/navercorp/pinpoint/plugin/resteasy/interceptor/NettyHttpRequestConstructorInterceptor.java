@@ -0,0 +1,58 @@
+/*
+ * Copyright 2014 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.navercorp.pinpoint.plugin.resteasy.interceptor;
+
+import com.navercorp.pinpoint.bootstrap.interceptor.AroundInterceptor;
+import com.navercorp.pinpoint.bootstrap.logging.PLogger;
+import com.navercorp.pinpoint.bootstrap.logging.PLoggerFactory;
+import com.navercorp.pinpoint.plugin.resteasy.RequestDecodeTimeAccessor;
+import com.navercorp.pinpoint.plugin.resteasy.metric.HandoffStats;
+
+/**
+ * NettyHttpRequest(...), called by RestEasyHttpRequestDecoder on the Netty I/O thread.
+ * <p>
+ * Stamps the request with its decode time, so that RequestDispatcherServiceInterceptor can tell how long it
+ * waited for an executor thread.
+ */
+public class NettyHttpRequestConstructorInterceptor implements AroundInterceptor {
+    private final PLogger logger = PLoggerFactory.getLogger(this.getClass());
+    private final boolean isDebug = logger.isDebugEnabled();
+
+    private final HandoffStats handoffStats = HandoffStats.getInstance();
+
+    @Override
+    public void before(Object target, Object[] args) {
+    }
+
+    @Override
+    public void after(Object target, Object[] args, Object result, Throwable throwable) {
+        if (isDebug) {
+            logger.afterInterceptor(target, args, result, throwable);
+        }
+        if (throwable != null) {
+            return;
+        }
+
+        try {
+            ((RequestDecodeTimeAccessor) target)._$PINPOINT$_setDecodeTime(System.nanoTime());
+            handoffStats.decoded();
+        } catch (Throwable th) {
+            if (logger.isWarnEnabled()) {
+                logger.warn("AFTER. Caused:{}", th.getMessage(), th);
+            }
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2014 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.navercorp.pinpoint.plugin.resteasy.interceptor;
+
+import com.navercorp.pinpoint.bootstrap.context.TraceContext;
+import com.navercorp.pinpoint.bootstrap.interceptor.AroundInterceptor;
+import com.navercorp.pinpoint.bootstrap.logging.PLogger;
+import com.navercorp.pinpoint.bootstrap.logging.PLoggerFactory;
+import com.navercorp.pinpoint.plugin.resteasy.ResponseTransfer;
+import com.navercorp.pinpoint.plugin.resteasy.ResponseTransferAccessor;
+import com.navercorp.pinpoint.plugin.resteasy.RestEasyConfigHolder;
+import com.navercorp.pinpoint.plugin.resteasy.RestEasyConfiguration;
+import com.navercorp.pinpoint.plugin.resteasy.connection.ConnectionMetadataStore;
+import org.jboss.resteasy.spi.HttpResponse;
+
+/**
+ * NettyHttpResponse.finish()
+ * <p>
+ * Writes what is left of the response; the root trace handed over by RequestDispatcherServiceInterceptor is
+ * closed when that write has reached the socket. The write ending the response is picked up by the response
+ * transfer handler ServerPipelineInterceptor puts on RESTEasy channels: a write of our own behind it would fail
+ * on a Connection: close response, which finish() closes as soon as its last write completes.
+ */
+public class NettyHttpResponseFinishInterceptor implements AroundInterceptor {
+    private final PLogger logger = PLoggerFactory.getLogger(this.getClass());
+    private final boolean isDebug = logger.isDebugEnabled();
+
+    private final ConnectionMetadataStore connectionMetadataStore;
+
+    public NettyHttpResponseFinishInterceptor(TraceContext traceContext) {
+        RestEasyConfiguration restEasyConfig = RestEasyConfigHolder.getInstance(traceContext.getProfilerConfig()).getStartupConfiguration();
+        this.connectionMetadataStore = ConnectionMetadataStore.create(restEasyConfig.isNetty4());
+    }
+
+    @Override
+    public void before(Object target, Object[] args) {
+        if (isDebug) {
+            logger.beforeInterceptor(target, args);
+        }
+
+        try {
+            final ResponseTransfer responseTransfer = ((ResponseTransferAccessor) target)._$PINPOINT$_getResponseTransfer();
+            if (responseTransfer == null) {
+                return;
+            }
+            responseTransfer.setLastWriteExpected(connectionMetadataStore.expectLastWrite(responseTransfer.getChannelHandlerContext(), responseTransfer));
+            final long bufferedBytes = connectionMetadataStore.getBufferedBytes(((HttpResponse) target).getOutputStream());
+            if (bufferedBytes != -1) {
+                responseTransfer.addBytes(bufferedBytes);
+            }
+        } catch (Throwable th) {
+            if (logger.isWarnEnabled()) {
+                logger.warn("BEFORE. Caused:{}", th.getMessage(), th);
+            }
+        }
+    }
+
+    @Override
+    public void after(Object target, Object[] args, Object result, Throwable throwable) {
+        if (isDebug) {
+            logger.afterInterceptor(target, args, result, throwable);
+        }
+
+        final ResponseTransferAccessor accessor = (ResponseTransferAccessor) target;
+        final ResponseTransfer responseTransfer = accessor._$PINPOINT$_getResponseTransfer();
+        if (responseTransfer == null) {
+            return;
+        }
+        accessor._$PINPOINT$_setResponseTransfer(null);
+        // a response that fit in one write has just been written, headers included
+        responseTransfer.firstByte();
+
+        if (!responseTransfer.isLastWriteExpected()) {
+            // no handler on the channel: the response is taken as sent once handed to it
+            responseTransfer.complete(throwable == null);
+            return;
+        }
+        try {
+            if (throwable != null && connectionMetadataStore.cancelLastWrite(responseTransfer.getChannelHandlerContext(), responseTransfer)) {
+                responseTransfer.complete(false);
+            }
+        } catch (Throwable th) {
+            if (logger.isWarnEnabled()) {
+                logger.warn("AFTER. Caused:{}", th.getMessage(), th);
+            }
+            responseTransfer.complete(false);
+        }
+    }
+}
@@ -16,38 +16,82 @@
 
 package com.navercorp.pinpoint.plugin.resteasy.interceptor;
 
-import com.navercorp.pinpoint.bootstrap.config.Filter;
 import com.navercorp.pinpoint.bootstrap.context.*;
 import com.navercorp.pinpoint.bootstrap.interceptor.AroundInterceptor;
 import com.navercorp.pinpoint.bootstrap.logging.PLogger;
 import com.navercorp.pinpoint.bootstrap.logging.PLoggerFactory;
 import com.navercorp.pinpoint.bootstrap.sampler.SamplingFlagUtils;
-import com.navercorp.pinpoint.bootstrap.util.NumberUtils;
-import com.navercorp.pinpoint.bootstrap.util.StringUtils;
 import com.navercorp.pinpoint.common.trace.AnnotationKey;
-import com.navercorp.pinpoint.common.trace.ServiceType;
+import com.navercorp.pinpoint.common.util.TransactionIdUtils;
+import com.navercorp.pinpoint.plugin.resteasy.RequestBodyCapture;
 import com.navercorp.pinpoint.plugin.resteasy.RequestDispatcherMethodDescriptor;
+import com.navercorp.pinpoint.plugin.resteasy.RequestHeaders;
+import com.navercorp.pinpoint.plugin.resteasy.RequestHeadersReader;
+import com.navercorp.pinpoint.plugin.resteasy.RequestDecodeTimeAccessor;
+import com.navercorp.pinpoint.plugin.resteasy.RequestParameterCapture;
+import com.navercorp.pinpoint.plugin.resteasy.RequestTraceSettings;
+import com.navercorp.pinpoint.plugin.resteasy.ResourcePathTemplates;
+import com.navercorp.pinpoint.plugin.resteasy.ResponseTransfer;
+import com.navercorp.pinpoint.plugin.resteasy.ResponseTransferAccessor;
+import com.navercorp.pinpoint.plugin.resteasy.RestEasyConfigHolder;
 import com.navercorp.pinpoint.plugin.resteasy.RestEasyConfiguration;
 import com.navercorp.pinpoint.plugin.resteasy.RestEasyConstants;
+import com.navercorp.pinpoint.plugin.resteasy.SuspendedRequest;
+import com.navercorp.pinpoint.plugin.resteasy.SuspendedRequestAccessor;
+import com.navercorp.pinpoint.plugin.resteasy.connection.ConnectionMetadata;
+import com.navercorp.pinpoint.plugin.resteasy.connection.ConnectionMetadataStore;
+import com.navercorp.pinpoint.plugin.resteasy.connection.TlsHandshake;
+import com.navercorp.pinpoint.plugin.resteasy.metric.EndpointHistograms;
+import com.navercorp.pinpoint.plugin.resteasy.metric.EndpointResourceUsage;
+import com.navercorp.pinpoint.plugin.resteasy.metric.EventLoopWatchdog;
+import com.navercorp.pinpoint.plugin.resteasy.metric.ExceptionDeduplicator;
+import com.navercorp.pinpoint.plugin.resteasy.metric.HandoffStats;
+import com.navercorp.pinpoint.plugin.resteasy.metric.InFlightRequests;
+import com.navercorp.pinpoint.plugin.resteasy.metric.StatsReporter;
+import com.navercorp.pinpoint.plugin.resteasy.metric.TailSamplingStats;
+import com.navercorp.pinpoint.plugin.resteasy.metric.ThreadResourceMeter;
+import com.navercorp.pinpoint.plugin.resteasy.requestlog.RequestLog;
+import com.navercorp.pinpoint.plugin.resteasy.requestlog.RequestSummary;
+import com.navercorp.pinpoint.plugin.resteasy.sampler.EndpointSampler;
+import com.navercorp.pinpoint.plugin.resteasy.sampler.ProvisionalTrace;
+import com.navercorp.pinpoint.plugin.resteasy.sampler.TailSampler;
 import org.jboss.resteasy.spi.HttpRequest;
-import org.jboss.resteasy.spi.ResteasyUriInfo;
-
-import javax.ws.rs.core.HttpHeaders;
-import javax.ws.rs.core.MultivaluedMap;
+import org.jboss.resteasy.spi.HttpResponse;
+import org.jboss.resteasy.spi.ResteasyAsynchronousContext;
+import org.jboss.resteasy.spi.ResteasyAsynchronousResponse;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.io.File;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.URI;
-import java.util.Set;
 
 public class RequestDispatcherServiceInterceptor implements AroundInterceptor {
     public static final RequestDispatcherMethodDescriptor RESTEASY_SYNC_METHOD_DESCRIPTOR = new RequestDispatcherMethodDescriptor();
-    public static final String Header_Host = "Host" ;  // hostname:port
+    public static final String Header_Host = RequestHeadersReader.HOST ;  // hostname:port
     private PLogger logger = PLoggerFactory.getLogger(this.getClass());
     private final boolean isDebug = logger.isDebugEnabled();
     private final boolean isTrace = logger.isTraceEnabled();
 
-    private final Filter<String> excludeUrlFilter;
-    private final RemoteAddressResolver remoteAddressResolver;
+    private final RestEasyConfigHolder configHolder;
+    // the snapshot before() worked with, so that a reload in between does not split a request across two configurations
+    private final ThreadLocal<RequestTraceSettings> requestSettings = new ThreadLocal<RequestTraceSettings>();
+    private final ConnectionMetadataStore connectionMetadataStore;
+    private final EndpointHistograms endpointHistograms;
+    private final ThreadLocal<long[]> requestStartTime;
+    private final boolean traceAsync;
+    private final boolean traceResponseTransfer;
+    private final boolean connectionStats;
+    private final HandoffStats handoffStats;
+    private final EventLoopWatchdog eventLoopWatchdog;
+    private final InFlightRequests inFlightRequests;
+    private final ThreadResourceMeter threadResourceMeter;
+    private final EndpointResourceUsage endpointResourceUsage;
+    private final ExceptionDeduplicator exceptionDeduplicator;
+    private final RequestLog requestLog;
+    private final ThreadLocal<RequestSummary> requestSummary;
 
     private MethodDescriptor methodDescriptor;
     private TraceContext traceContext;
@@ -56,27 +100,114 @@ public class RequestDispatcherServiceInterceptor implements AroundInterceptor {
         this.traceContext = traceContext;
         this.methodDescriptor = descriptor;
 
-        RestEasyConfiguration restEasyConfig = new RestEasyConfiguration(traceContext.getProfilerConfig());
-        this.excludeUrlFilter = restEasyConfig.getRestEasyExcludeUrlFilter();
-        final String proxyIpHeader = restEasyConfig.getRestEasyRealIpHeader();
-        if (proxyIpHeader == null || proxyIpHeader.isEmpty()) {
-            this.remoteAddressResolver = new Bypass();
+        // exclusions, header handling, parameter capture and sampling are read per request from configHolder
+        this.configHolder = RestEasyConfigHolder.getInstance(traceContext.getProfilerConfig());
+        RestEasyConfiguration restEasyConfig = configHolder.getStartupConfiguration();
+        this.connectionMetadataStore = ConnectionMetadataStore.create(restEasyConfig.isNetty4());
+        this.traceAsync = restEasyConfig.isRestEasyTraceAsync();
+        this.traceResponseTransfer = restEasyConfig.isRestEasyResponseTransferEnable();
+        this.connectionStats = restEasyConfig.isRestEasyConnectionStatsEnable();
+        if (restEasyConfig.isRestEasyHandoffEnable()) {
+            this.handoffStats = HandoffStats.getInstance();
+            StatsReporter.getInstance(restEasyConfig.getRestEasyStatsInterval() * 1000L).register(handoffStats);
+        } else {
+            this.handoffStats = null;
+        }
+        if (restEasyConfig.isRestEasyEventLoopWatchdogEnable()) {
+            this.eventLoopWatchdog = EventLoopWatchdog.getInstance(restEasyConfig.getRestEasyEventLoopWatchdogThreshold(),
+                    restEasyConfig.isRestEasyEventLoopWatchdogStackTrace(), restEasyConfig.getRestEasyEventLoopWatchdogMaxThreads());
+            StatsReporter.getInstance(restEasyConfig.getRestEasyStatsInterval() * 1000L).register(eventLoopWatchdog);
+        } else {
+            this.eventLoopWatchdog = null;
+        }
+        if (restEasyConfig.isRestEasyInFlightEnable()) {
+            this.inFlightRequests = InFlightRequests.getInstance(restEasyConfig.getRestEasyInFlightThreshold(), restEasyConfig.isRestEasyInFlightStackTrace(),
+                    restEasyConfig.getRestEasyInFlightMaxThreads(), restEasyConfig.getRestEasyInFlightMaxEndpoints(), restEasyConfig.getRestEasyInFlightScanInterval());
+            StatsReporter.getInstance(restEasyConfig.getRestEasyStatsInterval() * 1000L).register(inFlightRequests);
+        } else {
+            this.inFlightRequests = null;
+        }
+        if (restEasyConfig.isRestEasyTailSamplingEnable() || restEasyConfig.isRestEasyConfigReload()) {
+            // a reload may turn tail sampling on later
+            StatsReporter.getInstance(restEasyConfig.getRestEasyStatsInterval() * 1000L).register(TailSamplingStats.getInstance());
+        }
+        if (restEasyConfig.isRestEasyThreadResourceEnable()) {
+            this.threadResourceMeter = new ThreadResourceMeter();
+        } else {
+            this.threadResourceMeter = null;
+        }
+        if (threadResourceMeter != null && restEasyConfig.isRestEasyThreadResourceEndpointStats()) {
+            this.endpointResourceUsage = new EndpointResourceUsage(restEasyConfig.getRestEasyThreadResourceMaxEndpoints());
+            StatsReporter.getInstance(restEasyConfig.getRestEasyStatsInterval() * 1000L).register(endpointResourceUsage);
+        } else {
+            this.endpointResourceUsage = null;
+        }
+        if (restEasyConfig.getRestEasyExceptionDedupLimit() > 0) {
+            this.exceptionDeduplicator = new ExceptionDeduplicator(restEasyConfig.getRestEasyExceptionDedupLimit(),
+                    restEasyConfig.getRestEasyExceptionDedupWindow() * 1000L, restEasyConfig.getRestEasyExceptionDedupMaxKeys());
+            StatsReporter.getInstance(restEasyConfig.getRestEasyStatsInterval() * 1000L).register(exceptionDeduplicator);
+        } else {
+            this.exceptionDeduplicator = null;
+        }
+        this.requestLog = restEasyConfig.isRestEasyRequestLogEnable() ? RequestLog.getInstance(getRequestLogFile(restEasyConfig),
+                restEasyConfig.getRestEasyRequestLogCapacity(), restEasyConfig.getRestEasyRequestLogMaxEndpoints()) : null;
+        if (requestLog != null) {
+            this.requestSummary = new ThreadLocal<RequestSummary>() {
+                @Override
+                protected RequestSummary initialValue() {
+                    return new RequestSummary();
+                }
+            };
+        } else {
+            this.requestSummary = null;
+        }
+        if (restEasyConfig.isRestEasyLatencyHistogramEnable()) {
+            this.endpointHistograms = new EndpointHistograms(restEasyConfig.getRestEasyLatencyHistogramMaxEndpoints(), restEasyConfig.getRestEasyLatencyHistogramStripes());
+            this.requestStartTime = new ThreadLocal<long[]>() {
+                @Override
+                protected long[] initialValue() {
+                    return new long[1];
+                }
+            };
+            StatsReporter.getInstance(restEasyConfig.getRestEasyStatsInterval() * 1000L).register(endpointHistograms);
         } else {
-            final String restEasyRealIpEmptyValue = restEasyConfig.getResteasyRealIpEmptyValue() ;
-            this.remoteAddressResolver = new RealIpHeaderResolver(proxyIpHeader, restEasyRealIpEmptyValue);
+            this.endpointHistograms = null;
+            this.requestStartTime = null;
         }
 
         traceContext.cacheApi(RESTEASY_SYNC_METHOD_DESCRIPTOR);
     }
 
+    private String getRequestLogFile(RestEasyConfiguration restEasyConfig) {
+        final String file = restEasyConfig.getRestEasyRequestLogFile();
+        if (file != null && !file.isEmpty()) {
+            return file;
+        }
+        return System.getProperty("java.io.tmpdir") + File.separator + "pinpoint-resteasy-" + traceContext.getAgentId() + ".requests";
+    }
+
     @Override
     public void before(Object target, Object[] args) {
         if (isDebug) {
             logger.beforeInterceptor(target, args);
         }
+        if (requestStartTime != null) {
+            // every request, including excluded and unsampled ones
+            requestStartTime.get()[0] = System.nanoTime();
+        }
+        final TlsHandshake tlsHandshake = connectionStats ? requestServed(args[0]) : null;
+        final int queueWaitMicros = handoffStats != null ? recordQueueWait(args[1]) : -1;
+        if (eventLoopWatchdog != null) {
+            enterEventLoop(args[0], (HttpRequest) args[1]);
+        }
+        if (inFlightRequests != null) {
+            enterInFlight((HttpRequest) args[1]);
+        }
 
         try {
-            final Trace trace = createTrace(target, args);
+            final RequestTraceSettings settings = configHolder.get();
+            requestSettings.set(settings);
+            final Trace trace = createTrace(settings, args);
             if (trace == null) {
                 return;
             }
@@ -85,8 +216,33 @@ public class RequestDispatcherServiceInterceptor implements AroundInterceptor {
                 return;
             }
             // ------------------------------------------------------
+            if (requestSummary != null) {
+                final TraceId traceId = trace.getTraceId();
+                requestSummary.get().setTrace(traceId.getTransactionId(), traceId.getSpanId());
+            }
+            if (inFlightRequests != null) {
+                inFlightRequests.setTransactionId(trace.getTraceId().getTransactionId());
+            }
             SpanEventRecorder recorder = trace.traceBlockBegin();
             recorder.recordServiceType(RestEasyConstants.RESTEASY_METHOD);
+            if (queueWaitMicros != -1) {
+                recorder.recordAttribute(RestEasyConstants.QUEUE_WAIT, queueWaitMicros);
+            }
+            if (tlsHandshake != null) {
+                recorder.recordAttribute(RestEasyConstants.TLS_HANDSHAKE, (int) Math.min(tlsHandshake.getDurationMicros(), Integer.MAX_VALUE));
+                recorder.recordAttribute(RestEasyConstants.TLS_SESSION, tlsHandshake.toString());
+            }
+            final RequestBodyCapture requestBodyCapture = settings.getRequestBodyCapture();
+            if (requestBodyCapture != null) {
+                recordRequestBody(recorder, requestBodyCapture, (HttpRequest) args[1]);
+            }
+            if (threadResourceMeter != null) {
+                // sampled requests only, the MXBean calls cost about a microsecond each
+                threadResourceMeter.start();
+            }
+            if (traceResponseTransfer && args[2] instanceof ResponseTransferAccessor) {
+                ((ResponseTransferAccessor) args[2])._$PINPOINT$_setResponseTransfer(new ResponseTransfer(trace, args[0], System.nanoTime()));
+            }
         } catch (Throwable th) {
             if (logger.isWarnEnabled()) {
                 logger.warn("BEFORE. Caused:{}", th.getMessage(), th);
@@ -94,45 +250,124 @@ public class RequestDispatcherServiceInterceptor implements AroundInterceptor {
         }
     }
 
-    public static class Bypass implements RemoteAddressResolver<HttpRequest> {
+    /**
+     * Before the resource method runs, i.e. before anything has consumed the body.
+     */
+    private void recordRequestBody(SpanEventRecorder recorder, RequestBodyCapture requestBodyCapture, HttpRequest request) {
+        try {
+            final MediaType mediaType = request.getHttpHeaders().getMediaType();
+            if (!requestBodyCapture.accepts(request.getHttpMethod(), mediaType)) {
+                return;
+            }
+            final String body = requestBodyCapture.capture(request.getInputStream(), mediaType);
+            if (body != null) {
+                recorder.recordAttribute(AnnotationKey.HTTP_PARAM_ENTITY, body);
+            }
+        } catch (Throwable th) {
+            if (logger.isWarnEnabled()) {
+                logger.warn("BEFORE. Caused:{}", th.getMessage(), th);
+            }
+        }
+    }
+
+    /**
+     * @return microseconds the request waited between decoding and service(), -1 when unknown
+     */
+    private int recordQueueWait(Object request) {
+        try {
+            if (!(request instanceof RequestDecodeTimeAccessor)) {
+                return -1;
+            }
+            final long decodeTime = ((RequestDecodeTimeAccessor) request)._$PINPOINT$_getDecodeTime();
+            if (decodeTime == 0) {
+                return -1;
+            }
+            final long queueWaitMicros = Math.max((System.nanoTime() - decodeTime) / 1000, 0);
+            handoffStats.dispatched(queueWaitMicros);
+            return (int) Math.min(queueWaitMicros, Integer.MAX_VALUE);
+        } catch (Throwable th) {
+            if (logger.isWarnEnabled()) {
+                logger.warn("BEFORE. Caused:{}", th.getMessage(), th);
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * @return the TLS handshake to record when this is the first request of a TLS connection, null otherwise
+     */
+    private TlsHandshake requestServed(Object channelHandlerContext) {
+        try {
+            return connectionMetadataStore.requestServed(channelHandlerContext);
+        } catch (Throwable th) {
+            if (logger.isWarnEnabled()) {
+                logger.warn("BEFORE. Caused:{}", th.getMessage(), th);
+            }
+            return null;
+        }
+    }
+
+    private void enterEventLoop(Object channelHandlerContext, HttpRequest request) {
+        try {
+            if (connectionMetadataStore.isIoThread(channelHandlerContext)) {
+                eventLoopWatchdog.enter(request);
+            }
+        } catch (Throwable th) {
+            if (logger.isWarnEnabled()) {
+                logger.warn("BEFORE. Caused:{}", th.getMessage(), th);
+            }
+        }
+    }
+
+    private void enterInFlight(HttpRequest request) {
+        try {
+            inFlightRequests.enter(request);
+        } catch (Throwable th) {
+            if (logger.isWarnEnabled()) {
+                logger.warn("BEFORE. Caused:{}", th.getMessage(), th);
+            }
+        }
+    }
+
+    /**
+     * No proxy header configured: the client is the socket peer.
+     */
+    public static class Bypass implements RemoteAddressResolver<RequestHeaders> {
         @Override
-        public String resolve(HttpRequest httpRequest) {
-            return httpRequest.getHttpHeaders().getHeaderString(Header_Host) ;
+        public String resolve(RequestHeaders headers) {
+            return null;
         }
     }
 
-    public static class RealIpHeaderResolver implements RemoteAddressResolver<HttpRequest> {
+    /**
+     * Resolves the client address from the header named by profiler.resteasy.realipheader,
+     * which {@link RequestHeadersReader} has already put in {@link RequestHeaders#getRealIp()}.
+     * Returns null, i.e. the socket peer, when the header is absent or holds the configured empty value.
+     */
+    public static class RealIpHeaderResolver implements RemoteAddressResolver<RequestHeaders> {
 
-        public static final String X_FORWARDED_FOR = "x-forwarded-for";
-        public static final String X_REAL_IP = "x-real-ip";
         public static final String UNKNOWN = "unknown";
 
-        private final String realIpHeaderName;
         private final String emptyHeaderValue;
 
         public RealIpHeaderResolver() {
-            this(X_FORWARDED_FOR, UNKNOWN);
+            this(UNKNOWN);
         }
 
-        public RealIpHeaderResolver(String realIpHeaderName, String emptyHeaderValue) {
-            if (realIpHeaderName == null) {
-                throw new NullPointerException("realIpHeaderName must not be null");
-            }
-            this.realIpHeaderName = realIpHeaderName;
+        public RealIpHeaderResolver(String emptyHeaderValue) {
             this.emptyHeaderValue = emptyHeaderValue;
         }
 
         @Override
-        public String resolve(HttpRequest httpRequest) {
-            final HttpHeaders httpHeaders = httpRequest.getHttpHeaders() ;
-            final String realIp = httpHeaders.getHeaderString(this.realIpHeaderName);
+        public String resolve(RequestHeaders headers) {
+            final String realIp = headers.getRealIp();
 
             if (realIp == null || realIp.isEmpty()) {
-                return httpRequest.getHttpHeaders().getHeaderString(Header_Host);
+                return null;
             }
 
             if (emptyHeaderValue != null && emptyHeaderValue.equalsIgnoreCase(realIp)) {
-                return httpRequest.getHttpHeaders().getHeaderString(Header_Host);
+                return null;
             }
 
             final int firstIndex = realIp.indexOf(',');
@@ -146,95 +381,136 @@ public class RequestDispatcherServiceInterceptor implements AroundInterceptor {
 
 
 
-    private Trace createTrace(Object target, Object[] args) {
+    private Trace createTrace(RequestTraceSettings settings, Object[] args) {
         final HttpRequest request = (HttpRequest) args[1];
-        final URI absulutePath =  request.getUri().getAbsolutePath() ;
-        final String remoteHost = request.getHttpHeaders().getHeaderString(Header_Host) ;
-        final String requestURI = absulutePath.getPath();
-        if (excludeUrlFilter.filter(requestURI)) {
+        // raw path: the exclude patterns are matched without decoding it first
+        final String requestURI = request.getUri().getAbsolutePath().getRawPath();
+        if (settings.getExcludeUrlFilter().filter(requestURI)) {
             if (isTrace) {
                 logger.trace("filter requestURI:{}", requestURI);
             }
             return null;
         }
 
+        final RequestHeaders headers = settings.getRequestHeadersReader().read(request.getHttpHeaders());
+        if (requestSummary != null) {
+            // cached on the channel, recordRootSpan() gets the same metadata back
+            requestSummary.get().start(getConnectionMetadata(settings.getRemoteAddressResolver(), args[0], headers).getRemoteAddress());
+        }
+        final String remoteHost = headers.getHost();
         // check sampling flag from client. If the flag is false, do not sample this request.
-        final boolean sampling = samplingEnable(request);
+        final boolean sampling = samplingEnable(headers);
         if (!sampling) {
             // Even if this transaction is not a sampling target, we have to create Trace object to mark 'not sampling'.
             // For example, if this transaction invokes rpc call, we can add parameter to tell remote node 'don't sample this transaction'
             final Trace trace = traceContext.disableSampling();
             if (isDebug) {
-                logger.debug("remotecall sampling flag found. skip trace requestUrl:{}, remoteAddr:{}", absulutePath.getPath(), absulutePath.getHost());
+                logger.debug("remotecall sampling flag found. skip trace requestUrl:{}, remoteAddr:{}", requestURI, remoteHost);
             }
             return trace;
         }
 
-        final TraceId traceId = populateTraceIdFromRequest(request);
+        final TraceId traceId = populateTraceIdFromRequest(headers);
         if (traceId != null) {
             // TODO Maybe we should decide to trace or not even if the sampling flag is true to prevent too many requests are traced.
             final Trace trace = traceContext.continueTraceObject(traceId);
             if (trace.canSampled()) {
                 SpanRecorder recorder = trace.getSpanRecorder();
-                recordRootSpan(recorder, request);
+                recordRootSpan(recorder, settings.getRemoteAddressResolver(), args[0], request, headers);
                 if (isDebug) {
-                    logger.debug("TraceID exist. continue trace. traceId:{}, requestUrl:{}, remoteAddr:{}", traceId, absulutePath.getPath(), remoteHost);
+                    logger.debug("TraceID exist. continue trace. traceId:{}, requestUrl:{}, remoteAddr:{}", traceId, requestURI, remoteHost);
                 }
             } else {
                 if (isDebug) {
-                    logger.debug("TraceID exist. camSampled is false. skip trace. traceId:{}, requestUrl:{}, remoteAddr:{}", traceId, absulutePath.getPath(), remoteHost);
+                    logger.debug("TraceID exist. camSampled is false. skip trace. traceId:{}, requestUrl:{}, remoteAddr:{}", traceId, requestURI, remoteHost);
                 }
             }
             return trace;
         } else {
-            final Trace trace = traceContext.newTraceObject();
+            Trace trace = traceContext.newTraceObject();
+            // per-endpoint budget, spent only on requests the agent sampler accepted and before any root span work
+            final EndpointSampler endpointSampler = settings.getEndpointSampler();
+            if (trace.canSampled() && endpointSampler != null && !endpointSampler.isSampled(requestURI)) {
+                // nothing has been recorded yet: unbinding the trace without closing it sends nothing
+                traceContext.removeTraceObject();
+                trace = traceContext.disableSampling();
+                if (isDebug) {
+                    logger.debug("endpoint sampling budget exhausted. skip trace requestUrl:{}, remoteAddr:{}", requestURI, remoteHost);
+                }
+            }
             if (trace.canSampled()) {
                 SpanRecorder recorder = trace.getSpanRecorder();
-                recordRootSpan(recorder, request);
+                recordRootSpan(recorder, settings.getRemoteAddressResolver(), args[0], request, headers);
                 if (isDebug) {
-                    logger.debug("TraceID not exist. start new trace. requestUrl:{}, remoteAddr:{}", absulutePath.getPath(), remoteHost);
+                    logger.debug("TraceID not exist. start new trace. requestUrl:{}, remoteAddr:{}", requestURI, remoteHost);
                 }
             } else {
+                final TailSampler tailSampler = settings.getTailSampler();
+                if (tailSampler != null) {
+                    // decided again in after(), once latency and status are known
+                    tailSampler.start(args[0], headers);
+                }
                 if (isDebug) {
-                    logger.debug("TraceID not exist. camSampled is false. skip trace. requestUrl:{}, remoteAddr:{}", absulutePath.getPath(),remoteHost);
+                    logger.debug("TraceID not exist. camSampled is false. skip trace. requestUrl:{}, remoteAddr:{}", requestURI,remoteHost);
                 }
             }
             return trace;
         }
     }
 
-    private void recordRootSpan(final SpanRecorder recorder, final HttpRequest request) {
+    private void recordRootSpan(final SpanRecorder recorder, final RemoteAddressResolver<RequestHeaders> remoteAddressResolver,
+                                final Object channelHandlerContext, final HttpRequest request, final RequestHeaders headers) {
         // root
         recorder.recordServiceType(RestEasyConstants.RESTEASY);
 
         final URI absulutePath =  request.getUri().getAbsolutePath() ;
         final String requestURL = absulutePath.getPath();
         recorder.recordRpcName(requestURL);
-        final String endPoint = request.getHttpHeaders().getHeaderString(Header_Host);
-        recorder.recordEndPoint(endPoint);
-
-        final String remoteAddr = remoteAddressResolver.resolve(request);
-        recorder.recordRemoteAddress(remoteAddr);
+        final ConnectionMetadata connectionMetadata = getConnectionMetadata(remoteAddressResolver, channelHandlerContext, headers);
+        recorder.recordEndPoint(connectionMetadata.getEndPoint());
+        recorder.recordRemoteAddress(connectionMetadata.getRemoteAddress());
 
         if (!recorder.isRoot()) {
-            recordParentInfo(recorder, request);
+            recordParentInfo(recorder, headers);
         }
         recorder.recordApi(RESTEASY_SYNC_METHOD_DESCRIPTOR);
     }
 
-    private void recordParentInfo(SpanRecorder recorder, HttpRequest request) {
-        HttpHeaders httpHeaders = request.getHttpHeaders() ;
-        String parentApplicationName = httpHeaders.getHeaderString(Header.HTTP_PARENT_APPLICATION_NAME.toString());
+    /**
+     * Keep-alive requests usually repeat the Host and real-IP headers of the previous one on the same
+     * connection, so the resolved values are kept on the channel and rebuilt only when those headers change.
+     */
+    private ConnectionMetadata getConnectionMetadata(RemoteAddressResolver<RequestHeaders> remoteAddressResolver, Object channelHandlerContext, RequestHeaders headers) {
+        final String host = headers.getHost();
+        final String realIp = headers.getRealIp();
+        final ConnectionMetadata cached = connectionMetadataStore.get(channelHandlerContext);
+        if (cached != null && cached.matches(host, realIp)) {
+            return cached;
+        }
+
+        final String peerAddress = cached != null ? cached.getPeerAddress() : connectionMetadataStore.getPeerAddress(channelHandlerContext);
+        String remoteAddress = remoteAddressResolver.resolve(headers);
+        if (remoteAddress == null) {
+            remoteAddress = peerAddress;
+        }
+        final ConnectionMetadata connectionMetadata = new ConnectionMetadata(host, realIp, peerAddress, host, remoteAddress);
+        connectionMetadataStore.set(channelHandlerContext, connectionMetadata);
+        if (isDebug) {
+            logger.debug("connection metadata updated. {}", connectionMetadata);
+        }
+        return connectionMetadata;
+    }
+
+    private void recordParentInfo(SpanRecorder recorder, RequestHeaders headers) {
+        final String parentApplicationName = headers.getParentApplicationName();
         if (parentApplicationName != null) {
-            final String host = httpHeaders.getHeaderString(Header.HTTP_HOST.toString());
+            final String host = headers.getAcceptorHost();
             if (host != null) {
                 recorder.recordAcceptorHost(host);
             } else {
-                recorder.recordAcceptorHost(request.getHttpHeaders().getHeaderString(Header_Host));
+                recorder.recordAcceptorHost(headers.getHost());
             }
-            final String type = httpHeaders.getHeaderString(Header.HTTP_PARENT_APPLICATION_TYPE.toString());
-            final short parentApplicationType = NumberUtils.parseShort(type, ServiceType.UNDEFINED.getCode());
-            recorder.recordParentApplication(parentApplicationName, parentApplicationType);
+            recorder.recordParentApplication(parentApplicationName, headers.getParentApplicationType());
         }
     }
 
@@ -243,55 +519,349 @@ public class RequestDispatcherServiceInterceptor implements AroundInterceptor {
         if (isDebug) {
             logger.afterInterceptor(target, args, result, throwable);
         }
+        final long eventLoopBlockedMicros = eventLoopWatchdog != null ? eventLoopWatchdog.exit() : -1;
+        if (inFlightRequests != null) {
+            inFlightRequests.exit();
+        }
+        final ResteasyAsynchronousResponse asyncResponse = traceAsync && throwable == null ? getSuspendedResponse((HttpRequest) args[1]) : null;
+        if (endpointHistograms != null && asyncResponse == null) {
+            recordLatency(args, throwable);
+        }
 
+        final RequestTraceSettings settings = takeRequestSettings();
+        final Throwable mappedException = throwable == null ? getMappedException((HttpRequest) args[1]) : null;
+        final boolean mappedError = mappedException != null && isError(mappedException, (HttpResponse) args[2]);
+        final Throwable error = throwable != null ? throwable : mappedError ? mappedException : null;
+        final Throwable handledException = mappedError ? null : mappedException;
+        final RequestSummary suspendedSummary = requestSummary != null ? logRequest(args, error, asyncResponse != null) : null;
         final Trace trace = traceContext.currentRawTraceObject();
         if (trace == null) {
+            if (asyncResponse != null) {
+                suspend(asyncResponse, null, null, suspendedSummary, args);
+            }
             return;
         }
 
         // TODO STATDISABLE this logic was added to disable statistics tracing
         if (!trace.canSampled()) {
             traceContext.removeTraceObject();
+            final TailSampler tailSampler = settings.getTailSampler();
+            if (asyncResponse != null) {
+                if (tailSampler != null) {
+                    tailSampler.discard();
+                }
+                suspend(asyncResponse, null, null, suspendedSummary, args);
+            } else if (tailSampler != null) {
+                promote(settings, args, error, handledException);
+            }
             return;
         }
         // ------------------------------------------------------
+        final boolean responseTransfer = traceResponseTransfer && keepResponseTransfer(args[2], asyncResponse == null && throwable == null);
+        AsyncTraceId asyncTraceId = null;
         try {
             SpanEventRecorder recorder = trace.currentSpanEventRecorder();
-            final HttpRequest request = (HttpRequest) args[1];
-            final String parameters = getRequestParameter(request, 64, 512);
-            if (parameters != null && parameters.length() > 0) {
-                recorder.recordAttribute(AnnotationKey.HTTP_PARAM, parameters);
+            final RequestParameterCapture requestParameterCapture = settings.getRequestParameterCapture();
+            if (requestParameterCapture != null) {
+                final HttpRequest request = (HttpRequest) args[1];
+                final String parameters = requestParameterCapture.capture(request.getUri().getRequestUri().getRawQuery());
+                if (parameters != null) {
+                    recorder.recordAttribute(AnnotationKey.HTTP_PARAM, parameters);
+                }
+            }
+
+            if (threadResourceMeter != null) {
+                recordThreadResource(recorder, (HttpRequest) args[1]);
+            }
+            if (eventLoopBlockedMicros != -1) {
+                recorder.recordAttribute(RestEasyConstants.EVENT_LOOP_BLOCKED, (int) Math.min(eventLoopBlockedMicros, Integer.MAX_VALUE));
             }
 
             recorder.recordApi(methodDescriptor);
-            recorder.recordException(throwable);
+            recordError(trace.getSpanRecorder(), recorder, (HttpRequest) args[1], error, handledException);
+            if (asyncResponse != null) {
+                asyncTraceId = recorder.recordNextAsyncId();
+            } else {
+                // a suspended request has no status yet, SuspendedRequest.complete() records it
+                recordStatus(trace.getSpanRecorder(), (HttpResponse) args[2]);
+            }
         } catch (Throwable th) {
             if (logger.isWarnEnabled()) {
                 logger.warn("AFTER. Caused:{}", th.getMessage(), th);
             }
         } finally {
             traceContext.removeTraceObject();
-            deleteTrace(trace, target, args, result, throwable);
+            if (asyncResponse != null) {
+                // the span stays open until the response is resumed, see AsynchronousResponseResumeInterceptor
+                trace.traceBlockEnd();
+                suspend(asyncResponse, trace, asyncTraceId, suspendedSummary, args);
+            } else if (responseTransfer) {
+                // closed once the response is on the socket, see NettyHttpResponseFinishInterceptor
+                trace.traceBlockEnd();
+            } else {
+                deleteTrace(trace, target, args, result, throwable);
+            }
+        }
+    }
+
+    private RequestTraceSettings takeRequestSettings() {
+        final RequestTraceSettings settings = requestSettings.get();
+        if (settings == null) {
+            // before() failed early
+            return configHolder.get();
+        }
+        requestSettings.set(null);
+        return settings;
+    }
+
+    /**
+     * Turns the provisional trace of an unsampled request into a recorded one when {@link TailSampler} wants it.
+     * The root span is back-dated to the start of the request; the span event only carries the outcome.
+     */
+    private void promote(RequestTraceSettings settings, Object[] args, Throwable error, Throwable handledException) {
+        final TailSampler tailSampler = settings.getTailSampler();
+        final HttpResponse response = (HttpResponse) args[2];
+        final ProvisionalTrace provisionalTrace = tailSampler.finish(response != null ? response.getStatus() : 0, error);
+        if (provisionalTrace == null) {
+            return;
+        }
+        try {
+            final String transactionId = TransactionIdUtils.formatString(traceContext.getAgentId(), traceContext.getAgentStartTime(), tailSampler.nextTransactionSequence());
+            final TraceId traceId = traceContext.createTraceId(transactionId, SpanId.NULL, SpanId.newSpanId(), (short) 0);
+            final Trace trace = traceContext.continueTraceObject(traceId);
+            try {
+                if (!trace.canSampled()) {
+                    return;
+                }
+                final HttpRequest request = (HttpRequest) args[1];
+                final SpanRecorder spanRecorder = trace.getSpanRecorder();
+                spanRecorder.recordStartTime(provisionalTrace.getStartTimeMillis());
+                recordRootSpan(spanRecorder, settings.getRemoteAddressResolver(), provisionalTrace.getChannelHandlerContext(), request, provisionalTrace.getHeaders());
+                final String template = (String) request.getAttribute(RestEasyConstants.RESOURCE_PATH_TEMPLATE_ATTRIBUTE);
+                if (template != null) {
+                    spanRecorder.recordRpcName(ResourcePathTemplates.toRpcName(template));
+                }
+
+                recordStatus(spanRecorder, response);
+
+                final SpanEventRecorder recorder = trace.traceBlockBegin();
+                recorder.recordServiceType(RestEasyConstants.RESTEASY_METHOD);
+                recorder.recordApi(methodDescriptor);
+                recorder.recordAttribute(RestEasyConstants.TAIL_SAMPLED, provisionalTrace.getReason());
+                recordError(spanRecorder, recorder, request, error, handledException);
+                trace.traceBlockEnd();
+                if (isDebug) {
+                    logger.debug("unsampled request promoted. reason:{}, traceId:{}", provisionalTrace.getReason(), traceId);
+                }
+            } finally {
+                traceContext.removeTraceObject();
+                trace.close();
+            }
+        } catch (Throwable th) {
+            if (logger.isWarnEnabled()) {
+                logger.warn("AFTER. Caused:{}", th.getMessage(), th);
+            }
+        } finally {
+            tailSampler.release(provisionalTrace);
+        }
+    }
+
+    /**
+     * @return the exception RESTEasy turned into the response, null when none or not traced
+     */
+    private Throwable getMappedException(HttpRequest request) {
+        try {
+            final Object exception = request.getAttribute(RestEasyConstants.MAPPED_EXCEPTION_ATTRIBUTE);
+            return exception instanceof Throwable ? (Throwable) exception : null;
+        } catch (Throwable th) {
+            if (logger.isWarnEnabled()) {
+                logger.warn("AFTER. Caused:{}", th.getMessage(), th);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * A mapped exception is an error when the response is a 5xx, or when it is anything but a WebApplicationException
+     * with a lower status: a NotFoundException answered with 404 is the API working as intended.
+     */
+    private static boolean isError(Throwable mappedException, HttpResponse response) {
+        if (response != null && response.getStatus() >= 500) {
+            return true;
+        }
+        if (!(mappedException instanceof WebApplicationException)) {
+            return true;
+        }
+        final Response exceptionResponse = ((WebApplicationException) mappedException).getResponse();
+        return exceptionResponse == null || exceptionResponse.getStatus() >= 500;
+    }
+
+    private void recordStatus(SpanRecorder spanRecorder, HttpResponse response) {
+        if (response != null) {
+            spanRecorder.recordAttribute(AnnotationKey.HTTP_STATUS_CODE, response.getStatus());
+        }
+    }
+
+    /**
+     * The class of the exception always goes on the root span. Its message only goes on the span event for the
+     * first ones of each endpoint and class per window when profiler.resteasy.exceptiondedup.limit is set; the
+     * others are recorded without it, which still marks the span as failed.
+     * A mapped exception that is not an error only leaves its class, under its own key.
+     */
+    private void recordError(SpanRecorder spanRecorder, SpanEventRecorder recorder, HttpRequest request, Throwable error, Throwable handledException) {
+        if (handledException != null) {
+            spanRecorder.recordAttribute(RestEasyConstants.MAPPED_EXCEPTION_CLASS, handledException.getClass().getName());
+        }
+        if (error == null) {
+            return;
+        }
+        spanRecorder.recordAttribute(RestEasyConstants.EXCEPTION_CLASS, error.getClass().getName());
+        if (exceptionDeduplicator == null) {
+            recorder.recordException(error);
+            return;
+        }
+        final String endpoint = (String) request.getAttribute(RestEasyConstants.RESOURCE_PATH_TEMPLATE_ATTRIBUTE);
+        exceptionDeduplicator.record(recorder, endpoint, error);
+    }
+
+    private void recordThreadResource(SpanEventRecorder recorder, HttpRequest request) {
+        final long[] usage = threadResourceMeter.stop();
+        if (usage == null) {
+            return;
+        }
+        final long cpuNanos = usage[ThreadResourceMeter.CPU_TIME];
+        final long allocatedBytes = usage[ThreadResourceMeter.ALLOCATED_BYTES];
+        if (cpuNanos != -1) {
+            recorder.recordAttribute(RestEasyConstants.CPU_TIME, (int) Math.min(cpuNanos / 1000, Integer.MAX_VALUE));
+        }
+        if (allocatedBytes != -1) {
+            recorder.recordAttribute(RestEasyConstants.ALLOCATED_BYTES, allocatedBytes);
+        }
+        if (endpointResourceUsage != null) {
+            endpointResourceUsage.record((String) request.getAttribute(RestEasyConstants.RESOURCE_PATH_TEMPLATE_ATTRIBUTE), cpuNanos, allocatedBytes);
+        }
+    }
+
+    /**
+     * @param keep whether NettyHttpResponse.finish() will be called for this response
+     * @return whether the response still holds the trace
+     */
+    private boolean keepResponseTransfer(Object response, boolean keep) {
+        if (!(response instanceof ResponseTransferAccessor)) {
+            return false;
+        }
+        final ResponseTransferAccessor accessor = (ResponseTransferAccessor) response;
+        if (accessor._$PINPOINT$_getResponseTransfer() == null) {
+            return false;
+        }
+        if (!keep) {
+            accessor._$PINPOINT$_setResponseTransfer(null);
+        }
+        return keep;
+    }
+
+    /**
+     * @return the response of a request still suspended by @Suspended AsyncResponse, null when the request is done
+     */
+    private ResteasyAsynchronousResponse getSuspendedResponse(HttpRequest request) {
+        try {
+            final ResteasyAsynchronousContext asyncContext = request.getAsyncContext();
+            if (asyncContext == null || !asyncContext.isSuspended()) {
+                return null;
+            }
+            final ResteasyAsynchronousResponse asyncResponse = asyncContext.getAsyncResponse();
+            if (asyncResponse instanceof SuspendedRequestAccessor) {
+                return asyncResponse;
+            }
+            return null;
+        } catch (Throwable th) {
+            if (logger.isWarnEnabled()) {
+                logger.warn("AFTER. Caused:{}", th.getMessage(), th);
+            }
+            return null;
+        }
+    }
+
+    private void suspend(ResteasyAsynchronousResponse asyncResponse, Trace trace, AsyncTraceId asyncTraceId, RequestSummary summary, Object[] args) {
+        if (trace == null && endpointHistograms == null && summary == null) {
+            return;
+        }
+        final HttpRequest request = (HttpRequest) args[1];
+        final String endpoint = endpointHistograms != null || summary != null ? (String) request.getAttribute(RestEasyConstants.RESOURCE_PATH_TEMPLATE_ATTRIBUTE) : null;
+        final long startNanos = requestStartTime != null ? requestStartTime.get()[0] : 0;
+        final SuspendedRequest suspendedRequest = new SuspendedRequest(trace, asyncTraceId, endpointHistograms, endpoint, startNanos, (HttpResponse) args[2]);
+        if (summary != null) {
+            suspendedRequest.setRequestLog(requestLog, summary);
+        }
+        try {
+            SuspendedRequest.suspend((SuspendedRequestAccessor) asyncResponse, suspendedRequest);
+            if (isDebug) {
+                logger.debug("request suspended. requestUrl:{}", request.getUri().getPath());
+            }
+        } catch (Throwable th) {
+            if (logger.isWarnEnabled()) {
+                logger.warn("AFTER. Caused:{}", th.getMessage(), th);
+            }
+            suspendedRequest.complete(null);
+        }
+    }
+
+    /**
+     * Writes the request to the request log, or hands a copy of its summary over when it is still suspended.
+     *
+     * @return the summary to write once the suspended request completes, null otherwise
+     */
+    private RequestSummary logRequest(Object[] args, Throwable error, boolean suspended) {
+        final RequestSummary summary = requestSummary.get();
+        if (!summary.isActive()) {
+            return null;
+        }
+        try {
+            if (suspended) {
+                return summary.copy();
+            }
+            final HttpRequest request = (HttpRequest) args[1];
+            final HttpResponse response = (HttpResponse) args[2];
+            requestLog.write(summary, (String) request.getAttribute(RestEasyConstants.RESOURCE_PATH_TEMPLATE_ATTRIBUTE),
+                    response != null ? response.getStatus() : 0, error != null, false);
+            return null;
+        } catch (Throwable th) {
+            if (logger.isWarnEnabled()) {
+                logger.warn("AFTER. Caused:{}", th.getMessage(), th);
+            }
+            return null;
+        } finally {
+            summary.clear();
+        }
+    }
+
+    private void recordLatency(Object[] args, Throwable throwable) {
+        try {
+            final long latencyMicros = (System.nanoTime() - requestStartTime.get()[0]) / 1000;
+            final HttpRequest request = (HttpRequest) args[1];
+            final String template = (String) request.getAttribute(RestEasyConstants.RESOURCE_PATH_TEMPLATE_ATTRIBUTE);
+            final HttpResponse response = (HttpResponse) args[2];
+            final int status = response != null ? response.getStatus() : 0;
+            endpointHistograms.record(template, latencyMicros, status, throwable != null);
+        } catch (Throwable th) {
+            if (logger.isWarnEnabled()) {
+                logger.warn("AFTER. Caused:{}", th.getMessage(), th);
+            }
         }
     }
 
     /**
      * Populate source trace from HTTP Header.
      *
-     * @param request
+     * @param headers
      * @return TraceId when it is possible to get a transactionId from Http header. if not possible return null
      */
-    private TraceId populateTraceIdFromRequest(HttpRequest request) {
+    private TraceId populateTraceIdFromRequest(RequestHeaders headers) {
 
-        HttpHeaders httpHeaders = request.getHttpHeaders() ;
-        String transactionId = httpHeaders.getHeaderString(Header.HTTP_TRACE_ID.toString());
+        final String transactionId = headers.getTransactionId();
         if (transactionId != null) {
 
-            long parentSpanID = NumberUtils.parseLong(httpHeaders.getHeaderString(Header.HTTP_PARENT_SPAN_ID.toString()), SpanId.NULL);
-            long spanID = NumberUtils.parseLong(httpHeaders.getHeaderString(Header.HTTP_SPAN_ID.toString()), SpanId.NULL);
-            short flags = NumberUtils.parseShort(httpHeaders.getHeaderString(Header.HTTP_FLAGS.toString()), (short) 0);
-
-            final TraceId id = traceContext.createTraceId(transactionId, parentSpanID, spanID, flags);
+            final TraceId id = traceContext.createTraceId(transactionId, headers.getParentSpanId(), headers.getSpanId(), headers.getFlags());
             if (isDebug) {
                 logger.debug("TraceID exist. continue trace. {}", id);
             }
@@ -301,40 +871,15 @@ public class RequestDispatcherServiceInterceptor implements AroundInterceptor {
         }
     }
 
-    private boolean samplingEnable(HttpRequest request) {
+    private boolean samplingEnable(RequestHeaders headers) {
         // optional value
-        final String samplingFlag = request.getHttpHeaders().getHeaderString(Header.HTTP_SAMPLED.toString());
+        final String samplingFlag = headers.getSampled();
         if (isDebug) {
             logger.debug("SamplingFlag:{}", samplingFlag);
         }
         return SamplingFlagUtils.isSamplingFlag(samplingFlag);
     }
 
-    private String getRequestParameter(HttpRequest request, int eachLimit, int totalLimit) {
-        ResteasyUriInfo resteasyUriInfo = request.getUri() ;
-        MultivaluedMap<String, String> queryParameters = resteasyUriInfo.getQueryParameters(true) ;
-        Set<String> attrs = queryParameters.keySet() ;
-        final StringBuilder params = new StringBuilder(64);
-
-        for (String key : attrs ) {
-            if (params.length() != 0) {
-                params.append('&');
-            }
-            // skip appending parameters if parameter size is bigger than totalLimit
-            if (params.length() > totalLimit) {
-                params.append("...");
-                return params.toString();
-            }
-            params.append(StringUtils.drop(key, eachLimit));
-            params.append("=");
-            Object value = queryParameters.getFirst(key);
-            if (value != null) {
-                params.append(StringUtils.drop(StringUtils.toString(value), eachLimit));
-            }
-        }
-        return params.toString();
-    }
-
     private void deleteTrace(Trace trace, Object target, Object[] args, Object result, Throwable throwable) {
         trace.traceBlockEnd();
         trace.close();
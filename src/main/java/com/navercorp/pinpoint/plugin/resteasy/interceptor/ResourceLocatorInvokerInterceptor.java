@@ -0,0 +1,67 @@
+/*
+ * Copyright 2014 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.navercorp.pinpoint.plugin.resteasy.interceptor;
+
+import com.navercorp.pinpoint.bootstrap.interceptor.AroundInterceptor;
+import com.navercorp.pinpoint.bootstrap.logging.PLogger;
+import com.navercorp.pinpoint.bootstrap.logging.PLoggerFactory;
+import com.navercorp.pinpoint.plugin.resteasy.ResourceLocatorGetter;
+import com.navercorp.pinpoint.plugin.resteasy.ResourcePathTemplateAccessor;
+import com.navercorp.pinpoint.plugin.resteasy.ResourcePathTemplates;
+import org.jboss.resteasy.spi.HttpRequest;
+
+/**
+ * ResourceLocatorInvoker.invokeOnTargetObject(HttpRequest, HttpResponse, Object)
+ * <p>
+ * Adds the @Path template of the sub-resource locator to the template the request has matched so far.
+ */
+public class ResourceLocatorInvokerInterceptor implements AroundInterceptor {
+    private final PLogger logger = PLoggerFactory.getLogger(this.getClass());
+    private final boolean isDebug = logger.isDebugEnabled();
+
+    @Override
+    public void before(Object target, Object[] args) {
+        if (isDebug) {
+            logger.beforeInterceptor(target, args);
+        }
+
+        try {
+            final HttpRequest request = (HttpRequest) args[0];
+            ResourcePathTemplates.append(request, getResourcePathTemplate(target));
+        } catch (Throwable th) {
+            if (logger.isWarnEnabled()) {
+                logger.warn("BEFORE. Caused:{}", th.getMessage(), th);
+            }
+        }
+    }
+
+    private String getResourcePathTemplate(Object target) {
+        final ResourcePathTemplateAccessor accessor = (ResourcePathTemplateAccessor) target;
+        String template = accessor._$PINPOINT$_getResourcePathTemplate();
+        if (template == null) {
+            template = ResourcePathTemplates.normalize(((ResourceLocatorGetter) target)._$PINPOINT$_getResourceLocator().getFullpath());
+            accessor._$PINPOINT$_setResourcePathTemplate(template);
+        }
+        return template;
+    }
+
+    @Override
+    public void after(Object target, Object[] args, Object result, Throwable throwable) {
+        if (isDebug) {
+            logger.afterInterceptor(target, args, result, throwable);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2014 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.navercorp.pinpoint.plugin.resteasy.interceptor;
+
+import com.navercorp.pinpoint.bootstrap.context.SpanEventRecorder;
+import com.navercorp.pinpoint.bootstrap.context.Trace;
+import com.navercorp.pinpoint.bootstrap.context.TraceContext;
+import com.navercorp.pinpoint.bootstrap.interceptor.AroundInterceptor;
+import com.navercorp.pinpoint.bootstrap.logging.PLogger;
+import com.navercorp.pinpoint.bootstrap.logging.PLoggerFactory;
+import com.navercorp.pinpoint.plugin.resteasy.MethodDescriptorCache;
+import com.navercorp.pinpoint.plugin.resteasy.ResourceMethodGetter;
+import com.navercorp.pinpoint.plugin.resteasy.ResourcePathTemplateAccessor;
+import com.navercorp.pinpoint.plugin.resteasy.ResourcePathTemplates;
+import com.navercorp.pinpoint.plugin.resteasy.RestEasyConfigHolder;
+import com.navercorp.pinpoint.plugin.resteasy.RestEasyConfiguration;
+import com.navercorp.pinpoint.plugin.resteasy.RestEasyConstants;
+import org.jboss.resteasy.spi.HttpRequest;
+
+/**
+ * ResourceMethodInvoker.invoke(HttpRequest, HttpResponse, Object)
+ * <p>
+ * Records the matched @Path template, e.g. /orders/{id}/items/{item}, as the RPC name of the root span
+ * instead of the raw request path, and a span event for the resource class and method that served the request.
+ */
+public class ResourceMethodInvokerInterceptor implements AroundInterceptor {
+    private final PLogger logger = PLoggerFactory.getLogger(this.getClass());
+    private final boolean isDebug = logger.isDebugEnabled();
+
+    private final TraceContext traceContext;
+    private final boolean rpcNameTemplate;
+    private final MethodDescriptorCache methodDescriptorCache;
+
+    public ResourceMethodInvokerInterceptor(TraceContext traceContext) {
+        this.traceContext = traceContext;
+
+        RestEasyConfiguration restEasyConfig = RestEasyConfigHolder.getInstance(traceContext.getProfilerConfig()).getStartupConfiguration();
+        this.rpcNameTemplate = restEasyConfig.isRestEasyRpcNameTemplate();
+        if (restEasyConfig.isRestEasyTraceResourceMethod()) {
+            this.methodDescriptorCache = new MethodDescriptorCache(traceContext);
+        } else {
+            this.methodDescriptorCache = null;
+        }
+    }
+
+    @Override
+    public void before(Object target, Object[] args) {
+        if (isDebug) {
+            logger.beforeInterceptor(target, args);
+        }
+
+        final Trace trace = traceContext.currentTraceObject();
+        if (rpcNameTemplate) {
+            recordResourcePathTemplate(trace, target, (HttpRequest) args[0]);
+        }
+        if (trace == null || methodDescriptorCache == null) {
+            return;
+        }
+
+        try {
+            SpanEventRecorder recorder = trace.traceBlockBegin();
+            recorder.recordServiceType(RestEasyConstants.RESTEASY_METHOD);
+        } catch (Throwable th) {
+            if (logger.isWarnEnabled()) {
+                logger.warn("BEFORE. Caused:{}", th.getMessage(), th);
+            }
+        }
+    }
+
+    private void recordResourcePathTemplate(Trace trace, Object target, HttpRequest request) {
+        try {
+            final String template = ResourcePathTemplates.append(request, getResourcePathTemplate(target));
+            if (trace != null) {
+                trace.getSpanRecorder().recordRpcName(ResourcePathTemplates.toRpcName(template));
+            }
+        } catch (Throwable th) {
+            if (logger.isWarnEnabled()) {
+                logger.warn("BEFORE. Caused:{}", th.getMessage(), th);
+            }
+        }
+    }
+
+    private String getResourcePathTemplate(Object target) {
+        final ResourcePathTemplateAccessor accessor = (ResourcePathTemplateAccessor) target;
+        String template = accessor._$PINPOINT$_getResourcePathTemplate();
+        if (template == null) {
+            template = ResourcePathTemplates.normalize(((ResourceMethodGetter) target)._$PINPOINT$_getResourceMethod().getFullpath());
+            accessor._$PINPOINT$_setResourcePathTemplate(template);
+        }
+        return template;
+    }
+
+    @Override
+    public void after(Object target, Object[] args, Object result, Throwable throwable) {
+        if (isDebug) {
+            logger.afterInterceptor(target, args, result, throwable);
+        }
+
+        if (methodDescriptorCache == null) {
+            return;
+        }
+        final Trace trace = traceContext.currentTraceObject();
+        if (trace == null) {
+            return;
+        }
+
+        try {
+            SpanEventRecorder recorder = trace.currentSpanEventRecorder();
+            recorder.recordApi(methodDescriptorCache.getMethodDescriptor(((ResourceMethodGetter) target)._$PINPOINT$_getResourceMethod().getMethod()));
+            recorder.recordException(throwable);
+        } catch (Throwable th) {
+            if (logger.isWarnEnabled()) {
+                logger.warn("AFTER. Caused:{}", th.getMessage(), th);
+            }
+        } finally {
+            trace.traceBlockEnd();
+        }
+    }
+}
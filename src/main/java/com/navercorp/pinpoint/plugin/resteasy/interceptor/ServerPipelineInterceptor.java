@@ -0,0 +1,101 @@
+/*
+ * Copyright 2014 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.navercorp.pinpoint.plugin.resteasy.interceptor;
+
+import com.navercorp.pinpoint.bootstrap.context.TraceContext;
+import com.navercorp.pinpoint.bootstrap.interceptor.AroundInterceptor;
+import com.navercorp.pinpoint.bootstrap.logging.PLogger;
+import com.navercorp.pinpoint.bootstrap.logging.PLoggerFactory;
+import com.navercorp.pinpoint.plugin.resteasy.RestEasyConfigHolder;
+import com.navercorp.pinpoint.plugin.resteasy.RestEasyConfiguration;
+import com.navercorp.pinpoint.plugin.resteasy.connection.ConnectionMetadataStore;
+import com.navercorp.pinpoint.plugin.resteasy.metric.ConnectionStats;
+import com.navercorp.pinpoint.plugin.resteasy.metric.StatsReporter;
+import com.navercorp.pinpoint.plugin.resteasy.metric.TlsStats;
+
+/**
+ * Netty 3: HttpServerPipelineFactory.getPipeline(), HttpsServerPipelineFactory.getPipeline()<br>
+ * Netty 4: NettyJaxrsServer.setupHandlers(SocketChannel, ...)
+ * <p>
+ * Puts the connection stats handler at the head of the pipeline NettyJaxrsServer has just built for a new channel.
+ * The handler also times the TLS handshake when the server was given an SSLContext. With response transfer traced,
+ * the handler telling when the last byte of a response is on the socket goes right in front of RequestHandler.
+ */
+public class ServerPipelineInterceptor implements AroundInterceptor {
+    private final PLogger logger = PLoggerFactory.getLogger(this.getClass());
+    private final boolean isDebug = logger.isDebugEnabled();
+
+    private final boolean netty4;
+    private final ConnectionMetadataStore connectionMetadataStore;
+    private final ConnectionStats connectionStats;
+    private final TlsStats tlsStats;
+    private final boolean responseTransfer;
+
+    public ServerPipelineInterceptor(TraceContext traceContext) {
+        final RestEasyConfiguration restEasyConfig = RestEasyConfigHolder.getInstance(traceContext.getProfilerConfig()).getStartupConfiguration();
+        this.netty4 = restEasyConfig.isNetty4();
+        this.connectionMetadataStore = ConnectionMetadataStore.create(netty4);
+        this.responseTransfer = restEasyConfig.isRestEasyResponseTransferEnable();
+        if (!restEasyConfig.isRestEasyConnectionStatsEnable()) {
+            this.connectionStats = null;
+            this.tlsStats = null;
+            return;
+        }
+        this.connectionStats = ConnectionStats.getInstance();
+        final StatsReporter statsReporter = StatsReporter.getInstance(restEasyConfig.getRestEasyStatsInterval() * 1000L);
+        statsReporter.register(connectionStats);
+        if (restEasyConfig.isRestEasyConnectionStatsTls()) {
+            this.tlsStats = TlsStats.getInstance();
+            statsReporter.register(tlsStats);
+        } else {
+            this.tlsStats = null;
+        }
+    }
+
+    @Override
+    public void before(Object target, Object[] args) {
+        if (isDebug) {
+            logger.beforeInterceptor(target, args);
+        }
+    }
+
+    @Override
+    public void after(Object target, Object[] args, Object result, Throwable throwable) {
+        if (isDebug) {
+            logger.afterInterceptor(target, args, result, throwable);
+        }
+        if (throwable != null) {
+            return;
+        }
+
+        try {
+            final Object pipelineOwner = netty4 ? args[0] : result;
+            if (pipelineOwner == null) {
+                return;
+            }
+            if (responseTransfer) {
+                connectionMetadataStore.addResponseTransferHandler(pipelineOwner);
+            }
+            if (connectionStats != null) {
+                connectionMetadataStore.addConnectionStatsHandler(pipelineOwner, connectionStats, tlsStats);
+            }
+        } catch (Throwable th) {
+            if (logger.isWarnEnabled()) {
+                logger.warn("AFTER. Caused:{}", th.getMessage(), th);
+            }
+        }
+    }
+}
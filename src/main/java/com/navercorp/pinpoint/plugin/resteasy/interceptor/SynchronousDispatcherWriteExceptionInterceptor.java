@@ -0,0 +1,61 @@
+/*
+ * Copyright 2014 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.navercorp.pinpoint.plugin.resteasy.interceptor;
+
+import com.navercorp.pinpoint.bootstrap.interceptor.AroundInterceptor;
+import com.navercorp.pinpoint.bootstrap.logging.PLogger;
+import com.navercorp.pinpoint.bootstrap.logging.PLoggerFactory;
+import com.navercorp.pinpoint.plugin.resteasy.RestEasyConstants;
+import org.jboss.resteasy.spi.HttpRequest;
+
+/**
+ * SynchronousDispatcher.writeException(HttpRequest, HttpResponse, Throwable)
+ * <p>
+ * Keeps the exception RESTEasy is about to turn into a response, through an ExceptionMapper or its built-in
+ * handling, on the request: RequestDispatcher.service() then returns normally and its interceptor would never
+ * see it. Cheap enough to run for every request, so the tail sampler can use it as well.
+ */
+public class SynchronousDispatcherWriteExceptionInterceptor implements AroundInterceptor {
+    private final PLogger logger = PLoggerFactory.getLogger(this.getClass());
+    private final boolean isDebug = logger.isDebugEnabled();
+
+    @Override
+    public void before(Object target, Object[] args) {
+        if (isDebug) {
+            logger.beforeInterceptor(target, args);
+        }
+
+        try {
+            final HttpRequest request = (HttpRequest) args[0];
+            final Object exception = args[2];
+            // a mapper failing calls writeException() again, the first exception is the one that matters
+            if (request != null && exception != null && request.getAttribute(RestEasyConstants.MAPPED_EXCEPTION_ATTRIBUTE) == null) {
+                request.setAttribute(RestEasyConstants.MAPPED_EXCEPTION_ATTRIBUTE, exception);
+            }
+        } catch (Throwable th) {
+            if (logger.isWarnEnabled()) {
+                logger.warn("BEFORE. Caused:{}", th.getMessage(), th);
+            }
+        }
+    }
+
+    @Override
+    public void after(Object target, Object[] args, Object result, Throwable throwable) {
+        if (isDebug) {
+            logger.afterInterceptor(target, args, result, throwable);
+        }
+    }
+}
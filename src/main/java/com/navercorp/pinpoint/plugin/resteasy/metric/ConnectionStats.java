@@ -0,0 +1,150 @@
+/*
+ * Copyright 2014 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.navercorp.pinpoint.plugin.resteasy.metric;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Connections of the NettyJaxrsServer channels, fed by a handler at the head of each channel pipeline:
+ * how many are open, how fast they come and go, how many requests each one carries before it is closed and
+ * how many bytes cross the socket.
+ * <p>
+ * The open connection gauge is the difference of two monotonic counters, every connection being closed eventually.
+ */
+public final class ConnectionStats implements StatsSource {
+    private static final ConnectionStats INSTANCE = new ConnectionStats();
+
+    private final AtomicLong opened = new AtomicLong();
+    private final AtomicLong closed = new AtomicLong();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong bytesRead = new AtomicLong();
+    private final AtomicLong bytesWritten = new AtomicLong();
+    private final AtomicLong maxOpen = new AtomicLong();
+    // connections closed since the previous report and what they carried over their lifetime
+    private final AtomicLong closedRequests = new AtomicLong();
+    private final AtomicLong closedBytesRead = new AtomicLong();
+    private final AtomicLong closedBytesWritten = new AtomicLong();
+    private final AtomicLong maxRequestsPerConnection = new AtomicLong();
+
+    // only touched by the reporter thread
+    private long lastOpened;
+    private long lastClosed;
+    private long lastRequests;
+    private long lastBytesRead;
+    private long lastBytesWritten;
+    private long lastReportNanos = System.nanoTime();
+
+    private ConnectionStats() {
+    }
+
+    public static ConnectionStats getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * I/O thread, the channel is connected.
+     */
+    public void opened() {
+        final long open = opened.incrementAndGet() - closed.get();
+        // racy max, good enough for a gauge
+        if (open > maxOpen.get()) {
+            maxOpen.set(open);
+        }
+    }
+
+    /**
+     * I/O thread, the channel is closed.
+     *
+     * @param connectionRequests requests served over the connection
+     */
+    public void closed(long connectionRequests, long connectionBytesRead, long connectionBytesWritten) {
+        closed.incrementAndGet();
+        closedRequests.addAndGet(connectionRequests);
+        closedBytesRead.addAndGet(connectionBytesRead);
+        closedBytesWritten.addAndGet(connectionBytesWritten);
+        if (connectionRequests > maxRequestsPerConnection.get()) {
+            maxRequestsPerConnection.set(connectionRequests);
+        }
+    }
+
+    public void requestServed() {
+        requests.incrementAndGet();
+    }
+
+    public void read(long bytes) {
+        bytesRead.addAndGet(bytes);
+    }
+
+    public void written(long bytes) {
+        bytesWritten.addAndGet(bytes);
+    }
+
+    public long getOpen() {
+        return Math.max(opened.get() - closed.get(), 0);
+    }
+
+    @Override
+    public void report(StatsSink sink) {
+        final long now = System.nanoTime();
+        final double seconds = Math.max(now - lastReportNanos, 1) / 1000000000.0;
+        lastReportNanos = now;
+
+        final long totalOpened = opened.get();
+        final long totalClosed = closed.get();
+        final long totalRequests = requests.get();
+        final long totalBytesRead = bytesRead.get();
+        final long totalBytesWritten = bytesWritten.get();
+        final long intervalOpened = totalOpened - lastOpened;
+        final long intervalClosed = totalClosed - lastClosed;
+        final long intervalRequests = totalRequests - lastRequests;
+        final long intervalBytesRead = totalBytesRead - lastBytesRead;
+        final long intervalBytesWritten = totalBytesWritten - lastBytesWritten;
+        lastOpened = totalOpened;
+        lastClosed = totalClosed;
+        lastRequests = totalRequests;
+        lastBytesRead = totalBytesRead;
+        lastBytesWritten = totalBytesWritten;
+
+        final long requestsOfClosed = closedRequests.getAndSet(0);
+        final long bytesReadOfClosed = closedBytesRead.getAndSet(0);
+        final long bytesWrittenOfClosed = closedBytesWritten.getAndSet(0);
+        final long maxRequests = maxRequestsPerConnection.getAndSet(0);
+        final long max = maxOpen.getAndSet(getOpen());
+
+        final StringBuilder stats = new StringBuilder(256);
+        stats.append("open=").append(getOpen());
+        stats.append(" maxOpen=").append(max);
+        stats.append(" opened=").append(intervalOpened);
+        stats.append(" openRate=").append(rate(intervalOpened, seconds)).append("/s");
+        stats.append(" closed=").append(intervalClosed);
+        stats.append(" closeRate=").append(rate(intervalClosed, seconds)).append("/s");
+        stats.append(" requests=").append(intervalRequests);
+        stats.append(" bytesRead=").append(intervalBytesRead);
+        stats.append(" bytesWritten=").append(intervalBytesWritten);
+        if (intervalClosed > 0) {
+            // per connection figures of the connections closed in this interval
+            stats.append(" requestsPerConnection=").append(requestsOfClosed / intervalClosed);
+            stats.append(" maxRequestsPerConnection=").append(maxRequests);
+            stats.append(" bytesReadPerConnection=").append(bytesReadOfClosed / intervalClosed);
+            stats.append(" bytesWrittenPerConnection=").append(bytesWrittenOfClosed / intervalClosed);
+        }
+        sink.write("connections", stats.toString());
+    }
+
+    private static long rate(long count, double seconds) {
+        return Math.round(count / seconds);
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2014 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.navercorp.pinpoint.plugin.resteasy.metric;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A {@link LatencyHistogram} per endpoint, fed by every request whether or not it is sampled.
+ * <p>
+ * Endpoints are the matched @Path templates, so their number is bounded by the application; once
+ * maxEndpoints distinct ones have been seen the rest share the {@link #OTHER} histogram.
+ */
+public class EndpointHistograms implements StatsSource {
+    /** requests that matched no resource method: 404, 405, or rpc name templates disabled */
+    public static final String UNMATCHED = "<unmatched>";
+    public static final String OTHER = "<other>";
+
+    private final int maxEndpoints;
+    private final int stripes;
+    private final ConcurrentMap<String, LatencyHistogram> histograms = new ConcurrentHashMap<String, LatencyHistogram>();
+    private final AtomicInteger endpoints = new AtomicInteger();
+    private final LatencyHistogram unmatched;
+    private final LatencyHistogram other;
+
+    public EndpointHistograms(int maxEndpoints, int stripes) {
+        this.maxEndpoints = maxEndpoints;
+        this.stripes = stripes;
+        this.unmatched = new LatencyHistogram(stripes);
+        this.other = new LatencyHistogram(stripes);
+    }
+
+    /**
+     * @param endpoint matched @Path template, null when none matched
+     */
+    public void record(String endpoint, long latencyMicros, int status, boolean error) {
+        getHistogram(endpoint).record(latencyMicros, status, error);
+    }
+
+    private LatencyHistogram getHistogram(String endpoint) {
+        if (endpoint == null) {
+            return unmatched;
+        }
+        final LatencyHistogram histogram = histograms.get(endpoint);
+        if (histogram != null) {
+            return histogram;
+        }
+        if (endpoints.incrementAndGet() > maxEndpoints) {
+            endpoints.decrementAndGet();
+            return other;
+        }
+        final LatencyHistogram newHistogram = new LatencyHistogram(stripes);
+        final LatencyHistogram existing = histograms.putIfAbsent(endpoint, newHistogram);
+        if (existing != null) {
+            endpoints.decrementAndGet();
+            return existing;
+        }
+        return newHistogram;
+    }
+
+    @Override
+    public void report(StatsSink sink) {
+        for (Map.Entry<String, LatencyHistogram> entry : histograms.entrySet()) {
+            report(sink, entry.getKey(), entry.getValue());
+        }
+        report(sink, UNMATCHED, unmatched);
+        report(sink, OTHER, other);
+    }
+
+    private static void report(StatsSink sink, String endpoint, LatencyHistogram histogram) {
+        final LatencySnapshot snapshot = histogram.snapshotAndReset();
+        if (snapshot.getCount() != 0) {
+            sink.write("latency " + endpoint, snapshot.toString());
+        }
+    }
+}
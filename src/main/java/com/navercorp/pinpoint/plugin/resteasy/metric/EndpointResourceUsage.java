@@ -0,0 +1,99 @@
+/*
+ * Copyright 2014 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.navercorp.pinpoint.plugin.resteasy.metric;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * CPU time and allocated bytes of sampled requests, summed per endpoint. Bounded like {@link EndpointHistograms}.
+ */
+public class EndpointResourceUsage implements StatsSource {
+    private final int maxEndpoints;
+    private final ConcurrentMap<String, Usage> usages = new ConcurrentHashMap<String, Usage>();
+    private final AtomicInteger endpoints = new AtomicInteger();
+    private final Usage unmatched = new Usage();
+    private final Usage other = new Usage();
+
+    public EndpointResourceUsage(int maxEndpoints) {
+        this.maxEndpoints = maxEndpoints;
+    }
+
+    /**
+     * @param endpoint matched @Path template, null when none matched
+     */
+    public void record(String endpoint, long cpuNanos, long allocatedBytes) {
+        final Usage usage = getUsage(endpoint);
+        usage.count.incrementAndGet();
+        if (cpuNanos > 0) {
+            usage.cpuNanos.addAndGet(cpuNanos);
+        }
+        if (allocatedBytes > 0) {
+            usage.allocatedBytes.addAndGet(allocatedBytes);
+        }
+    }
+
+    private Usage getUsage(String endpoint) {
+        if (endpoint == null) {
+            return unmatched;
+        }
+        final Usage usage = usages.get(endpoint);
+        if (usage != null) {
+            return usage;
+        }
+        if (endpoints.incrementAndGet() > maxEndpoints) {
+            endpoints.decrementAndGet();
+            return other;
+        }
+        final Usage newUsage = new Usage();
+        final Usage existing = usages.putIfAbsent(endpoint, newUsage);
+        if (existing != null) {
+            endpoints.decrementAndGet();
+            return existing;
+        }
+        return newUsage;
+    }
+
+    @Override
+    public void report(StatsSink sink) {
+        for (Map.Entry<String, Usage> entry : usages.entrySet()) {
+            report(sink, entry.getKey(), entry.getValue());
+        }
+        report(sink, EndpointHistograms.UNMATCHED, unmatched);
+        report(sink, EndpointHistograms.OTHER, other);
+    }
+
+    private static void report(StatsSink sink, String endpoint, Usage usage) {
+        final long count = usage.count.getAndSet(0);
+        final long cpuNanos = usage.cpuNanos.getAndSet(0);
+        final long allocatedBytes = usage.allocatedBytes.getAndSet(0);
+        if (count == 0) {
+            return;
+        }
+        sink.write("resource " + endpoint, "sampled=" + count
+                + " cpuMean=" + (cpuNanos / count / 1000) + "us"
+                + " allocMean=" + (allocatedBytes / count) + "B");
+    }
+
+    private static class Usage {
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong cpuNanos = new AtomicLong();
+        private final AtomicLong allocatedBytes = new AtomicLong();
+    }
+}
@@ -0,0 +1,237 @@
+/*
+ * Copyright 2014 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.navercorp.pinpoint.plugin.resteasy.metric;
+
+import com.navercorp.pinpoint.bootstrap.logging.PLogger;
+import com.navercorp.pinpoint.bootstrap.logging.PLoggerFactory;
+import com.navercorp.pinpoint.plugin.resteasy.RestEasyConstants;
+import org.jboss.resteasy.spi.HttpRequest;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Finds RequestDispatcher.service() calls that hold a Netty I/O thread, and with it every connection of that
+ * event loop, for longer than a threshold.
+ * <p>
+ * Each I/O thread owns a slot holding the start time of the request it is running. The request side only
+ * writes its slot on entry and clears it on exit; a daemon thread scans the slots every half threshold and
+ * logs each stall once, while it is still going on, optionally with the stack of the blocked thread.
+ */
+public final class EventLoopWatchdog implements StatsSource {
+    private static final Object LOCK = new Object();
+    private static EventLoopWatchdog instance;
+
+    static final int MAX_STACK_DEPTH = 32;
+
+    private final PLogger logger = PLoggerFactory.getLogger(this.getClass());
+
+    private final long thresholdNanos;
+    private final boolean stackTrace;
+
+    private final int maxThreads;
+    private final AtomicInteger assignedSlots = new AtomicInteger();
+    private final AtomicLongArray startTimes;
+    private final AtomicLongArray reportedStartTimes;
+    private final AtomicReferenceArray<Thread> threads;
+    private final AtomicReferenceArray<HttpRequest> requests;
+    private final ThreadLocal<Slot> slot = new ThreadLocal<Slot>() {
+        @Override
+        protected Slot initialValue() {
+            return newSlot();
+        }
+    };
+
+    private final AtomicLong blocked = new AtomicLong();
+    private final AtomicLong longestBlockedNanos = new AtomicLong();
+
+    private EventLoopWatchdog(long thresholdMillis, boolean stackTrace, int maxThreads) {
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+        this.stackTrace = stackTrace;
+        this.maxThreads = maxThreads;
+        this.startTimes = new AtomicLongArray(maxThreads);
+        this.reportedStartTimes = new AtomicLongArray(maxThreads);
+        this.threads = new AtomicReferenceArray<Thread>(maxThreads);
+        this.requests = new AtomicReferenceArray<HttpRequest>(maxThreads);
+
+        final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                final Thread thread = new Thread(runnable, "Pinpoint-resteasy-eventloop-watchdog");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        final long checkIntervalMillis = Math.max(thresholdMillis / 2, 10);
+        executor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                check();
+            }
+        }, checkIntervalMillis, checkIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param thresholdMillis used by the first call only, as are the other arguments
+     */
+    public static EventLoopWatchdog getInstance(long thresholdMillis, boolean stackTrace, int maxThreads) {
+        synchronized (LOCK) {
+            if (instance == null) {
+                instance = new EventLoopWatchdog(Math.max(thresholdMillis, 1), stackTrace, Math.max(maxThreads, 1));
+            }
+            return instance;
+        }
+    }
+
+    private Slot newSlot() {
+        final int index = assignedSlots.getAndIncrement();
+        if (index >= maxThreads) {
+            assignedSlots.decrementAndGet();
+            logger.info("no watchdog slot left for {}, raise profiler.resteasy.eventloopwatchdog.maxthreads", Thread.currentThread().getName());
+            return new Slot(-1);
+        }
+        threads.set(index, Thread.currentThread());
+        return new Slot(index);
+    }
+
+    /**
+     * Called on an I/O thread when service() starts.
+     */
+    public void enter(HttpRequest request) {
+        final Slot slot = this.slot.get();
+        if (slot.index == -1) {
+            return;
+        }
+        slot.active = true;
+        requests.lazySet(slot.index, request);
+        startTimes.set(slot.index, System.nanoTime());
+    }
+
+    /**
+     * Called on the same thread when service() returns.
+     *
+     * @return microseconds the call held the thread when that is over the threshold, -1 otherwise
+     */
+    public long exit() {
+        final Slot slot = this.slot.get();
+        if (!slot.active) {
+            return -1;
+        }
+        slot.active = false;
+        final long startTime = startTimes.get(slot.index);
+        startTimes.lazySet(slot.index, 0);
+        requests.lazySet(slot.index, null);
+
+        final long elapsed = System.nanoTime() - startTime;
+        if (elapsed < thresholdNanos) {
+            return -1;
+        }
+        // a stall shorter than the check interval may have been missed by the watchdog
+        if (reportedStartTimes.get(slot.index) != startTime) {
+            blocked(elapsed);
+        }
+        return TimeUnit.NANOSECONDS.toMicros(elapsed);
+    }
+
+    private void check() {
+        try {
+            final long now = System.nanoTime();
+            final int slots = assignedSlots.get();
+            for (int i = 0; i < slots; i++) {
+                final long startTime = startTimes.get(i);
+                if (startTime == 0 || now - startTime < thresholdNanos) {
+                    continue;
+                }
+                if (reportedStartTimes.get(i) == startTime) {
+                    continue;
+                }
+                reportedStartTimes.set(i, startTime);
+                blocked(now - startTime);
+                logBlocked(i, now - startTime);
+            }
+        } catch (Throwable th) {
+            if (logger.isWarnEnabled()) {
+                logger.warn("event loop check failed. Caused:{}", th.getMessage(), th);
+            }
+        }
+    }
+
+    private void blocked(long elapsedNanos) {
+        blocked.incrementAndGet();
+        if (elapsedNanos > longestBlockedNanos.get()) {
+            longestBlockedNanos.set(elapsedNanos);
+        }
+    }
+
+    private void logBlocked(int index, long elapsedNanos) {
+        if (!logger.isWarnEnabled()) {
+            return;
+        }
+        final Thread thread = threads.get(index);
+        final String endpoint = getEndpoint(requests.get(index));
+        final long blockedMillis = TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+        if (stackTrace) {
+            logger.warn("event loop blocked. thread:{}, endpoint:{}, blocked:{}ms{}", thread.getName(), endpoint, blockedMillis, toString(thread.getStackTrace()));
+        } else {
+            logger.warn("event loop blocked. thread:{}, endpoint:{}, blocked:{}ms", thread.getName(), endpoint, blockedMillis);
+        }
+    }
+
+    static String getEndpoint(HttpRequest request) {
+        if (request == null) {
+            return null;
+        }
+        final Object template = request.getAttribute(RestEasyConstants.RESOURCE_PATH_TEMPLATE_ATTRIBUTE);
+        if (template != null) {
+            return template.toString();
+        }
+        return request.getUri().getPath();
+    }
+
+    static String toString(StackTraceElement[] stackTrace) {
+        final StringBuilder sb = new StringBuilder(1024);
+        final int depth = Math.min(stackTrace.length, MAX_STACK_DEPTH);
+        for (int i = 0; i < depth; i++) {
+            sb.append("\n\tat ").append(stackTrace[i]);
+        }
+        if (depth < stackTrace.length) {
+            sb.append("\n\t...");
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public void report(StatsSink sink) {
+        final long count = blocked.getAndSet(0);
+        final long longest = longestBlockedNanos.getAndSet(0);
+        sink.write("eventloop", "blocked=" + count + " longest=" + TimeUnit.NANOSECONDS.toMillis(longest) + "ms");
+    }
+
+    private static class Slot {
+        private final int index;
+        private boolean active;
+
+        Slot(int index) {
+            this.index = index;
+        }
+    }
+}
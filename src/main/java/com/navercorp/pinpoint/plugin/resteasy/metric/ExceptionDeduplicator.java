@@ -0,0 +1,174 @@
+/*
+ * Copyright 2014 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.navercorp.pinpoint.plugin.resteasy.metric;
+
+import com.navercorp.pinpoint.bootstrap.context.SpanEventRecorder;
+import com.navercorp.pinpoint.plugin.resteasy.RestEasyConstants;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decides which exceptions are recorded with their message: the first limit ones of each exception class per
+ * endpoint and window. The others are only counted, and the count is reported with the next recorded one and
+ * every stats interval, so an error storm costs one counter increment per request instead of a string each.
+ * The others still mark their span as failed, through {@link #DUPLICATE}, which has no message.
+ * The windows are looked up by endpoint, then by class, so an exception already seen allocates nothing.
+ * <p>
+ * Bounded like {@link EndpointHistograms}: past maxKeys endpoint and class pairs, the rest share one window.
+ */
+public class ExceptionDeduplicator implements StatsSource {
+    public static final int SUPPRESSED = -1;
+    /**
+     * Recorded in place of a suppressed exception, whose class the caller keeps in resteasy.exception.class.
+     */
+    public static final Throwable DUPLICATE = new DuplicateException();
+
+    private final int limit;
+    private final long windowNanos;
+    private final int maxKeys;
+    private final ConcurrentMap<String, ConcurrentMap<Class<?>, Window>> windows = new ConcurrentHashMap<String, ConcurrentMap<Class<?>, Window>>();
+    private final AtomicInteger keys = new AtomicInteger();
+    private final Window other = new Window(System.nanoTime());
+
+    /**
+     * @param windowMillis length of the window the limit applies to
+     */
+    public ExceptionDeduplicator(int limit, long windowMillis, int maxKeys) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("limit must be positive:" + limit);
+        }
+        this.limit = limit;
+        this.windowNanos = windowMillis * 1000000L;
+        this.maxKeys = maxKeys;
+    }
+
+    /**
+     * @param endpoint matched @Path template, null when none matched
+     * @return {@link #SUPPRESSED} when the exception should only be counted, otherwise the number of identical
+     * exceptions suppressed since the previous one recorded
+     */
+    public int admit(String endpoint, Class<?> exceptionClass) {
+        final long now = System.nanoTime();
+        final Window window = getWindow(endpoint != null ? endpoint : EndpointHistograms.UNMATCHED, exceptionClass, now);
+        int carried = 0;
+        final long start = window.start.get();
+        if (now - start >= windowNanos && window.start.compareAndSet(start, now)) {
+            carried = window.suppressed.getAndSet(0);
+            window.recorded.set(0);
+        }
+        if (window.recorded.incrementAndGet() <= limit) {
+            return carried;
+        }
+        // lost a race for the first slots of the new window, the next recorded one carries the count
+        window.suppressed.addAndGet(carried + 1);
+        window.reported.incrementAndGet();
+        return SUPPRESSED;
+    }
+
+    /**
+     * Records the exception on the span event, with its message when admitted and as {@link #DUPLICATE} otherwise,
+     * so that every failing span keeps its error mark.
+     *
+     * @param endpoint matched @Path template, null when none matched
+     */
+    public void record(SpanEventRecorder recorder, String endpoint, Throwable error) {
+        final int suppressed = admit(endpoint, error.getClass());
+        if (suppressed == SUPPRESSED) {
+            recorder.recordException(DUPLICATE);
+            return;
+        }
+        recorder.recordException(error);
+        if (suppressed > 0) {
+            recorder.recordAttribute(RestEasyConstants.EXCEPTION_SUPPRESSED, suppressed);
+        }
+    }
+
+    private Window getWindow(String endpoint, Class<?> exceptionClass, long now) {
+        ConcurrentMap<Class<?>, Window> classWindows = windows.get(endpoint);
+        if (classWindows != null) {
+            final Window window = classWindows.get(exceptionClass);
+            if (window != null) {
+                return window;
+            }
+        }
+        if (keys.incrementAndGet() > maxKeys) {
+            keys.decrementAndGet();
+            return other;
+        }
+        if (classWindows == null) {
+            final ConcurrentMap<Class<?>, Window> newClassWindows = new ConcurrentHashMap<Class<?>, Window>();
+            classWindows = windows.putIfAbsent(endpoint, newClassWindows);
+            if (classWindows == null) {
+                classWindows = newClassWindows;
+            }
+        }
+        final Window newWindow = new Window(now);
+        final Window existing = classWindows.putIfAbsent(exceptionClass, newWindow);
+        if (existing != null) {
+            keys.decrementAndGet();
+            return existing;
+        }
+        return newWindow;
+    }
+
+    @Override
+    public void report(StatsSink sink) {
+        for (Map.Entry<String, ConcurrentMap<Class<?>, Window>> endpointEntry : windows.entrySet()) {
+            for (Map.Entry<Class<?>, Window> entry : endpointEntry.getValue().entrySet()) {
+                report(sink, endpointEntry.getKey() + ' ' + entry.getKey().getName(), entry.getValue());
+            }
+        }
+        report(sink, EndpointHistograms.OTHER, other);
+    }
+
+    private static void report(StatsSink sink, String key, Window window) {
+        final long suppressed = window.reported.getAndSet(0);
+        if (suppressed == 0) {
+            return;
+        }
+        sink.write("exception " + key, "suppressed=" + suppressed);
+    }
+
+    /**
+     * Shared, so neither a message nor a stack trace.
+     */
+    static final class DuplicateException extends RuntimeException {
+        DuplicateException() {
+            super();
+        }
+
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    }
+
+    private static class Window {
+        private final AtomicLong start;
+        private final AtomicInteger recorded = new AtomicInteger();
+        private final AtomicInteger suppressed = new AtomicInteger();
+        // suppressed since the previous report
+        private final AtomicLong reported = new AtomicLong();
+
+        Window(long start) {
+            this.start = new AtomicLong(start);
+        }
+    }
+}
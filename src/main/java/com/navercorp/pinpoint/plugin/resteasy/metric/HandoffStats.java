@@ -0,0 +1,72 @@
+/*
+ * Copyright 2014 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.navercorp.pinpoint.plugin.resteasy.metric;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Requests decoded on a Netty I/O thread and picked up by RequestDispatcher.service() after waiting in the
+ * executor of NettyJaxrsServer, and how long they waited.
+ * <p>
+ * No absolute backlog is kept: a request that never reaches service(), e.g. on a closed connection, would leave
+ * it high for good. The growth reported is decoded minus dispatched over the interval, so such a request only
+ * counts in the interval it was decoded in; a steadily positive figure means the executor is falling behind.
+ */
+public final class HandoffStats implements StatsSource {
+    private static final HandoffStats INSTANCE = new HandoffStats();
+
+    private final AtomicLong decoded = new AtomicLong();
+    private final AtomicLong dispatched = new AtomicLong();
+    private final LatencyHistogram queueWait = new LatencyHistogram(4);
+
+    private HandoffStats() {
+    }
+
+    public static HandoffStats getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * I/O thread, the request has been decoded.
+     */
+    public void decoded() {
+        decoded.incrementAndGet();
+    }
+
+    /**
+     * Worker thread, service() has started.
+     */
+    public void dispatched(long queueWaitMicros) {
+        dispatched.incrementAndGet();
+        queueWait.record(queueWaitMicros, 0, false);
+    }
+
+    @Override
+    public void report(StatsSink sink) {
+        final LatencySnapshot snapshot = queueWait.snapshotAndReset();
+        final long in = decoded.getAndSet(0);
+        final long out = dispatched.getAndSet(0);
+        final StringBuilder stats = new StringBuilder(160);
+        stats.append("decoded=").append(in);
+        stats.append(" dispatched=").append(out);
+        stats.append(" growth=").append(in - out);
+        stats.append(" waitCount=").append(snapshot.getCount());
+        stats.append(" waitMean=").append(snapshot.getMeanMicros()).append("us");
+        stats.append(" waitP99=").append(snapshot.getValueAtQuantile(0.99)).append("us");
+        stats.append(" waitMax=").append(snapshot.getMaxMicros()).append("us");
+        sink.write("handoff", stats.toString());
+    }
+}
@@ -0,0 +1,324 @@
+/*
+ * Copyright 2014 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.navercorp.pinpoint.plugin.resteasy.metric;
+
+import com.navercorp.pinpoint.bootstrap.logging.PLogger;
+import com.navercorp.pinpoint.bootstrap.logging.PLoggerFactory;
+import com.navercorp.pinpoint.plugin.resteasy.RestEasyConstants;
+import org.jboss.resteasy.spi.HttpRequest;
+
+import java.lang.ref.WeakReference;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The requests currently inside RequestDispatcher.service(), on any thread.
+ * <p>
+ * Same slot table as {@link EventLoopWatchdog}, for every dispatching thread: service() runs one request at a
+ * time per thread, so each thread owns a preallocated slot and only writes it on entry and exit. A daemon thread
+ * scans the table every scan interval, counts the requests per endpoint for the concurrency gauges, and logs
+ * each request running past the threshold once, with its trace id and optionally the stack of its thread.
+ * <p>
+ * Unlike event loop threads, worker threads come and go, so slots only hold their thread weakly and the scanner
+ * hands the slot of a thread that has died back to the next new thread.
+ */
+public final class InFlightRequests implements StatsSource {
+    private static final Object LOCK = new Object();
+    private static InFlightRequests instance;
+
+    private final PLogger logger = PLoggerFactory.getLogger(this.getClass());
+
+    private final long thresholdNanos;
+    private final boolean stackTrace;
+    private final int maxEndpoints;
+
+    private final int maxThreads;
+    private final AtomicInteger assignedSlots = new AtomicInteger();
+    private final AtomicLongArray startTimes;
+    private final AtomicLongArray reportedStartTimes;
+    private final AtomicReferenceArray<WeakReference<Thread>> threads;
+    private final ConcurrentLinkedQueue<Integer> freeSlots = new ConcurrentLinkedQueue<Integer>();
+    private final AtomicReferenceArray<HttpRequest> requests;
+    private final AtomicReferenceArray<String> transactionIds;
+    private final ThreadLocal<Slot> slot = new ThreadLocal<Slot>() {
+        @Override
+        protected Slot initialValue() {
+            return newSlot();
+        }
+    };
+
+    // written by the scanner thread, read by the stats reporter
+    private volatile Map<String, Integer> concurrency = Collections.emptyMap();
+    private final ConcurrentMap<String, AtomicInteger> maxConcurrency = new ConcurrentHashMap<String, AtomicInteger>();
+    private final AtomicInteger maxTotal = new AtomicInteger();
+    private final AtomicLong stuck = new AtomicLong();
+    private final AtomicLong longestNanos = new AtomicLong();
+
+    private InFlightRequests(long thresholdMillis, boolean stackTrace, int maxThreads, int maxEndpoints, long scanIntervalMillis) {
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+        this.stackTrace = stackTrace;
+        this.maxEndpoints = maxEndpoints;
+        this.maxThreads = maxThreads;
+        this.startTimes = new AtomicLongArray(maxThreads);
+        this.reportedStartTimes = new AtomicLongArray(maxThreads);
+        this.threads = new AtomicReferenceArray<WeakReference<Thread>>(maxThreads);
+        this.requests = new AtomicReferenceArray<HttpRequest>(maxThreads);
+        this.transactionIds = new AtomicReferenceArray<String>(maxThreads);
+
+        final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                final Thread thread = new Thread(runnable, "Pinpoint-resteasy-inflight-scanner");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                scan();
+            }
+        }, scanIntervalMillis, scanIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param thresholdMillis used by the first call only, as are the other arguments
+     */
+    public static InFlightRequests getInstance(long thresholdMillis, boolean stackTrace, int maxThreads, int maxEndpoints, long scanIntervalMillis) {
+        synchronized (LOCK) {
+            if (instance == null) {
+                instance = new InFlightRequests(Math.max(thresholdMillis, 1), stackTrace, Math.max(maxThreads, 1), maxEndpoints, Math.max(scanIntervalMillis, 10));
+            }
+            return instance;
+        }
+    }
+
+    private Slot newSlot() {
+        final Integer free = freeSlots.poll();
+        if (free != null) {
+            threads.set(free, new WeakReference<Thread>(Thread.currentThread()));
+            return new Slot(free);
+        }
+        final int index = assignedSlots.getAndIncrement();
+        if (index >= maxThreads) {
+            assignedSlots.decrementAndGet();
+            logger.info("no in-flight slot left for {}, raise profiler.resteasy.inflight.maxthreads", Thread.currentThread().getName());
+            return new Slot(-1);
+        }
+        threads.set(index, new WeakReference<Thread>(Thread.currentThread()));
+        return new Slot(index);
+    }
+
+    /**
+     * A dead thread never writes its slot again, so the slot can be cleared and reused. The thread reference is
+     * dropped first so that the slot is reclaimed once, and only published as free once it is clear.
+     */
+    private void reclaimIfDead(int index) {
+        final WeakReference<Thread> reference = threads.get(index);
+        if (reference == null) {
+            // free, or not published yet by newSlot()
+            return;
+        }
+        final Thread thread = reference.get();
+        if (thread != null && thread.isAlive()) {
+            return;
+        }
+        if (!threads.compareAndSet(index, reference, null)) {
+            return;
+        }
+        startTimes.set(index, 0);
+        reportedStartTimes.set(index, 0);
+        requests.set(index, null);
+        transactionIds.set(index, null);
+        freeSlots.offer(index);
+    }
+
+    /**
+     * Called when service() starts.
+     */
+    public void enter(HttpRequest request) {
+        final Slot slot = this.slot.get();
+        if (slot.index == -1) {
+            return;
+        }
+        slot.active = true;
+        requests.lazySet(slot.index, request);
+        transactionIds.lazySet(slot.index, null);
+        startTimes.set(slot.index, System.nanoTime());
+    }
+
+    /**
+     * Called on the same thread once the request is known to be sampled.
+     */
+    public void setTransactionId(String transactionId) {
+        final Slot slot = this.slot.get();
+        if (slot.active) {
+            transactionIds.lazySet(slot.index, transactionId);
+        }
+    }
+
+    /**
+     * Called on the same thread when service() returns.
+     */
+    public void exit() {
+        final Slot slot = this.slot.get();
+        if (!slot.active) {
+            return;
+        }
+        slot.active = false;
+        startTimes.lazySet(slot.index, 0);
+        requests.lazySet(slot.index, null);
+        transactionIds.lazySet(slot.index, null);
+    }
+
+    private void scan() {
+        try {
+            final long now = System.nanoTime();
+            final Map<String, Integer> counts = new HashMap<String, Integer>();
+            int total = 0;
+            final int slots = assignedSlots.get();
+            for (int i = 0; i < slots; i++) {
+                reclaimIfDead(i);
+                final long startTime = startTimes.get(i);
+                if (startTime == 0) {
+                    continue;
+                }
+                final HttpRequest request = requests.get(i);
+                total++;
+                final String endpoint = getGaugeEndpoint(request);
+                final Integer count = counts.get(endpoint);
+                counts.put(endpoint, count == null ? 1 : count + 1);
+
+                final long elapsed = now - startTime;
+                if (elapsed >= thresholdNanos && reportedStartTimes.get(i) != startTime) {
+                    reportedStartTimes.set(i, startTime);
+                    stuck(elapsed);
+                    logStuck(i, request, elapsed);
+                }
+            }
+            this.concurrency = counts;
+            updateMax(counts, total);
+        } catch (Throwable th) {
+            if (logger.isWarnEnabled()) {
+                logger.warn("in-flight scan failed. Caused:{}", th.getMessage(), th);
+            }
+        }
+    }
+
+    /**
+     * The @Path template once the request has been matched, bounded like {@link EndpointHistograms}.
+     */
+    private String getGaugeEndpoint(HttpRequest request) {
+        final Object template = request != null ? request.getAttribute(RestEasyConstants.RESOURCE_PATH_TEMPLATE_ATTRIBUTE) : null;
+        if (template == null) {
+            return EndpointHistograms.UNMATCHED;
+        }
+        final String endpoint = template.toString();
+        // UNMATCHED and OTHER take two entries on top of maxEndpoints
+        if (!maxConcurrency.containsKey(endpoint) && maxConcurrency.size() >= maxEndpoints) {
+            return EndpointHistograms.OTHER;
+        }
+        return endpoint;
+    }
+
+    private void updateMax(Map<String, Integer> counts, int total) {
+        if (total > maxTotal.get()) {
+            maxTotal.set(total);
+        }
+        for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+            AtomicInteger max = maxConcurrency.get(entry.getKey());
+            if (max == null) {
+                max = new AtomicInteger();
+                final AtomicInteger existing = maxConcurrency.putIfAbsent(entry.getKey(), max);
+                if (existing != null) {
+                    max = existing;
+                }
+            }
+            if (entry.getValue() > max.get()) {
+                max.set(entry.getValue());
+            }
+        }
+    }
+
+    private void stuck(long elapsedNanos) {
+        stuck.incrementAndGet();
+        if (elapsedNanos > longestNanos.get()) {
+            longestNanos.set(elapsedNanos);
+        }
+    }
+
+    private void logStuck(int index, HttpRequest request, long elapsedNanos) {
+        if (!logger.isWarnEnabled()) {
+            return;
+        }
+        final WeakReference<Thread> reference = threads.get(index);
+        final Thread thread = reference != null ? reference.get() : null;
+        if (thread == null) {
+            return;
+        }
+        final String endpoint = EventLoopWatchdog.getEndpoint(request);
+        final String transactionId = transactionIds.get(index);
+        final long runningMillis = TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+        if (stackTrace) {
+            logger.warn("request stuck. thread:{}, endpoint:{}, transactionId:{}, running:{}ms{}", thread.getName(), endpoint, transactionId, runningMillis,
+                    EventLoopWatchdog.toString(thread.getStackTrace()));
+        } else {
+            logger.warn("request stuck. thread:{}, endpoint:{}, transactionId:{}, running:{}ms", thread.getName(), endpoint, transactionId, runningMillis);
+        }
+    }
+
+    @Override
+    public void report(StatsSink sink) {
+        final Map<String, Integer> current = this.concurrency;
+        int total = 0;
+        for (Integer count : current.values()) {
+            total += count;
+        }
+        for (Map.Entry<String, AtomicInteger> entry : maxConcurrency.entrySet()) {
+            final int max = entry.getValue().getAndSet(0);
+            final Integer count = current.get(entry.getKey());
+            if (max == 0 && count == null) {
+                continue;
+            }
+            sink.write("inflight " + entry.getKey(), "current=" + (count != null ? count : 0) + " max=" + max);
+        }
+        final long stuckCount = stuck.getAndSet(0);
+        final long longest = longestNanos.getAndSet(0);
+        sink.write("inflight", "current=" + total + " max=" + maxTotal.getAndSet(total) + " stuck=" + stuckCount
+                + " longestStuck=" + TimeUnit.NANOSECONDS.toMillis(longest) + "ms");
+    }
+
+    private static class Slot {
+        private final int index;
+        private boolean active;
+
+        Slot(int index) {
+            this.index = index;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2014 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.navercorp.pinpoint.plugin.resteasy.metric;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Log-linear latency histogram in microseconds: every power of two is split into 8 buckets, which keeps
+ * the relative error under 12.5% from 1us up to about 12 days.
+ * <p>
+ * Counters are striped by thread, one block of buckets per stripe, so recording is two uncontended
+ * {@link AtomicLongArray} increments and never allocates. {@link #snapshotAndReset()} sums and clears the
+ * stripes; counts recorded while it runs land in either this snapshot or the next one, never in neither.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 40;
+    static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    static final int STATUS_ERROR = 0;
+    static final int STATUS_UNKNOWN = 6;
+    private static final int LATENCY_SUM = 7;
+    static final int COUNTERS = 8;
+
+    private final int stripeMask;
+    private final AtomicLongArray buckets;
+    private final AtomicLongArray counters;
+
+    /**
+     * @param stripes number of counter stripes, rounded up to a power of 2
+     */
+    public LatencyHistogram(int stripes) {
+        int size = 1;
+        while (size < stripes && size < 64) {
+            size <<= 1;
+        }
+        this.stripeMask = size - 1;
+        this.buckets = new AtomicLongArray(size * BUCKETS);
+        this.counters = new AtomicLongArray(size * COUNTERS);
+    }
+
+    /**
+     * @param latencyMicros request latency
+     * @param status        HTTP status, 0 when unknown
+     * @param error         whether the request ended with an exception
+     */
+    public void record(long latencyMicros, int status, boolean error) {
+        final int stripe = (int) Thread.currentThread().getId() & stripeMask;
+        buckets.incrementAndGet(stripe * BUCKETS + bucketIndex(latencyMicros));
+
+        final int counterBase = stripe * COUNTERS;
+        counters.incrementAndGet(counterBase + statusIndex(status, error));
+        counters.addAndGet(counterBase + LATENCY_SUM, Math.max(latencyMicros, 0));
+    }
+
+    static int statusIndex(int status, boolean error) {
+        if (error) {
+            return STATUS_ERROR;
+        }
+        final int statusClass = status / 100;
+        if (statusClass < 1 || statusClass > 5) {
+            return STATUS_UNKNOWN;
+        }
+        return statusClass;
+    }
+
+    static int bucketIndex(long value) {
+        if (value < SUB_BUCKETS) {
+            return value < 0 ? 0 : (int) value;
+        }
+        final int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+        final int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * @return the largest value that falls into the bucket
+     */
+    static long highestValue(int bucketIndex) {
+        if (bucketIndex < SUB_BUCKETS) {
+            return bucketIndex;
+        }
+        final int exponent = bucketIndex / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        final int subBucket = bucketIndex & (SUB_BUCKETS - 1);
+        final long lowest = (long) (SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS);
+        return lowest + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+
+    public LatencySnapshot snapshotAndReset() {
+        final long[] mergedBuckets = new long[BUCKETS];
+        final long[] mergedCounters = new long[COUNTERS];
+        final int stripes = stripeMask + 1;
+        for (int stripe = 0; stripe < stripes; stripe++) {
+            final int bucketBase = stripe * BUCKETS;
+            for (int i = 0; i < BUCKETS; i++) {
+                if (buckets.get(bucketBase + i) != 0) {
+                    mergedBuckets[i] += buckets.getAndSet(bucketBase + i, 0);
+                }
+            }
+            final int counterBase = stripe * COUNTERS;
+            for (int i = 0; i < COUNTERS; i++) {
+                mergedCounters[i] += counters.getAndSet(counterBase + i, 0);
+            }
+        }
+        return new LatencySnapshot(mergedBuckets, mergedCounters, mergedCounters[LATENCY_SUM]);
+    }
+}
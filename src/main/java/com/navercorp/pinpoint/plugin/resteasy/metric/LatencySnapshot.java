@@ -0,0 +1,104 @@
+/*
+ * Copyright 2014 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.navercorp.pinpoint.plugin.resteasy.metric;
+
+/**
+ * Counts of one {@link LatencyHistogram} interval.
+ */
+public class LatencySnapshot {
+    private final long[] buckets;
+    private final long[] statusCounts;
+    private final long latencySum;
+    private final long count;
+
+    LatencySnapshot(long[] buckets, long[] statusCounts, long latencySum) {
+        this.buckets = buckets;
+        this.statusCounts = statusCounts;
+        this.latencySum = latencySum;
+        long count = 0;
+        for (long bucket : buckets) {
+            count += bucket;
+        }
+        this.count = count;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @param statusClass 1 to 5 for 1xx to 5xx
+     */
+    public long getStatusCount(int statusClass) {
+        if (statusClass < 1 || statusClass > 5) {
+            throw new IllegalArgumentException("statusClass:" + statusClass);
+        }
+        return statusCounts[statusClass];
+    }
+
+    public long getErrorCount() {
+        return statusCounts[LatencyHistogram.STATUS_ERROR];
+    }
+
+    public long getMeanMicros() {
+        return count == 0 ? 0 : latencySum / count;
+    }
+
+    /**
+     * @param quantile 0.0 to 1.0
+     * @return upper bound of the bucket holding the quantile, in microseconds
+     */
+    public long getValueAtQuantile(double quantile) {
+        if (count == 0) {
+            return 0;
+        }
+        final long rank = Math.max(1, (long) Math.ceil(quantile * count));
+        long seen = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            seen += buckets[i];
+            if (seen >= rank) {
+                return LatencyHistogram.highestValue(i);
+            }
+        }
+        return getMaxMicros();
+    }
+
+    public long getMaxMicros() {
+        for (int i = buckets.length - 1; i >= 0; i--) {
+            if (buckets[i] != 0) {
+                return LatencyHistogram.highestValue(i);
+            }
+        }
+        return 0;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder(128);
+        sb.append("count=").append(count);
+        for (int statusClass = 1; statusClass <= 5; statusClass++) {
+            sb.append(' ').append(statusClass).append("xx=").append(statusCounts[statusClass]);
+        }
+        sb.append(" error=").append(getErrorCount());
+        sb.append(" mean=").append(getMeanMicros()).append("us");
+        sb.append(" p50=").append(getValueAtQuantile(0.5)).append("us");
+        sb.append(" p90=").append(getValueAtQuantile(0.9)).append("us");
+        sb.append(" p99=").append(getValueAtQuantile(0.99)).append("us");
+        sb.append(" p999=").append(getValueAtQuantile(0.999)).append("us");
+        sb.append(" max=").append(getMaxMicros()).append("us");
+        return sb.toString();
+    }
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright 2014 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.navercorp.pinpoint.plugin.resteasy.metric;
+
+import com.navercorp.pinpoint.bootstrap.logging.PLogger;
+import com.navercorp.pinpoint.bootstrap.logging.PLoggerFactory;
+
+/**
+ * Writes each snapshot as one INFO line of the agent log, so it can be grepped or shipped by the log collector.
+ */
+public class LoggerStatsSink implements StatsSink {
+    private final PLogger logger = PLoggerFactory.getLogger(this.getClass());
+
+    @Override
+    public void write(String name, String stats) {
+        if (logger.isInfoEnabled()) {
+            logger.info("[resteasy-stats] {} {}", name, stats);
+        }
+    }
+}
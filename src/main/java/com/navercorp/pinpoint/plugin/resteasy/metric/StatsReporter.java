@@ -0,0 +1,119 @@
+/*
+ * Copyright 2014 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.navercorp.pinpoint.plugin.resteasy.metric;
+
+import com.navercorp.pinpoint.bootstrap.logging.PLogger;
+import com.navercorp.pinpoint.bootstrap.logging.PLoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One daemon thread per agent that snapshots every registered {@link StatsSource} at a fixed interval.
+ * <p>
+ * The plugin API has no hook into the agent stat batch, so snapshots go to {@link StatsSink}s instead,
+ * the agent log by default.
+ */
+public final class StatsReporter {
+    private static final Object LOCK = new Object();
+    private static StatsReporter instance;
+
+    private final PLogger logger = PLoggerFactory.getLogger(this.getClass());
+
+    private final CopyOnWriteArrayList<StatsSource> sources = new CopyOnWriteArrayList<StatsSource>();
+    private final List<StatsSink> sinks = new CopyOnWriteArrayList<StatsSink>();
+    private final StatsSink sink = new StatsSinks(sinks);
+    private final ScheduledExecutorService executor;
+
+    private StatsReporter(long intervalMillis) {
+        this.sinks.add(new LoggerStatsSink());
+        this.executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                final Thread thread = new Thread(runnable, "Pinpoint-resteasy-stats-reporter");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.executor.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                report();
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param intervalMillis used by the first call only, profiler.resteasy.stats.interval
+     */
+    public static StatsReporter getInstance(long intervalMillis) {
+        synchronized (LOCK) {
+            if (instance == null) {
+                instance = new StatsReporter(Math.max(intervalMillis, 1000));
+            }
+            return instance;
+        }
+    }
+
+    /**
+     * Registering the same source again has no effect.
+     */
+    public void register(StatsSource source) {
+        if (source == null) {
+            throw new NullPointerException("source must not be null");
+        }
+        sources.addIfAbsent(source);
+    }
+
+    public void addSink(StatsSink sink) {
+        if (sink == null) {
+            throw new NullPointerException("sink must not be null");
+        }
+        sinks.add(sink);
+    }
+
+    private void report() {
+        for (StatsSource source : sources) {
+            try {
+                source.report(sink);
+            } catch (Throwable th) {
+                // keep the schedule alive, a failing source must not stop the others
+                if (logger.isWarnEnabled()) {
+                    logger.warn("stats report failed. Caused:{}", th.getMessage(), th);
+                }
+            }
+        }
+    }
+
+    private static class StatsSinks implements StatsSink {
+        private final List<StatsSink> sinks;
+
+        StatsSinks(List<StatsSink> sinks) {
+            this.sinks = sinks;
+        }
+
+        @Override
+        public void write(String name, String stats) {
+            for (StatsSink sink : sinks) {
+                sink.write(name, stats);
+            }
+        }
+    }
+}
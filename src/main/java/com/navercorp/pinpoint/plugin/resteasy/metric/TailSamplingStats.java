@@ -0,0 +1,54 @@
+/*
+ * Copyright 2014 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.navercorp.pinpoint.plugin.resteasy.metric;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Unsampled requests the tail sampler promoted to a trace, and the ones it wanted to promote but dropped at
+ * profiler.resteasy.tailsampling.limit. One instance for the agent, since a reload replaces the sampler.
+ */
+public final class TailSamplingStats implements StatsSource {
+    private static final TailSamplingStats INSTANCE = new TailSamplingStats();
+
+    private final AtomicLong promoted = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    private TailSamplingStats() {
+    }
+
+    public static TailSamplingStats getInstance() {
+        return INSTANCE;
+    }
+
+    public void promoted() {
+        promoted.incrementAndGet();
+    }
+
+    public void dropped() {
+        dropped.incrementAndGet();
+    }
+
+    @Override
+    public void report(StatsSink sink) {
+        final long promotedCount = promoted.getAndSet(0);
+        final long droppedCount = dropped.getAndSet(0);
+        if (promotedCount == 0 && droppedCount == 0) {
+            return;
+        }
+        sink.write("tailsampling", "promoted=" + promotedCount + " dropped=" + droppedCount);
+    }
+}
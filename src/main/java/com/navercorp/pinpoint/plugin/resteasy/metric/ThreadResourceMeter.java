@@ -0,0 +1,109 @@
+/*
+ * Copyright 2014 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.navercorp.pinpoint.plugin.resteasy.metric;
+
+import com.navercorp.pinpoint.bootstrap.logging.PLogger;
+import com.navercorp.pinpoint.bootstrap.logging.PLoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * CPU time and heap allocation of the current thread between {@link #start()} and {@link #stop()}.
+ * <p>
+ * CPU time comes from {@link ThreadMXBean#getCurrentThreadCpuTime()}; allocated bytes from
+ * com.sun.management.ThreadMXBean, which only HotSpot based JVMs provide. Either is reported as -1 when
+ * the JVM does not support it.
+ */
+public class ThreadResourceMeter {
+    public static final int CPU_TIME = 0;
+    public static final int ALLOCATED_BYTES = 1;
+    private static final int STARTED = 2;
+
+    private final PLogger logger = PLoggerFactory.getLogger(this.getClass());
+
+    private final ThreadMXBean threadMXBean;
+    private final boolean cpuTimeSupported;
+    private final AllocatedBytes allocatedBytes;
+    private final ThreadLocal<long[]> startValues = new ThreadLocal<long[]>() {
+        @Override
+        protected long[] initialValue() {
+            return new long[3];
+        }
+    };
+
+    public ThreadResourceMeter() {
+        this.threadMXBean = ManagementFactory.getThreadMXBean();
+        this.cpuTimeSupported = threadMXBean.isCurrentThreadCpuTimeSupported() && threadMXBean.isThreadCpuTimeEnabled();
+        this.allocatedBytes = AllocatedBytes.create(threadMXBean);
+        if (logger.isInfoEnabled()) {
+            logger.info("ThreadResourceMeter cpuTime:{}, allocatedBytes:{}", cpuTimeSupported, allocatedBytes != null);
+        }
+    }
+
+    public void start() {
+        final long[] values = startValues.get();
+        values[CPU_TIME] = cpuTimeSupported ? threadMXBean.getCurrentThreadCpuTime() : -1;
+        values[ALLOCATED_BYTES] = allocatedBytes != null ? allocatedBytes.get() : -1;
+        values[STARTED] = 1;
+    }
+
+    /**
+     * @return this thread's array holding CPU nanoseconds at {@link #CPU_TIME} and allocated bytes at
+     * {@link #ALLOCATED_BYTES} since {@link #start()}, -1 when unsupported; null when {@link #start()} was not
+     * called on this thread. Valid until the next start() on this thread.
+     */
+    public long[] stop() {
+        final long[] values = startValues.get();
+        if (values[STARTED] == 0) {
+            return null;
+        }
+        values[STARTED] = 0;
+        values[CPU_TIME] = values[CPU_TIME] != -1 ? threadMXBean.getCurrentThreadCpuTime() - values[CPU_TIME] : -1;
+        values[ALLOCATED_BYTES] = values[ALLOCATED_BYTES] != -1 ? allocatedBytes.get() - values[ALLOCATED_BYTES] : -1;
+        return values;
+    }
+
+    /**
+     * Kept apart so that com.sun.management is only resolved on JVMs that have it.
+     */
+    private static class AllocatedBytes {
+        private final com.sun.management.ThreadMXBean threadMXBean;
+
+        private AllocatedBytes(com.sun.management.ThreadMXBean threadMXBean) {
+            this.threadMXBean = threadMXBean;
+        }
+
+        static AllocatedBytes create(ThreadMXBean threadMXBean) {
+            try {
+                if (!(threadMXBean instanceof com.sun.management.ThreadMXBean)) {
+                    return null;
+                }
+                final com.sun.management.ThreadMXBean sunThreadMXBean = (com.sun.management.ThreadMXBean) threadMXBean;
+                if (!sunThreadMXBean.isThreadAllocatedMemorySupported() || !sunThreadMXBean.isThreadAllocatedMemoryEnabled()) {
+                    return null;
+                }
+                return new AllocatedBytes(sunThreadMXBean);
+            } catch (LinkageError e) {
+                return null;
+            }
+        }
+
+        long get() {
+            return threadMXBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+    }
+}
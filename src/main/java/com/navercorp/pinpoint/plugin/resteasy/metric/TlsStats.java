@@ -0,0 +1,101 @@
+/*
+ * Copyright 2014 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.navercorp.pinpoint.plugin.resteasy.metric;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * TLS handshakes of the NettyJaxrsServer connections: how long they take, how many fail, how many resume a
+ * session, and which protocol and cipher suite they settle on.
+ */
+public final class TlsStats implements StatsSource {
+    private static final TlsStats INSTANCE = new TlsStats();
+    private static final int MAX_SUITES = 64;
+
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong resumed = new AtomicLong();
+    private final LatencyHistogram handshakes = new LatencyHistogram(4);
+    private final ConcurrentMap<String, AtomicLong> suites = new ConcurrentHashMap<String, AtomicLong>();
+    private final AtomicLong otherSuites = new AtomicLong();
+
+    private TlsStats() {
+    }
+
+    public static TlsStats getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * I/O thread, the handshake has completed.
+     */
+    public void handshake(long durationMicros, String protocol, String cipherSuite, boolean resumedSession) {
+        handshakes.record(durationMicros, 0, false);
+        if (resumedSession) {
+            resumed.incrementAndGet();
+        }
+        getSuite(protocol + ' ' + cipherSuite).incrementAndGet();
+    }
+
+    public void handshakeFailed() {
+        failed.incrementAndGet();
+    }
+
+    private AtomicLong getSuite(String suite) {
+        final AtomicLong count = suites.get(suite);
+        if (count != null) {
+            return count;
+        }
+        if (suites.size() >= MAX_SUITES) {
+            return otherSuites;
+        }
+        final AtomicLong newCount = new AtomicLong();
+        final AtomicLong existing = suites.putIfAbsent(suite, newCount);
+        return existing != null ? existing : newCount;
+    }
+
+    @Override
+    public void report(StatsSink sink) {
+        final LatencySnapshot snapshot = handshakes.snapshotAndReset();
+        final long resumedCount = resumed.getAndSet(0);
+        final long failedCount = failed.getAndSet(0);
+        if (snapshot.getCount() == 0 && failedCount == 0) {
+            return;
+        }
+        final StringBuilder stats = new StringBuilder(160);
+        stats.append("handshakes=").append(snapshot.getCount());
+        stats.append(" failed=").append(failedCount);
+        stats.append(" resumed=").append(resumedCount);
+        stats.append(" resumptionRate=").append(snapshot.getCount() > 0 ? resumedCount * 100 / snapshot.getCount() : 0).append('%');
+        stats.append(" handshakeMean=").append(snapshot.getMeanMicros()).append("us");
+        stats.append(" handshakeP99=").append(snapshot.getValueAtQuantile(0.99)).append("us");
+        stats.append(" handshakeMax=").append(snapshot.getMaxMicros()).append("us");
+        sink.write("tls", stats.toString());
+
+        for (Map.Entry<String, AtomicLong> entry : suites.entrySet()) {
+            final long count = entry.getValue().getAndSet(0);
+            if (count != 0) {
+                sink.write("tls " + entry.getKey(), "handshakes=" + count);
+            }
+        }
+        final long other = otherSuites.getAndSet(0);
+        if (other != 0) {
+            sink.write("tls " + EndpointHistograms.OTHER, "handshakes=" + other);
+        }
+    }
+}
@@ -0,0 +1,299 @@
+/*
+ * Copyright 2014 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.navercorp.pinpoint.plugin.resteasy.requestlog;
+
+import com.navercorp.pinpoint.bootstrap.logging.PLogger;
+import com.navercorp.pinpoint.bootstrap.logging.PLoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A fixed-size record per request in a memory-mapped ring file, independent of the collector.
+ * <p>
+ * Writers take a sequence with one atomic increment and put the fields straight into the mapped pages: no
+ * intermediate buffer, no system call, and no lock on the request path but the one taken once per new endpoint.
+ * Two writers reach the same slot only when the ring wraps while one of them is still writing; the slot is
+ * claimed with a compare-and-set first, and the record of the writer that loses is dropped rather than mixed
+ * into the other one. The operating system writes the pages back, so the file survives a crash of the JVM, and
+ * a restarted agent carries on after the newest record. The file is decoded offline by {@link RequestLogReader}.
+ * <p>
+ * Layout, big endian:
+ * <pre>
+ * header      64 bytes                  magic, version, record size, capacity, endpoint slots, endpoint entry size
+ * endpoints   endpoint slots * 128      id -&gt; @Path template, id 0 unmatched, id 1 every endpoint past the limit
+ * records     capacity * 160            see the RECORD_ offsets
+ * </pre>
+ * A record is valid when its marker equals its sequence + 1; the marker is cleared first and written last, so a
+ * reader checks it again once it has read the record.
+ */
+public final class RequestLog {
+    static final int MAGIC = 0x50505251;
+    static final int VERSION = 1;
+
+    static final int HEADER_SIZE = 64;
+    static final int HEADER_MAGIC = 0;
+    static final int HEADER_VERSION = 4;
+    static final int HEADER_RECORD_SIZE = 8;
+    static final int HEADER_CAPACITY = 12;
+    static final int HEADER_ENDPOINT_SLOTS = 16;
+    static final int HEADER_ENDPOINT_ENTRY_SIZE = 20;
+
+    static final int ENDPOINT_ENTRY_SIZE = 128;
+    static final int ENDPOINT_UNMATCHED = 0;
+    static final int ENDPOINT_OTHER = 1;
+    static final int ENDPOINT_RESERVED = 2;
+
+    static final int RECORD_SIZE = 160;
+    static final int RECORD_MARKER = 0;
+    static final int RECORD_TIMESTAMP = 8;
+    static final int RECORD_SPAN_ID = 16;
+    static final int RECORD_LATENCY = 24;
+    static final int RECORD_ENDPOINT = 28;
+    static final int RECORD_STATUS = 32;
+    static final int RECORD_FLAGS = 34;
+    static final int RECORD_REMOTE_ADDRESS = 35;
+    static final int REMOTE_ADDRESS_SIZE = 48;
+    static final int RECORD_TRANSACTION_ID = RECORD_REMOTE_ADDRESS + REMOTE_ADDRESS_SIZE;
+    static final int TRANSACTION_ID_SIZE = RECORD_SIZE - RECORD_TRANSACTION_ID;
+
+    static final int FLAG_ERROR = 1;
+    static final int FLAG_SAMPLED = 1 << 1;
+    static final int FLAG_SUSPENDED = 1 << 2;
+
+    private static final Object LOCK = new Object();
+    private static RequestLog instance;
+
+    private final PLogger logger = PLoggerFactory.getLogger(this.getClass());
+
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private final int endpointSlots;
+    private final int recordsOffset;
+    private final AtomicLong cursor;
+    // 1 while a writer owns the slot
+    private final AtomicIntegerArray writing;
+    private final ConcurrentMap<String, Integer> endpointIds = new ConcurrentHashMap<String, Integer>();
+    private final AtomicInteger nextEndpointId;
+
+    RequestLog(File file, int capacity, int maxEndpoints) throws IOException {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive:" + capacity);
+        }
+        this.capacity = capacity;
+        this.writing = new AtomicIntegerArray(capacity);
+        this.endpointSlots = Math.max(maxEndpoints, 0) + ENDPOINT_RESERVED;
+        this.recordsOffset = HEADER_SIZE + endpointSlots * ENDPOINT_ENTRY_SIZE;
+        final long size = recordsOffset + (long) capacity * RECORD_SIZE;
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("capacity too large for one mapping:" + capacity);
+        }
+
+        final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            final boolean reuse = randomAccessFile.length() == size;
+            randomAccessFile.setLength(size);
+            // the mapping stays valid once the file is closed; pages are faulted in by the first write to each
+            this.buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+            if (reuse && hasSameLayout()) {
+                this.nextEndpointId = new AtomicInteger(loadEndpoints());
+                this.cursor = new AtomicLong(findNextSequence());
+            } else {
+                format();
+                this.nextEndpointId = new AtomicInteger(ENDPOINT_RESERVED);
+                this.cursor = new AtomicLong();
+            }
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    /**
+     * @param path used by the first call only
+     * @return null when the file cannot be mapped
+     */
+    public static RequestLog getInstance(String path, int capacity, int maxEndpoints) {
+        synchronized (LOCK) {
+            if (instance == null) {
+                try {
+                    instance = new RequestLog(new File(path), capacity, maxEndpoints);
+                } catch (Exception e) {
+                    PLoggerFactory.getLogger(RequestLog.class).warn("request log {} not available. Caused:{}", path, e.getMessage(), e);
+                    return null;
+                }
+            }
+            return instance;
+        }
+    }
+
+    private boolean hasSameLayout() {
+        return buffer.getInt(HEADER_MAGIC) == MAGIC
+                && buffer.getInt(HEADER_VERSION) == VERSION
+                && buffer.getInt(HEADER_RECORD_SIZE) == RECORD_SIZE
+                && buffer.getInt(HEADER_CAPACITY) == capacity
+                && buffer.getInt(HEADER_ENDPOINT_SLOTS) == endpointSlots
+                && buffer.getInt(HEADER_ENDPOINT_ENTRY_SIZE) == ENDPOINT_ENTRY_SIZE;
+    }
+
+    private void format() {
+        for (int offset = 0; offset < recordsOffset; offset += 8) {
+            buffer.putLong(offset, 0L);
+        }
+        for (int slot = 0; slot < capacity; slot++) {
+            buffer.putLong(recordsOffset + slot * RECORD_SIZE + RECORD_MARKER, 0L);
+        }
+        buffer.putInt(HEADER_MAGIC, MAGIC);
+        buffer.putInt(HEADER_VERSION, VERSION);
+        buffer.putInt(HEADER_RECORD_SIZE, RECORD_SIZE);
+        buffer.putInt(HEADER_CAPACITY, capacity);
+        buffer.putInt(HEADER_ENDPOINT_SLOTS, endpointSlots);
+        buffer.putInt(HEADER_ENDPOINT_ENTRY_SIZE, ENDPOINT_ENTRY_SIZE);
+        writeEndpoint(ENDPOINT_UNMATCHED, "UNMATCHED");
+        writeEndpoint(ENDPOINT_OTHER, "OTHER");
+        if (logger.isInfoEnabled()) {
+            logger.info("request log formatted. capacity:{}, endpointSlots:{}", capacity, endpointSlots);
+        }
+    }
+
+    /**
+     * @return the next free endpoint id
+     */
+    private int loadEndpoints() {
+        int id = ENDPOINT_RESERVED;
+        for (; id < endpointSlots; id++) {
+            final int offset = HEADER_SIZE + id * ENDPOINT_ENTRY_SIZE;
+            final int length = buffer.get(offset) & 0xff;
+            if (length == 0) {
+                break;
+            }
+            endpointIds.put(RequestLogReader.getAscii(buffer, offset + 1, length), id);
+        }
+        return id;
+    }
+
+    private long findNextSequence() {
+        long next = 0;
+        for (int slot = 0; slot < capacity; slot++) {
+            next = Math.max(next, buffer.getLong(recordsOffset + slot * RECORD_SIZE + RECORD_MARKER));
+        }
+        return next;
+    }
+
+    /**
+     * @param summary  started by the interceptor, ignored when not active
+     * @param endpoint matched @Path template, null when none matched
+     * @param status   response status, 0 when unknown
+     */
+    public void write(RequestSummary summary, String endpoint, int status, boolean error, boolean suspended) {
+        if (!summary.isActive()) {
+            return;
+        }
+        final long latencyMicros = Math.max((System.nanoTime() - summary.getStartNanos()) / 1000, 0);
+        final String transactionId = summary.getTransactionId();
+        int flags = 0;
+        if (error) {
+            flags |= FLAG_ERROR;
+        }
+        if (transactionId != null) {
+            flags |= FLAG_SAMPLED;
+        }
+        if (suspended) {
+            flags |= FLAG_SUSPENDED;
+        }
+
+        final long sequence = cursor.getAndIncrement();
+        final int slot = (int) (sequence % capacity);
+        if (!writing.compareAndSet(slot, 0, 1)) {
+            // a writer a whole ring behind is still on this slot
+            return;
+        }
+        final int offset = recordsOffset + slot * RECORD_SIZE;
+        buffer.putLong(offset + RECORD_MARKER, 0L);
+        buffer.putLong(offset + RECORD_TIMESTAMP, summary.getStartTimeMillis());
+        buffer.putLong(offset + RECORD_SPAN_ID, summary.getSpanId());
+        buffer.putInt(offset + RECORD_LATENCY, (int) Math.min(latencyMicros, Integer.MAX_VALUE));
+        buffer.putInt(offset + RECORD_ENDPOINT, getEndpointId(endpoint));
+        buffer.putShort(offset + RECORD_STATUS, (short) status);
+        buffer.put(offset + RECORD_FLAGS, (byte) flags);
+        putAscii(buffer, offset + RECORD_REMOTE_ADDRESS, REMOTE_ADDRESS_SIZE, summary.getRemoteAddress());
+        putAscii(buffer, offset + RECORD_TRANSACTION_ID, TRANSACTION_ID_SIZE, transactionId);
+        buffer.putLong(offset + RECORD_MARKER, sequence + 1);
+        writing.set(slot, 0);
+    }
+
+    private int getEndpointId(String endpoint) {
+        if (endpoint == null) {
+            return ENDPOINT_UNMATCHED;
+        }
+        final Integer id = endpointIds.get(endpoint);
+        if (id != null) {
+            return id;
+        }
+        return addEndpoint(endpoint);
+    }
+
+    /**
+     * Once per endpoint: serialized so that an id is never handed out twice.
+     */
+    private int addEndpoint(String endpoint) {
+        synchronized (endpointIds) {
+            final Integer id = endpointIds.get(endpoint);
+            if (id != null) {
+                return id;
+            }
+            if (nextEndpointId.get() >= endpointSlots) {
+                return ENDPOINT_OTHER;
+            }
+            final int newId = nextEndpointId.getAndIncrement();
+            writeEndpoint(newId, endpoint);
+            endpointIds.put(endpoint, newId);
+            return newId;
+        }
+    }
+
+    private void writeEndpoint(int id, String endpoint) {
+        putAscii(buffer, HEADER_SIZE + id * ENDPOINT_ENTRY_SIZE, ENDPOINT_ENTRY_SIZE, endpoint);
+    }
+
+    /**
+     * Length prefixed, cut at size - 1 characters; non-ASCII characters become '?'.
+     */
+    private static void putAscii(ByteBuffer buffer, int offset, int size, String value) {
+        if (value == null) {
+            buffer.put(offset, (byte) 0);
+            return;
+        }
+        final int length = Math.min(value.length(), size - 1);
+        buffer.put(offset, (byte) length);
+        for (int i = 0; i < length; i++) {
+            final char c = value.charAt(i);
+            buffer.put(offset + 1 + i, (byte) (c < 0x80 ? c : '?'));
+        }
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2014 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.navercorp.pinpoint.plugin.resteasy.requestlog;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+import static com.navercorp.pinpoint.plugin.resteasy.requestlog.RequestLog.*;
+
+/**
+ * Prints the records of a {@link RequestLog} file, oldest first, one tab separated line each:
+ * <pre>
+ * time  latency(us)  status  flags  endpoint  remote address  transaction id  span id
+ * </pre>
+ * Flags are E (error), S (sampled) and A (suspended by @Suspended AsyncResponse).
+ * Depends on nothing but the JDK, so it runs without the agent:
+ * <pre>
+ * java -cp pinpoint-resteasy-plugin-1.6.0.jar com.navercorp.pinpoint.plugin.resteasy.requestlog.RequestLogReader &lt;file&gt;
+ * </pre>
+ * The file is mapped read-only and may be read while the agent is writing it: a record overwritten while it was
+ * being read is skipped.
+ */
+public final class RequestLogReader {
+
+    private RequestLogReader() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("usage: RequestLogReader <file>");
+            System.exit(2);
+        }
+        final ByteBuffer buffer = map(new File(args[0]));
+        if (buffer.getInt(HEADER_MAGIC) != MAGIC || buffer.getInt(HEADER_VERSION) != VERSION) {
+            System.err.println(args[0] + " is not a request log");
+            System.exit(1);
+        }
+        print(buffer, System.out);
+    }
+
+    static ByteBuffer map(File file) throws IOException {
+        final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            return randomAccessFile.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, randomAccessFile.length());
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    static void print(ByteBuffer buffer, PrintStream out) {
+        final int recordSize = buffer.getInt(HEADER_RECORD_SIZE);
+        final int capacity = buffer.getInt(HEADER_CAPACITY);
+        final int endpointSlots = buffer.getInt(HEADER_ENDPOINT_SLOTS);
+        final int endpointEntrySize = buffer.getInt(HEADER_ENDPOINT_ENTRY_SIZE);
+        final int recordsOffset = HEADER_SIZE + endpointSlots * endpointEntrySize;
+
+        final String[] endpoints = new String[endpointSlots];
+        for (int id = 0; id < endpointSlots; id++) {
+            final int offset = HEADER_SIZE + id * endpointEntrySize;
+            endpoints[id] = getAscii(buffer, offset + 1, buffer.get(offset) & 0xff);
+        }
+
+        long newest = 0;
+        for (int slot = 0; slot < capacity; slot++) {
+            newest = Math.max(newest, buffer.getLong(recordsOffset + slot * recordSize + RECORD_MARKER));
+        }
+        final SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSSZ");
+        final StringBuilder line = new StringBuilder(256);
+        // markers are sequence + 1, the oldest record still in the ring is capacity behind the newest
+        for (long marker = Math.max(newest - capacity, 0) + 1; marker <= newest; marker++) {
+            final int offset = recordsOffset + (int) ((marker - 1) % capacity) * recordSize;
+            if (buffer.getLong(offset + RECORD_MARKER) != marker) {
+                // overwritten, or being written
+                continue;
+            }
+            final int endpoint = buffer.getInt(offset + RECORD_ENDPOINT);
+            final int flags = buffer.get(offset + RECORD_FLAGS);
+            line.setLength(0);
+            line.append(format.format(new Date(buffer.getLong(offset + RECORD_TIMESTAMP))));
+            line.append('\t').append(buffer.getInt(offset + RECORD_LATENCY));
+            line.append('\t').append(buffer.getShort(offset + RECORD_STATUS));
+            line.append('\t');
+            line.append((flags & FLAG_ERROR) != 0 ? 'E' : '-');
+            line.append((flags & FLAG_SAMPLED) != 0 ? 'S' : '-');
+            line.append((flags & FLAG_SUSPENDED) != 0 ? 'A' : '-');
+            line.append('\t').append(endpoint >= 0 && endpoint < endpoints.length ? endpoints[endpoint] : String.valueOf(endpoint));
+            line.append('\t').append(getAscii(buffer, offset + RECORD_REMOTE_ADDRESS + 1, buffer.get(offset + RECORD_REMOTE_ADDRESS) & 0xff));
+            line.append('\t').append(getAscii(buffer, offset + RECORD_TRANSACTION_ID + 1, buffer.get(offset + RECORD_TRANSACTION_ID) & 0xff));
+            line.append('\t').append(buffer.getLong(offset + RECORD_SPAN_ID));
+            if (buffer.getLong(offset + RECORD_MARKER) != marker) {
+                // a writer took the slot over while the fields were read
+                continue;
+            }
+            out.println(line);
+        }
+    }
+
+    static String getAscii(ByteBuffer buffer, int offset, int length) {
+        final char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = (char) (buffer.get(offset + i) & 0x7f);
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2014 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.navercorp.pinpoint.plugin.resteasy.requestlog;
+
+/**
+ * What {@link RequestLog} writes about a request besides its outcome, gathered while the root span is built.
+ * One instance per dispatching thread, reused; a suspended request takes a {@link #copy()} along.
+ */
+public final class RequestSummary {
+    private boolean active;
+    private long startTimeMillis;
+    private long startNanos;
+    private String remoteAddress;
+    private String transactionId;
+    private long spanId;
+
+    public void start(String remoteAddress) {
+        this.active = true;
+        this.startTimeMillis = System.currentTimeMillis();
+        this.startNanos = System.nanoTime();
+        this.remoteAddress = remoteAddress;
+        this.transactionId = null;
+        this.spanId = 0;
+    }
+
+    /**
+     * Called for sampled requests only.
+     */
+    public void setTrace(String transactionId, long spanId) {
+        this.transactionId = transactionId;
+        this.spanId = spanId;
+    }
+
+    public RequestSummary copy() {
+        final RequestSummary copy = new RequestSummary();
+        copy.active = active;
+        copy.startTimeMillis = startTimeMillis;
+        copy.startNanos = startNanos;
+        copy.remoteAddress = remoteAddress;
+        copy.transactionId = transactionId;
+        copy.spanId = spanId;
+        return copy;
+    }
+
+    public void clear() {
+        this.active = false;
+        this.remoteAddress = null;
+        this.transactionId = null;
+    }
+
+    /**
+     * @return false for requests that were excluded before the summary was started
+     */
+    public boolean isActive() {
+        return active;
+    }
+
+    public long getStartTimeMillis() {
+        return startTimeMillis;
+    }
+
+    public long getStartNanos() {
+        return startNanos;
+    }
+
+    public String getRemoteAddress() {
+        return remoteAddress;
+    }
+
+    /**
+     * @return null when the request was not sampled
+     */
+    public String getTransactionId() {
+        return transactionId;
+    }
+
+    public long getSpanId() {
+        return spanId;
+    }
+}
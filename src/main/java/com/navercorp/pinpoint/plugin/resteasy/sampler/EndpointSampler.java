@@ -0,0 +1,159 @@
+/*
+ * Copyright 2014 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.navercorp.pinpoint.plugin.resteasy.sampler;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caps the number of traced requests per second, per endpoint and in total.
+ * <p>
+ * An endpoint is the first pathDepth segments of the request path, so the decision can be made before the
+ * request is matched to a resource. Endpoints are hashed onto a fixed table of {@link RateLimiter}s, which
+ * keeps the sampler allocation-free and bounded; two endpoints sharing a stripe share its budget.
+ * <p>
+ * Once a second the total budget is split between the stripes that saw traffic: each active endpoint may use
+ * min(endpointLimit, totalLimit / activeEndpoints). A single hot endpoint can therefore not starve the others,
+ * and tracing overhead stays flat however much the traffic grows.
+ * <p>
+ * Only requests the agent sampler has already accepted ask for a permit, so the limits are traced requests,
+ * not candidates. Requests continuing a caller's trace are not limited: cutting them would break the
+ * distributed trace in the middle.
+ */
+public class EndpointSampler {
+    private static final long ONE_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final RateLimiter[] stripes;
+    private final int mask;
+    private final RateLimiter total = new RateLimiter();
+    private final int pathDepth;
+
+    private final long endpointInterval;
+    private final long totalInterval;
+    private final int burst;
+    private final long totalBurstTolerance;
+
+    private final long epoch = System.nanoTime();
+    private final AtomicLong nextShare = new AtomicLong();
+    private volatile long sharedEndpointInterval;
+
+    /**
+     * @param endpointLimit traced requests per second per endpoint
+     * @param totalLimit    traced requests per second over all endpoints
+     * @param burst         permits that may be handed out at once after an idle period
+     * @param pathDepth     number of path segments making up the endpoint
+     * @param stripeCount   size of the limiter table, rounded up to a power of 2
+     */
+    public EndpointSampler(int endpointLimit, int totalLimit, int burst, int pathDepth, int stripeCount) {
+        if (endpointLimit <= 0) {
+            throw new IllegalArgumentException("endpointLimit must be positive:" + endpointLimit);
+        }
+        if (totalLimit <= 0) {
+            throw new IllegalArgumentException("totalLimit must be positive:" + totalLimit);
+        }
+        this.endpointInterval = ONE_SECOND / endpointLimit;
+        this.totalInterval = ONE_SECOND / totalLimit;
+        this.burst = Math.max(burst, 1);
+        this.totalBurstTolerance = totalInterval * (this.burst - 1);
+        this.pathDepth = Math.max(pathDepth, 1);
+        this.sharedEndpointInterval = endpointInterval;
+
+        int size = 1;
+        while (size < stripeCount && size < (1 << 16)) {
+            size <<= 1;
+        }
+        this.stripes = new RateLimiter[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new RateLimiter();
+        }
+        this.mask = size - 1;
+    }
+
+    /**
+     * @param requestPath raw request path
+     * @return true when the request may be traced
+     */
+    public boolean isSampled(String requestPath) {
+        return isSampled(requestPath, System.nanoTime() - epoch);
+    }
+
+    /**
+     * @param now nanoseconds since the sampler was created
+     */
+    boolean isSampled(String requestPath, long now) {
+        share(now);
+
+        final long interval = sharedEndpointInterval;
+        final RateLimiter endpoint = stripes[hash(requestPath) & mask];
+        if (!endpoint.tryAcquire(now, interval, interval * (burst - 1))) {
+            return false;
+        }
+        if (!total.tryAcquire(now, totalInterval, totalBurstTolerance)) {
+            // the endpoint permit was not used, leave it to the next request of the endpoint
+            endpoint.release(interval);
+            return false;
+        }
+        return true;
+    }
+
+    private void share(long now) {
+        final long next = nextShare.get();
+        if (now < next || !nextShare.compareAndSet(next, now + ONE_SECOND)) {
+            return;
+        }
+        int active = 0;
+        for (RateLimiter stripe : stripes) {
+            if (stripe.isActive(now, ONE_SECOND)) {
+                active++;
+            }
+        }
+        this.sharedEndpointInterval = Math.max(endpointInterval, totalInterval * Math.max(active, 1));
+    }
+
+    /**
+     * Hash of the first pathDepth segments of the path, without building the substring.
+     */
+    private int hash(String requestPath) {
+        if (requestPath == null) {
+            return 0;
+        }
+        int h = 0;
+        int segments = 0;
+        final int length = requestPath.length();
+        for (int i = 0; i < length; i++) {
+            final char c = requestPath.charAt(i);
+            if (c == '/' && i != 0 && ++segments == pathDepth) {
+                break;
+            }
+            h = 31 * h + c;
+        }
+        // spread the low bits, as HashMap does
+        h ^= (h >>> 20) ^ (h >>> 12);
+        return h ^ (h >>> 7) ^ (h >>> 4);
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("EndpointSampler{");
+        sb.append("endpointInterval=").append(endpointInterval);
+        sb.append(", totalInterval=").append(totalInterval);
+        sb.append(", burst=").append(burst);
+        sb.append(", pathDepth=").append(pathDepth);
+        sb.append(", stripes=").append(stripes.length);
+        sb.append('}');
+        return sb.toString();
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2014 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.navercorp.pinpoint.plugin.resteasy.sampler;
+
+import com.navercorp.pinpoint.plugin.resteasy.RequestHeaders;
+
+/**
+ * What an unsampled request needs to become a root span later: its start time and the objects the root span
+ * fields are read from. One instance per thread is reused by {@link TailSampler}, so holding it costs no allocation.
+ */
+public final class ProvisionalTrace {
+    private boolean active;
+    private long startTimeMillis;
+    private long startNanos;
+    private Object channelHandlerContext;
+    private RequestHeaders headers;
+    private String reason;
+
+    ProvisionalTrace() {
+    }
+
+    void start(Object channelHandlerContext, RequestHeaders headers) {
+        this.active = true;
+        this.startTimeMillis = System.currentTimeMillis();
+        this.startNanos = System.nanoTime();
+        this.channelHandlerContext = channelHandlerContext;
+        this.headers = headers;
+    }
+
+    void clear() {
+        this.active = false;
+        this.channelHandlerContext = null;
+        this.headers = null;
+        this.reason = null;
+    }
+
+    void setReason(String reason) {
+        this.reason = reason;
+    }
+
+    boolean isActive() {
+        return active;
+    }
+
+    public long getStartTimeMillis() {
+        return startTimeMillis;
+    }
+
+    public long getStartNanos() {
+        return startNanos;
+    }
+
+    public Object getChannelHandlerContext() {
+        return channelHandlerContext;
+    }
+
+    public RequestHeaders getHeaders() {
+        return headers;
+    }
+
+    /**
+     * @return one of the TailSampler.REASON_ values
+     */
+    public String getReason() {
+        return reason;
+    }
+}
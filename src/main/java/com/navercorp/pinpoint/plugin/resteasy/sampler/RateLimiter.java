@@ -0,0 +1,64 @@
+/*
+ * Copyright 2014 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.navercorp.pinpoint.plugin.resteasy.sampler;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket in its "generic cell rate" form: the whole bucket is one theoretical arrival time,
+ * updated with a single compare-and-set per permit.
+ */
+final class RateLimiter {
+    private final AtomicLong theoreticalArrivalTime = new AtomicLong();
+    /**
+     * last time a request asked for a permit, refreshed at most every {@link #SEEN_RESOLUTION} nanoseconds
+     */
+    private volatile long lastSeen = Long.MIN_VALUE / 2;
+
+    static final long SEEN_RESOLUTION = 100L * 1000 * 1000;
+
+    /**
+     * @param now            nanoseconds, on the same clock for every call
+     * @param interval       nanoseconds between two permits at the steady rate
+     * @param burstTolerance how far ahead of the steady rate permits may be handed out, interval * (burst - 1)
+     */
+    boolean tryAcquire(long now, long interval, long burstTolerance) {
+        if (now - lastSeen > SEEN_RESOLUTION) {
+            lastSeen = now;
+        }
+        while (true) {
+            final long arrivalTime = theoreticalArrivalTime.get();
+            final long base = Math.max(arrivalTime, now);
+            if (base - now > burstTolerance) {
+                return false;
+            }
+            if (theoreticalArrivalTime.compareAndSet(arrivalTime, base + interval)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Gives back a permit taken by {@link #tryAcquire(long, long, long)} that ended up unused.
+     */
+    void release(long interval) {
+        theoreticalArrivalTime.addAndGet(-interval);
+    }
+
+    boolean isActive(long now, long window) {
+        return now - lastSeen <= window;
+    }
+}
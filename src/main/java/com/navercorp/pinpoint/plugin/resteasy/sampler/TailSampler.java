@@ -0,0 +1,132 @@
+/*
+ * Copyright 2014 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.navercorp.pinpoint.plugin.resteasy.sampler;
+
+import com.navercorp.pinpoint.plugin.resteasy.RequestHeaders;
+import com.navercorp.pinpoint.plugin.resteasy.metric.TailSamplingStats;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the requests the agent sampler rejected in a per-thread {@link ProvisionalTrace} and picks, once they
+ * are done, the ones worth a trace: slower than the threshold, failed with an exception or answered with a 5xx.
+ * Promotions go through a {@link RateLimiter}, like {@link EndpointSampler}: during an outage nearly every
+ * request qualifies, and the ones past the limit are only counted in {@link TailSamplingStats}.
+ * <p>
+ * Promoted requests get a transaction id of their own. Its sequence starts at 2^62 so that it never meets the
+ * sequence of the agent's id generator. The counter is shared by every instance, since a configuration reload
+ * builds a new sampler while transaction ids issued by the previous one are still around.
+ */
+public class TailSampler {
+    public static final String REASON_SLOW = "slow";
+    public static final String REASON_ERROR = "error";
+    public static final String REASON_SERVER_ERROR = "5xx";
+
+    private static final long SEQUENCE_BASE = 1L << 62;
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+
+    private final long thresholdNanos;
+    private final RateLimiter limiter = new RateLimiter();
+    private final long interval;
+    private final long burstTolerance;
+    private final long epoch = System.nanoTime();
+    private final TailSamplingStats stats = TailSamplingStats.getInstance();
+    private final ThreadLocal<ProvisionalTrace> provisionalTraces = new ThreadLocal<ProvisionalTrace>() {
+        @Override
+        protected ProvisionalTrace initialValue() {
+            return new ProvisionalTrace();
+        }
+    };
+
+    /**
+     * @param thresholdMillis requests taking at least this long are promoted
+     * @param limit           promotions per second
+     * @param burst           promotions that may be made at once after a quiet period
+     */
+    public TailSampler(int thresholdMillis, int limit, int burst) {
+        if (thresholdMillis < 0) {
+            throw new IllegalArgumentException("negative thresholdMillis:" + thresholdMillis);
+        }
+        if (limit <= 0) {
+            throw new IllegalArgumentException("limit must be positive:" + limit);
+        }
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+        this.interval = TimeUnit.SECONDS.toNanos(1) / limit;
+        this.burstTolerance = interval * (Math.max(burst, 1) - 1);
+    }
+
+    public void start(Object channelHandlerContext, RequestHeaders headers) {
+        provisionalTraces.get().start(channelHandlerContext, headers);
+    }
+
+    /**
+     * Ends the provisional trace of the current thread.
+     *
+     * @return the trace to promote, valid until the next {@link #start(Object, RequestHeaders)} on this thread,
+     * null when there is none or the request is not worth keeping
+     */
+    public ProvisionalTrace finish(int status, Throwable throwable) {
+        final ProvisionalTrace provisionalTrace = provisionalTraces.get();
+        if (!provisionalTrace.isActive()) {
+            return null;
+        }
+        final String reason = getReason(provisionalTrace, status, throwable);
+        if (reason == null) {
+            provisionalTrace.clear();
+            return null;
+        }
+        if (!limiter.tryAcquire(System.nanoTime() - epoch, interval, burstTolerance)) {
+            stats.dropped();
+            provisionalTrace.clear();
+            return null;
+        }
+        stats.promoted();
+        provisionalTrace.setReason(reason);
+        return provisionalTrace;
+    }
+
+    /**
+     * Drops the provisional trace of the current thread, e.g. when the request is suspended.
+     */
+    public void discard() {
+        provisionalTraces.get().clear();
+    }
+
+    public void release(ProvisionalTrace provisionalTrace) {
+        provisionalTrace.clear();
+    }
+
+    /**
+     * @return why the request is promoted, null when it is not
+     */
+    private String getReason(ProvisionalTrace provisionalTrace, int status, Throwable throwable) {
+        if (throwable != null) {
+            return REASON_ERROR;
+        }
+        if (status >= 500) {
+            return REASON_SERVER_ERROR;
+        }
+        if (System.nanoTime() - provisionalTrace.getStartNanos() >= thresholdNanos) {
+            return REASON_SLOW;
+        }
+        return null;
+    }
+
+    public long nextTransactionSequence() {
+        return SEQUENCE_BASE + SEQUENCE.incrementAndGet();
+    }
+}
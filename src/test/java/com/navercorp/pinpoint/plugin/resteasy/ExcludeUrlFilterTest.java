@@ -0,0 +1,88 @@
+/*
+ * Copyright 2014 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.navercorp.pinpoint.plugin.resteasy;
+
+import com.navercorp.pinpoint.bootstrap.config.ExcludePathFilter;
+import com.navercorp.pinpoint.bootstrap.config.Filter;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the compiled filter against ExcludePathFilter, which profiler.resteasy.excludeurl used before.
+ */
+public class ExcludeUrlFilterTest {
+
+    private static final String[] PATHS = {
+            "/", "/health", "/health/", "/healthz", "/health/live",
+            "/metrics", "/metrics/", "/metrics/jvm", "/metrics/jvm/gc", "/metricsx", "/metricsx/jvm",
+            "/static/app.js", "/static/css/app.css", "/static/app.jsx", "/static/js/vendor/app.js",
+            "/api/v1/orders", "/api/v12/orders", "/api/v1/orders/8812", "/api/v1x/orders",
+            "/orders/8812", "/orders/8812/items", "/internal/a/status", "/internal/a/b/status", "/internal/status",
+            "/a.b", "/aXb", "/favicon.ico", "",
+    };
+
+    @Test
+    public void exactPaths() {
+        assertSameAsExcludePathFilter("/health,/favicon.ico, /a.b");
+    }
+
+    @Test
+    public void prefixPaths() {
+        assertSameAsExcludePathFilter("/metrics/**,/health/**");
+    }
+
+    @Test
+    public void wildcardPaths() {
+        assertSameAsExcludePathFilter("/static/**/*.js,/api/v?/orders/**,/internal/**/status,/orders/*,**/*.css");
+    }
+
+    @Test
+    public void mixedPaths() {
+        assertSameAsExcludePathFilter("/health,/metrics/**,/static/*.js,/api/v?/orders");
+    }
+
+    @Test
+    public void cacheKeepsDecisions() {
+        final Filter<String> filter = new ExcludeUrlFilter("/static/**/*.js", 2);
+        for (int i = 0; i < 3; i++) {
+            assertTrue(filter.filter("/static/a.js"));
+            assertTrue(filter.filter("/static/b.js"));
+            assertTrue(filter.filter("/static/c.js"));
+            assertFalse(filter.filter("/static/c.css"));
+            assertFalse(filter.filter("/orders/" + i));
+        }
+    }
+
+    @Test
+    public void nullIsNotFiltered() {
+        assertFalse(new ExcludeUrlFilter("/health,/metrics/**,/static/*.js", 16).filter(null));
+    }
+
+    private static void assertSameAsExcludePathFilter(String excludeUrls) {
+        final Filter<String> expected = new ExcludePathFilter(excludeUrls);
+        final Filter<String> cached = new ExcludeUrlFilter(excludeUrls, 1024);
+        final Filter<String> uncached = new ExcludeUrlFilter(excludeUrls, 0);
+        for (int i = 0; i < 2; i++) {
+            for (String path : PATHS) {
+                assertEquals(excludeUrls + " " + path, expected.filter(path), cached.filter(path));
+                assertEquals(excludeUrls + " " + path, expected.filter(path), uncached.filter(path));
+            }
+        }
+    }
+}
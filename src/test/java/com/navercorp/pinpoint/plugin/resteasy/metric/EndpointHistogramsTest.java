@@ -0,0 +1,80 @@
+/*
+ * Copyright 2014 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.navercorp.pinpoint.plugin.resteasy.metric;
+
+import org.junit.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class EndpointHistogramsTest {
+
+    @Test
+    public void recordsPerEndpoint() {
+        final EndpointHistograms histograms = new EndpointHistograms(8, 1);
+        histograms.record("/users/{id}", 10, 200, false);
+        histograms.record("/users/{id}", 20, 200, false);
+        histograms.record("/orders", 30, 500, false);
+        histograms.record(null, 5, 404, false);
+
+        final Map<String, String> reported = report(histograms);
+        assertEquals(3, reported.size());
+        assertTrue(reported.get("latency /users/{id}").startsWith("count=2 "));
+        assertTrue(reported.get("latency /orders").contains(" 5xx=1 "));
+        assertTrue(reported.get("latency " + EndpointHistograms.UNMATCHED).contains(" 4xx=1 "));
+    }
+
+    @Test
+    public void endpointsPastTheLimitShareOther() {
+        final EndpointHistograms histograms = new EndpointHistograms(2, 1);
+        histograms.record("/a", 10, 200, false);
+        histograms.record("/b", 10, 200, false);
+        histograms.record("/c", 10, 200, false);
+        histograms.record("/d", 10, 200, false);
+        // a known endpoint keeps its own histogram
+        histograms.record("/a", 10, 200, false);
+
+        final Map<String, String> reported = report(histograms);
+        assertTrue(reported.get("latency /a").startsWith("count=2 "));
+        assertTrue(reported.get("latency /b").startsWith("count=1 "));
+        assertFalse(reported.containsKey("latency /c"));
+        assertTrue(reported.get("latency " + EndpointHistograms.OTHER).startsWith("count=2 "));
+    }
+
+    @Test
+    public void reportsOnlyWhatWasRecordedSinceTheLastReport() {
+        final EndpointHistograms histograms = new EndpointHistograms(8, 1);
+        histograms.record("/a", 10, 200, false);
+        report(histograms);
+
+        assertTrue(report(histograms).isEmpty());
+    }
+
+    private static Map<String, String> report(StatsSource source) {
+        final Map<String, String> reported = new LinkedHashMap<String, String>();
+        source.report(new StatsSink() {
+            @Override
+            public void write(String name, String stats) {
+                reported.put(name, stats);
+            }
+        });
+        return reported;
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2014 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.navercorp.pinpoint.plugin.resteasy.metric;
+
+import com.navercorp.pinpoint.bootstrap.context.SpanEventRecorder;
+import com.navercorp.pinpoint.plugin.resteasy.RestEasyConstants;
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class ExceptionDeduplicatorTest {
+
+    @Test
+    public void admitsLimitPerEndpointAndClass() {
+        final ExceptionDeduplicator deduplicator = new ExceptionDeduplicator(2, 60000, 16);
+
+        assertEquals(0, deduplicator.admit("/orders/{id}", IllegalStateException.class));
+        assertEquals(0, deduplicator.admit("/orders/{id}", IllegalStateException.class));
+        assertEquals(ExceptionDeduplicator.SUPPRESSED, deduplicator.admit("/orders/{id}", IllegalStateException.class));
+        // other class, other endpoint, no endpoint: windows of their own
+        assertEquals(0, deduplicator.admit("/orders/{id}", IllegalArgumentException.class));
+        assertEquals(0, deduplicator.admit("/users/{id}", IllegalStateException.class));
+        assertEquals(0, deduplicator.admit(null, IllegalStateException.class));
+    }
+
+    @Test
+    public void nextWindowCarriesSuppressedCount() throws Exception {
+        final ExceptionDeduplicator deduplicator = new ExceptionDeduplicator(1, 50, 16);
+
+        assertEquals(0, deduplicator.admit("/orders/{id}", IllegalStateException.class));
+        assertEquals(ExceptionDeduplicator.SUPPRESSED, deduplicator.admit("/orders/{id}", IllegalStateException.class));
+        assertEquals(ExceptionDeduplicator.SUPPRESSED, deduplicator.admit("/orders/{id}", IllegalStateException.class));
+        Thread.sleep(100);
+        assertEquals(2, deduplicator.admit("/orders/{id}", IllegalStateException.class));
+    }
+
+    @Test
+    public void keysPastMaxKeysShareOneWindow() {
+        final ExceptionDeduplicator deduplicator = new ExceptionDeduplicator(1, 60000, 1);
+
+        assertEquals(0, deduplicator.admit("/orders/{id}", IllegalStateException.class));
+        assertEquals(0, deduplicator.admit("/users/{id}", IllegalStateException.class));
+        assertEquals(ExceptionDeduplicator.SUPPRESSED, deduplicator.admit("/items/{id}", IllegalArgumentException.class));
+    }
+
+    @Test
+    public void suppressedRequestStillRecordsAnException() {
+        final ExceptionDeduplicator deduplicator = new ExceptionDeduplicator(1, 60000, 16);
+        final IllegalStateException first = new IllegalStateException("first");
+        final IllegalStateException second = new IllegalStateException("second");
+
+        final List<Object[]> firstCalls = new ArrayList<Object[]>();
+        deduplicator.record(recorder(firstCalls), "/orders/{id}", first);
+        assertEquals(1, firstCalls.size());
+        assertEquals("recordException", firstCalls.get(0)[0]);
+        assertSame(first, firstCalls.get(0)[1]);
+
+        // the error mark comes from recordException, a suppressed request must still make the call
+        final List<Object[]> suppressedCalls = new ArrayList<Object[]>();
+        deduplicator.record(recorder(suppressedCalls), "/orders/{id}", second);
+        assertEquals(1, suppressedCalls.size());
+        assertEquals("recordException", suppressedCalls.get(0)[0]);
+        assertSame(ExceptionDeduplicator.DUPLICATE, suppressedCalls.get(0)[1]);
+        assertNull(ExceptionDeduplicator.DUPLICATE.getMessage());
+        assertEquals(0, ExceptionDeduplicator.DUPLICATE.getStackTrace().length);
+    }
+
+    @Test
+    public void admittedExceptionCarriesSuppressedCount() throws Exception {
+        final ExceptionDeduplicator deduplicator = new ExceptionDeduplicator(1, 50, 16);
+        final IllegalStateException error = new IllegalStateException("error");
+        deduplicator.record(recorder(new ArrayList<Object[]>()), "/orders/{id}", error);
+        deduplicator.record(recorder(new ArrayList<Object[]>()), "/orders/{id}", error);
+        Thread.sleep(100);
+
+        final List<Object[]> calls = new ArrayList<Object[]>();
+        deduplicator.record(recorder(calls), "/orders/{id}", error);
+        assertEquals(2, calls.size());
+        assertSame(error, calls.get(0)[1]);
+        assertEquals(Arrays.asList("recordAttribute", RestEasyConstants.EXCEPTION_SUPPRESSED, 1), Arrays.asList(calls.get(1)));
+    }
+
+    /**
+     * A recorder that only logs the calls: method name followed by the arguments.
+     */
+    private static SpanEventRecorder recorder(final List<Object[]> calls) {
+        return (SpanEventRecorder) Proxy.newProxyInstance(SpanEventRecorder.class.getClassLoader(), new Class<?>[]{SpanEventRecorder.class}, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                final Object[] call = new Object[(args != null ? args.length : 0) + 1];
+                call[0] = method.getName();
+                if (args != null) {
+                    System.arraycopy(args, 0, call, 1, args.length);
+                }
+                calls.add(call);
+                return null;
+            }
+        });
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2014 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.navercorp.pinpoint.plugin.resteasy.metric;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void smallValuesHaveTheirOwnBucket() {
+        for (int value = 0; value < 8; value++) {
+            assertEquals(value, LatencyHistogram.bucketIndex(value));
+            assertEquals(value, LatencyHistogram.highestValue(value));
+        }
+        assertEquals(0, LatencyHistogram.bucketIndex(-5));
+    }
+
+    @Test
+    public void powersOfTwoAreSplitInEight() {
+        assertEquals(8, LatencyHistogram.bucketIndex(8));
+        assertEquals(15, LatencyHistogram.bucketIndex(15));
+        // from 16 on, two values per bucket, then four, ...
+        assertEquals(16, LatencyHistogram.bucketIndex(16));
+        assertEquals(16, LatencyHistogram.bucketIndex(17));
+        assertEquals(17, LatencyHistogram.bucketIndex(18));
+        assertEquals(17, LatencyHistogram.highestValue(16));
+        assertEquals(63, LatencyHistogram.bucketIndex(1000));
+        assertEquals(1023, LatencyHistogram.highestValue(63));
+    }
+
+    @Test
+    public void bucketsAreContiguousAndWithinAnEighth() {
+        for (long value = 0; value < (1L << 20); value++) {
+            final int index = LatencyHistogram.bucketIndex(value);
+            final long highest = LatencyHistogram.highestValue(index);
+            assertTrue(value + " in bucket up to " + highest, highest >= value);
+            assertTrue(value + " in bucket up to " + highest, highest - value <= value / 8);
+            if (index > 0) {
+                assertTrue(value + " below bucket " + index, LatencyHistogram.highestValue(index - 1) < value);
+            }
+        }
+    }
+
+    @Test
+    public void hugeValuesGoToTheLastBucket() {
+        assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.bucketIndex(Long.MAX_VALUE));
+        assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.bucketIndex((1L << 41) - 1));
+    }
+
+    @Test
+    public void quantiles() {
+        final LatencyHistogram histogram = new LatencyHistogram(4);
+        for (int latency = 1; latency <= 100; latency++) {
+            histogram.record(latency, 200, false);
+        }
+
+        final LatencySnapshot snapshot = histogram.snapshotAndReset();
+        assertEquals(100, snapshot.getCount());
+        assertEquals(50, snapshot.getMeanMicros());
+        assertEquals(1, snapshot.getValueAtQuantile(0.0));
+        // 50 falls into 48..51
+        assertEquals(51, snapshot.getValueAtQuantile(0.5));
+        // 99 and 100 into 96..103
+        assertEquals(103, snapshot.getValueAtQuantile(0.99));
+        assertEquals(103, snapshot.getValueAtQuantile(1.0));
+        assertEquals(103, snapshot.getMaxMicros());
+    }
+
+    @Test
+    public void emptySnapshot() {
+        final LatencySnapshot snapshot = new LatencyHistogram(1).snapshotAndReset();
+        assertEquals(0, snapshot.getCount());
+        assertEquals(0, snapshot.getMeanMicros());
+        assertEquals(0, snapshot.getValueAtQuantile(0.99));
+        assertEquals(0, snapshot.getMaxMicros());
+    }
+
+    @Test
+    public void countsStatusClassesAndErrors() {
+        final LatencyHistogram histogram = new LatencyHistogram(2);
+        histogram.record(10, 200, false);
+        histogram.record(10, 204, false);
+        histogram.record(10, 404, false);
+        histogram.record(10, 503, false);
+        histogram.record(10, 200, true);
+        histogram.record(10, 0, false);
+
+        final LatencySnapshot snapshot = histogram.snapshotAndReset();
+        assertEquals(6, snapshot.getCount());
+        assertEquals(2, snapshot.getStatusCount(2));
+        assertEquals(1, snapshot.getStatusCount(4));
+        assertEquals(1, snapshot.getStatusCount(5));
+        assertEquals(1, snapshot.getErrorCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnknownStatusClass() {
+        new LatencyHistogram(1).snapshotAndReset().getStatusCount(6);
+    }
+
+    @Test
+    public void snapshotResets() throws Exception {
+        final LatencyHistogram histogram = new LatencyHistogram(4);
+        final Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int n = 0; n < 1000; n++) {
+                        histogram.record(100, 200, false);
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        // the stripes of all threads are summed
+        assertEquals(4000, histogram.snapshotAndReset().getCount());
+        assertEquals(0, histogram.snapshotAndReset().getCount());
+    }
+}
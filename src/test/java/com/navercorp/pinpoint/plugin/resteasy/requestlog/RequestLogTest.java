@@ -0,0 +1,119 @@
+/*
+ * Copyright 2014 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.navercorp.pinpoint.plugin.resteasy.requestlog;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RequestLogTest {
+    private File file;
+
+    @Before
+    public void setUp() throws Exception {
+        file = File.createTempFile("requestlog", ".bin");
+        file.deleteOnExit();
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void printsWhatWasWritten() throws Exception {
+        final RequestLog requestLog = new RequestLog(file, 4, 8);
+        requestLog.write(summary("10.0.0.1", "agent^1^7", 42), "/users/{id}", 200, false, false);
+        requestLog.write(summary("10.0.0.2", null, 0), null, 500, true, true);
+
+        final String[] lines = print();
+        assertEquals(2, lines.length);
+        final String[] first = lines[0].split("\t", -1);
+        assertEquals("200", first[2]);
+        assertEquals("-S-", first[3]);
+        assertEquals("/users/{id}", first[4]);
+        assertEquals("10.0.0.1", first[5]);
+        assertEquals("agent^1^7", first[6]);
+        assertEquals("42", first[7]);
+        final String[] second = lines[1].split("\t", -1);
+        assertEquals("500", second[2]);
+        assertEquals("E-A", second[3]);
+        assertEquals("UNMATCHED", second[4]);
+        assertEquals("10.0.0.2", second[5]);
+        assertEquals("", second[6]);
+        assertTrue(Integer.parseInt(first[1]) >= 0);
+    }
+
+    @Test
+    public void keepsTheNewestCapacityRecords() throws Exception {
+        final RequestLog requestLog = new RequestLog(file, 3, 8);
+        for (int status = 201; status <= 205; status++) {
+            requestLog.write(summary("10.0.0.1", null, 0), "/items", status, false, false);
+        }
+
+        final String[] lines = print();
+        assertEquals(3, lines.length);
+        assertEquals("203", lines[0].split("\t")[2]);
+        assertEquals("205", lines[2].split("\t")[2]);
+    }
+
+    @Test
+    public void carriesOnAfterRestart() throws Exception {
+        new RequestLog(file, 3, 8).write(summary("10.0.0.1", null, 0), "/items", 201, false, false);
+        final RequestLog restarted = new RequestLog(file, 3, 8);
+        restarted.write(summary("10.0.0.1", null, 0), "/orders", 202, false, false);
+
+        final String[] lines = print();
+        assertEquals(2, lines.length);
+        assertEquals("/items", lines[0].split("\t")[4]);
+        assertEquals("/orders", lines[1].split("\t")[4]);
+    }
+
+    @Test
+    public void endpointsPastTheLimitShareOne() throws Exception {
+        final RequestLog requestLog = new RequestLog(file, 4, 1);
+        requestLog.write(summary("10.0.0.1", null, 0), "/a", 200, false, false);
+        requestLog.write(summary("10.0.0.1", null, 0), "/b", 200, false, false);
+
+        final String[] lines = print();
+        assertEquals("/a", lines[0].split("\t")[4]);
+        assertEquals("OTHER", lines[1].split("\t")[4]);
+    }
+
+    private String[] print() throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final PrintStream printStream = new PrintStream(out, true, "US-ASCII");
+        RequestLogReader.print(RequestLogReader.map(file), printStream);
+        final String printed = out.toString("US-ASCII");
+        return printed.isEmpty() ? new String[0] : printed.split("\r?\n");
+    }
+
+    private static RequestSummary summary(String remoteAddress, String transactionId, long spanId) {
+        final RequestSummary summary = new RequestSummary();
+        summary.start(remoteAddress);
+        if (transactionId != null) {
+            summary.setTrace(transactionId, spanId);
+        }
+        return summary;
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2014 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.navercorp.pinpoint.plugin.resteasy.sampler;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class EndpointSamplerTest {
+    private static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    public void limitsEachEndpoint() {
+        // 10 per second and endpoint, the total is no constraint
+        final EndpointSampler sampler = new EndpointSampler(10, 1000, 1, 1, 1024);
+
+        assertTrue(sampler.isSampled("/users/1", 0));
+        assertFalse(sampler.isSampled("/users/2", 50 * MILLIS));
+        // another endpoint has its own budget
+        assertTrue(sampler.isSampled("/orders/1", 50 * MILLIS));
+        assertTrue(sampler.isSampled("/users/3", 100 * MILLIS));
+    }
+
+    @Test
+    public void endpointIsThePathPrefix() {
+        final EndpointSampler sampler = new EndpointSampler(10, 1000, 1, 2, 1024);
+
+        assertTrue(sampler.isSampled("/api/users/1", 0));
+        assertFalse(sampler.isSampled("/api/users/2", 50 * MILLIS));
+        assertTrue(sampler.isSampled("/api/orders/1", 50 * MILLIS));
+    }
+
+    @Test
+    public void burstAfterIdle() {
+        final EndpointSampler sampler = new EndpointSampler(10, 1000, 3, 1, 1024);
+
+        assertTrue(sampler.isSampled("/users", 0));
+        assertTrue(sampler.isSampled("/users", 0));
+        assertTrue(sampler.isSampled("/users", 0));
+        assertFalse(sampler.isSampled("/users", 0));
+    }
+
+    @Test
+    public void totalRefusalLeavesTheEndpointPermit() {
+        // 100ms per endpoint, 50ms in total
+        final EndpointSampler sampler = new EndpointSampler(10, 20, 1, 1, 1024);
+
+        assertTrue(sampler.isSampled("/a", 0));
+        assertFalse(sampler.isSampled("/b", 0));
+        // /b took no permit above, or it would have to wait until 100ms
+        assertTrue(sampler.isSampled("/b", 50 * MILLIS));
+    }
+
+    @Test
+    public void totalIsSharedBetweenActiveEndpoints() {
+        // 100 per second per endpoint and in total
+        final EndpointSampler sampler = new EndpointSampler(100, 100, 1, 1, 1024);
+        for (String path : new String[] {"/a", "/b", "/c", "/d"}) {
+            sampler.isSampled(path, 0);
+        }
+
+        // four active endpoints: 25 per second, 40ms apart, each
+        assertTrue(sampler.isSampled("/a", SECOND));
+        assertFalse(sampler.isSampled("/a", SECOND + 10 * MILLIS));
+        assertTrue(sampler.isSampled("/a", SECOND + 40 * MILLIS));
+
+        // the others went quiet, /a gets its own limit back at the next share
+        assertTrue(sampler.isSampled("/a", 2500 * MILLIS));
+        assertTrue(sampler.isSampled("/a", 2510 * MILLIS));
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2014 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.navercorp.pinpoint.plugin.resteasy.sampler;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RateLimiterTest {
+    private static final long INTERVAL = 100;
+
+    @Test
+    public void burstThenSteadyRate() {
+        final RateLimiter limiter = new RateLimiter();
+        // burst of 3: two permits ahead of the steady rate
+        final long burstTolerance = INTERVAL * 2;
+
+        assertTrue(limiter.tryAcquire(1000, INTERVAL, burstTolerance));
+        assertTrue(limiter.tryAcquire(1000, INTERVAL, burstTolerance));
+        assertTrue(limiter.tryAcquire(1000, INTERVAL, burstTolerance));
+        assertFalse(limiter.tryAcquire(1000, INTERVAL, burstTolerance));
+        assertFalse(limiter.tryAcquire(1099, INTERVAL, burstTolerance));
+
+        assertTrue(limiter.tryAcquire(1100, INTERVAL, burstTolerance));
+        assertFalse(limiter.tryAcquire(1100, INTERVAL, burstTolerance));
+        assertTrue(limiter.tryAcquire(1200, INTERVAL, burstTolerance));
+    }
+
+    @Test
+    public void idleTimeDoesNotAddUpBeyondTheBurst() {
+        final RateLimiter limiter = new RateLimiter();
+
+        assertTrue(limiter.tryAcquire(0, INTERVAL, 0));
+        assertTrue(limiter.tryAcquire(100000, INTERVAL, 0));
+        assertFalse(limiter.tryAcquire(100000, INTERVAL, 0));
+    }
+
+    @Test
+    public void releaseGivesThePermitBack() {
+        final RateLimiter limiter = new RateLimiter();
+
+        assertTrue(limiter.tryAcquire(1000, INTERVAL, 0));
+        assertFalse(limiter.tryAcquire(1000, INTERVAL, 0));
+        limiter.release(INTERVAL);
+        assertTrue(limiter.tryAcquire(1000, INTERVAL, 0));
+    }
+
+    @Test
+    public void activeWhileAskedWithinTheWindow() {
+        final RateLimiter limiter = new RateLimiter();
+        final long window = RateLimiter.SEEN_RESOLUTION * 10;
+        assertFalse(limiter.isActive(0, window));
+
+        // a refused request counts as well
+        limiter.tryAcquire(0, INTERVAL, 0);
+        limiter.tryAcquire(0, INTERVAL, 0);
+        assertTrue(limiter.isActive(window, window));
+        assertFalse(limiter.isActive(window + 1, window));
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2014 NAVER Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.navercorp.pinpoint.plugin.resteasy.sampler;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class TailSamplerTest {
+
+    @Test
+    public void promotesErrorsAndServerErrors() {
+        final TailSampler tailSampler = new TailSampler(60000, 1000, 10);
+
+        tailSampler.start(null, null);
+        assertEquals(TailSampler.REASON_ERROR, finish(tailSampler, 200, new IllegalStateException()));
+        tailSampler.start(null, null);
+        assertEquals(TailSampler.REASON_SERVER_ERROR, finish(tailSampler, 503, null));
+        tailSampler.start(null, null);
+        assertNull(tailSampler.finish(404, null));
+    }
+
+    @Test
+    public void promotesSlowRequests() {
+        final TailSampler tailSampler = new TailSampler(0, 1000, 10);
+
+        tailSampler.start(null, null);
+        assertEquals(TailSampler.REASON_SLOW, finish(tailSampler, 200, null));
+    }
+
+    @Test
+    public void limitsPromotions() {
+        // one per second, bursts of 3: an error storm gets 3 promotions, then nothing within the test
+        final TailSampler tailSampler = new TailSampler(60000, 1, 3);
+
+        int promoted = 0;
+        for (int i = 0; i < 100; i++) {
+            tailSampler.start(null, null);
+            if (finish(tailSampler, 500, null) != null) {
+                promoted++;
+            }
+        }
+        assertEquals(3, promoted);
+        // a dropped request leaves nothing behind
+        assertNull(tailSampler.finish(500, null));
+    }
+
+    @Test
+    public void transactionSequenceIsSharedByEverySampler() {
+        final long first = new TailSampler(0, 1, 1).nextTransactionSequence();
+        final long second = new TailSampler(0, 1, 1).nextTransactionSequence();
+        assertEquals(first + 1, second);
+    }
+
+    private static String finish(TailSampler tailSampler, int status, Throwable throwable) {
+        final ProvisionalTrace provisionalTrace = tailSampler.finish(status, throwable);
+        if (provisionalTrace == null) {
+            return null;
+        }
+        assertNotNull(provisionalTrace.getReason());
+        final String reason = provisionalTrace.getReason();
+        tailSampler.release(provisionalTrace);
+        return reason;
+    }
+}